@@ -0,0 +1,56 @@
+package com.example.rdfsearch.config;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.example.rdfsearch.service.sparql.QueryDeadline;
+
+/**
+ * 异步请求超时或客户端断开时，取消该请求发起的SPARQL查询
+ *
+ * 控制器返回的CompletableFuture由Spring适配为DeferredResult，因此在DeferredResult拦截器中处理。
+ */
+@Configuration
+public class QueryDeadlineConfig implements WebMvcConfigurer {
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerDeferredResultInterceptors(new DeferredResultProcessingInterceptor() {
+            @Override
+            public <T> boolean handleTimeout(NativeWebRequest request, DeferredResult<T> deferredResult) {
+                cancelDeadlines(request);
+                return true;
+            }
+
+            @Override
+            public <T> boolean handleError(NativeWebRequest request, DeferredResult<T> deferredResult,
+                    Throwable t) {
+                // 客户端断开连接时触发
+                cancelDeadlines(request);
+                return true;
+            }
+
+            @Override
+            public <T> void afterCompletion(NativeWebRequest request, DeferredResult<T> deferredResult) {
+                // 正常完成: 截止时间由各自的异步任务结束时标记完成，这里只释放引用，不计为取消
+                request.removeAttribute(QueryDeadline.REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void cancelDeadlines(NativeWebRequest request) {
+        List<QueryDeadline> deadlines = (List<QueryDeadline>) request.getAttribute(
+                QueryDeadline.REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (deadlines != null) {
+            deadlines.forEach(QueryDeadline::cancel);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.example.rdfsearch.controller;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -19,28 +20,41 @@ import org.springframework.web.bind.annotation.RequestMethod;
 @RequestMapping("/api")
 @CrossOrigin(origins = "http://localhost:8080", allowedHeaders = "*", methods = {
         RequestMethod.GET, RequestMethod.POST, RequestMethod.PUT, RequestMethod.DELETE, RequestMethod.OPTIONS
-}, allowCredentials = "true")
+}, exposedHeaders = "X-Next-Cursor", allowCredentials = "true")
 public class RdfController {
 
     @Autowired
     private SparqlService sparqlService;
 
+    // 下一页游标通过响应头返回，响应体仍为结果列表
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     /**
      * 基本长度搜索端点
+     * 支持keyset分页: 传入上一页响应头X-Next-Cursor中的cursor获取下一页
      */
     @GetMapping("/search")
-    public List<RdfInstance> searchByLength(
+    public CompletableFuture<ResponseEntity<List<RdfInstance>>> searchByLength(
             @RequestParam(defaultValue = "0") int minLength,
-            @RequestParam(defaultValue = "100") int maxLength) {
+            @RequestParam(defaultValue = "100") int maxLength,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int pageSize) {
 
-        return sparqlService.searchByLength(minLength, maxLength);
+        return sparqlService.supplyAsync(() -> {
+            try {
+                List<RdfInstance> page = sparqlService.searchByLength(minLength, maxLength, cursor, pageSize);
+                return withNextCursor(page, sparqlService.nextLengthCursor(page, pageSize));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().<List<RdfInstance>>build();
+            }
+        });
     }
 
     /**
      * 高级多属性搜索端点
      */
     @GetMapping("/advancedSearch")
-    public List<RdfInstance> advancedSearch(
+    public CompletableFuture<ResponseEntity<List<RdfInstance>>> advancedSearch(
             // 长度参数
             @RequestParam(required = false) Float lengthMin,
             @RequestParam(required = false) Float lengthMax,
@@ -58,14 +72,32 @@ public class RdfController {
             @RequestParam(required = false) Float dailyEnergyReleaseMax,
 
             // 风险类型参数（可以有多个）
-            @RequestParam(required = false) List<String> riskType) {
-
-        return sparqlService.advancedSearch(
-                lengthMin, lengthMax,
-                microseismicEventCountMin, microseismicEventCountMax,
-                energyReleaseMin, energyReleaseMax,
-                dailyEnergyReleaseMin, dailyEnergyReleaseMax,
-                riskType);
+            @RequestParam(required = false) List<String> riskType,
+
+            // 分页参数
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int pageSize) {
+
+        return sparqlService.supplyAsync(() -> {
+            try {
+                List<RdfInstance> page = sparqlService.advancedSearch(
+                        lengthMin, lengthMax,
+                        microseismicEventCountMin, microseismicEventCountMax,
+                        energyReleaseMin, energyReleaseMax,
+                        dailyEnergyReleaseMin, dailyEnergyReleaseMax,
+                        riskType, cursor, pageSize);
+                return withNextCursor(page, sparqlService.nextUriCursor(page, pageSize));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().<List<RdfInstance>>build();
+            }
+        });
+    }
+
+    private ResponseEntity<List<RdfInstance>> withNextCursor(List<RdfInstance> page, String nextCursor) {
+        if (nextCursor == null) {
+            return ResponseEntity.ok(page);
+        }
+        return ResponseEntity.ok().header(NEXT_CURSOR_HEADER, nextCursor).body(page);
     }
 
     /**
@@ -73,10 +105,12 @@ public class RdfController {
      */
     // 新版本
     @GetMapping("/searchByTask")
-    public ResponseEntity<?> searchByTask(
+    public CompletableFuture<ResponseEntity<?>> searchByTask(
             @RequestParam String taskUri,
             @RequestParam(required = false) String userId) {
-        Map<String, Object> response = sparqlService.searchByTask(taskUri, userId);
-        return ResponseEntity.ok(response);
+        return sparqlService.supplyAsync(() -> {
+            Map<String, Object> response = sparqlService.searchByTask(taskUri, userId);
+            return ResponseEntity.ok(response);
+        });
     }
 }
\ No newline at end of file
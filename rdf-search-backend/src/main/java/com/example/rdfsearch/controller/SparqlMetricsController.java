@@ -0,0 +1,167 @@
+package com.example.rdfsearch.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.rdfsearch.service.DescriptionDateIndex;
+import com.example.rdfsearch.service.SparqlService;
+import com.example.rdfsearch.service.TaskHistoryRecorder;
+import com.example.rdfsearch.service.sparql.FusekiConnectionPool;
+import com.example.rdfsearch.service.sparql.PreparedQueryCache;
+import com.example.rdfsearch.service.sparql.QueryDeadline;
+import com.example.rdfsearch.service.sparql.QueryMetrics;
+import com.example.rdfsearch.service.sparql.QueryResultCache;
+import com.example.rdfsearch.service.sparql.ReplicaRouter;
+import com.example.rdfsearch.service.sparql.SingleFlight;
+import com.example.rdfsearch.service.sparql.SparqlAsyncExecutor;
+
+/**
+ * SPARQL访问层运行指标
+ */
+@RestController
+@RequestMapping("/api/sparql")
+@CrossOrigin(origins = "http://localhost:8080")
+public class SparqlMetricsController {
+
+    @Autowired
+    private FusekiConnectionPool connectionPool;
+
+    @Autowired
+    private PreparedQueryCache preparedQueryCache;
+
+    @Autowired
+    private QueryResultCache resultCache;
+
+    @Autowired
+    private SparqlAsyncExecutor asyncExecutor;
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Autowired
+    private SparqlService sparqlService;
+
+    @Autowired
+    private TaskHistoryRecorder taskHistoryRecorder;
+
+    @Autowired
+    private QueryMetrics queryMetrics;
+
+    @Autowired
+    private ReplicaRouter replicaRouter;
+
+    @Autowired
+    private DescriptionDateIndex dateIndex;
+
+    /**
+     * Fuseki连接池统计（占用、等待、可用名额）
+     */
+    @GetMapping("/pool")
+    public ResponseEntity<Map<String, Object>> getPoolStats() {
+        return ResponseEntity.ok(connectionPool.getStats());
+    }
+
+    /**
+     * 预编译查询模板统计
+     */
+    @GetMapping("/prepared")
+    public ResponseEntity<Map<String, Object>> getPreparedQueryStats() {
+        return ResponseEntity.ok(preparedQueryCache.getStats());
+    }
+
+    /**
+     * 查询结果缓存统计（命中、未命中、淘汰）
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(resultCache.getStats());
+    }
+
+    /**
+     * 异步执行器统计（运行中、等待中）
+     */
+    @GetMapping("/async")
+    public ResponseEntity<Map<String, Object>> getAsyncStats() {
+        return ResponseEntity.ok(asyncExecutor.getStats());
+    }
+
+    /**
+     * 更新合并管道统计（批次数、平均批量）
+     */
+    @GetMapping("/updates")
+    public ResponseEntity<Map<String, Object>> getUpdatePipelineStats() {
+        return ResponseEntity.ok(sparqlService.getUpdatePipelineStats());
+    }
+
+    /**
+     * 并发相同查询合并统计（执行次数、合并次数）
+     */
+    @GetMapping("/singleflight")
+    public ResponseEntity<Map<String, Object>> getSingleFlightStats() {
+        return ResponseEntity.ok(singleFlight.getStats());
+    }
+
+    /**
+     * 查询历史异步写入统计（排队、已写入、丢弃）
+     */
+    @GetMapping("/history")
+    public ResponseEntity<Map<String, Object>> getHistoryRecorderStats() {
+        return ResponseEntity.ok(taskHistoryRecorder.getStats());
+    }
+
+    /**
+     * 查询超时与取消统计
+     */
+    @GetMapping("/deadlines")
+    public ResponseEntity<Map<String, Object>> getDeadlineStats() {
+        return ResponseEntity.ok(QueryDeadline.getStats());
+    }
+
+    /**
+     * 按查询模板统计的延迟分布、行数、字节数，按总耗时排序
+     */
+    @GetMapping("/queries")
+    public ResponseEntity<Map<String, Object>> getQueryStats() {
+        return ResponseEntity.ok(queryMetrics.getStats());
+    }
+
+    /**
+     * 清空查询模板统计
+     */
+    @DeleteMapping("/queries")
+    public ResponseEntity<Void> resetQueryStats() {
+        queryMetrics.reset();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * 读副本路由统计（各副本健康状态、未完成请求数、摘除次数）
+     */
+    @GetMapping("/replicas")
+    public ResponseEntity<Map<String, Object>> getReplicaStats() {
+        return ResponseEntity.ok(replicaRouter.getStats());
+    }
+
+    /**
+     * 岩爆数值列式快照状态（版本、实体数、索引大小）
+     */
+    @GetMapping("/snapshot")
+    public ResponseEntity<Map<String, Object>> getSnapshotStats() {
+        return ResponseEntity.ok(sparqlService.getSnapshotStats());
+    }
+
+    /**
+     * 描述日期索引状态（是否就绪、已补齐事件数、无法解析的描述数）
+     */
+    @GetMapping("/date-index")
+    public ResponseEntity<Map<String, Object>> getDateIndexStats() {
+        return ResponseEntity.ok(dateIndex.getStats());
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.rdfsearch.service.DescriptionDateIndex;
 import com.example.rdfsearch.service.SparqlService;
 
 import java.io.StringWriter;
@@ -23,6 +24,9 @@ public class TableController {
     @Autowired
     private SparqlService sparqlService; // 使用您现有的SPARQL服务
 
+    @Autowired
+    private DescriptionDateIndex dateIndex;
+
     private static final String NS = "http://www.semanticweb.org/yoruh/ontologies/2024/9/untitled-ontology-11#";
 
     @PostMapping("/convert-to-rdf")
@@ -77,6 +81,9 @@ public class TableController {
                 }
             }
 
+            // 解析描述中的日期区间，作为类型化日期一并导入
+            dateIndex.enrich(model);
+
             // 将RDF模型转换为Turtle格式
             StringWriter writer = new StringWriter();
             model.write(writer, "TURTLE");
@@ -6,6 +6,12 @@ import com.example.rdfsearch.service.TaskChainService;
 import com.example.rdfsearch.service.TaskExecutionService;
 import com.example.rdfsearch.service.TaskResultProcessor;
 import com.example.rdfsearch.service.TaskService;
+import com.example.rdfsearch.service.SparqlService;
+import com.example.rdfsearch.service.WorkflowRunService;
+import com.example.rdfsearch.service.ExecutionContextStore;
+import com.example.rdfsearch.service.WorkflowDagScheduler;
+import com.example.rdfsearch.service.TaskMemoStore;
+import com.example.rdfsearch.service.sparql.DeadlineExceededException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,11 +22,12 @@ import jakarta.servlet.http.HttpServletRequest;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/tasks")
@@ -41,6 +48,21 @@ public class TaskController {
     @Autowired
     private TaskResultProcessor taskResultProcessor;
 
+    @Autowired
+    private SparqlService sparqlService;
+
+    @Autowired
+    private WorkflowRunService workflowRunService;
+
+    @Autowired
+    private ExecutionContextStore contextStore;
+
+    @Autowired
+    private WorkflowDagScheduler dagScheduler;
+
+    @Autowired
+    private TaskMemoStore memoStore;
+
     /**
      * 获取所有任务
      */
@@ -201,8 +223,14 @@ public class TaskController {
      * 执行任务（使用URL编码的URI）
      */
     @GetMapping("/{encodedUri}/execute")
-    public ResponseEntity<?> executeTask(@PathVariable String encodedUri, HttpServletRequest request) {
+    public CompletableFuture<ResponseEntity<?>> executeTask(@PathVariable String encodedUri,
+            HttpServletRequest request) {
         System.out.println("收到请求: " + request.getMethod() + " " + request.getRequestURI());
+        // 在虚拟线程上执行，释放请求线程
+        return sparqlService.supplyAsync(() -> executeTaskByUri(encodedUri));
+    }
+
+    private ResponseEntity<?> executeTaskByUri(String encodedUri) {
         try {
             String uri = URLDecoder.decode(encodedUri, "UTF-8");
             logger.info("收到执行任务请求，URI: {}", uri);
@@ -240,6 +268,9 @@ public class TaskController {
         } catch (UnsupportedEncodingException e) {
             logger.error("URL解码失败: " + e.getMessage(), e);
             return ResponseEntity.badRequest().build();
+        } catch (DeadlineExceededException e) {
+            logger.warn("执行任务超时或被取消: URI={}, 错误={}", encodedUri, e.getMessage());
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             logger.error("执行任务失败: URI={}, 错误={}", encodedUri, e.getMessage(), e);
             Map<String, String> error = new HashMap<>();
@@ -359,7 +390,12 @@ public class TaskController {
      * 通过ID执行任务（简化版）
      */
     @GetMapping("/execute-by-id/{taskId}")
-    public ResponseEntity<?> executeTaskById(@PathVariable String taskId) {
+    public CompletableFuture<ResponseEntity<?>> executeTaskById(@PathVariable String taskId) {
+        // 在虚拟线程上执行，释放请求线程
+        return sparqlService.supplyAsync(() -> executeTaskByIdBlocking(taskId));
+    }
+
+    private ResponseEntity<?> executeTaskByIdBlocking(String taskId) {
         try {
             String uri = "http://example.com/task/" + taskId;
             logger.info("通过ID执行任务，ID: {}, URI: {}", taskId, uri);
@@ -404,6 +440,9 @@ public class TaskController {
 
             // 4. 返回处理后的结果
             return ResponseEntity.ok(processedResult);
+        } catch (DeadlineExceededException e) {
+            logger.warn("执行任务超时或被取消: ID={}, 错误={}", taskId, e.getMessage());
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             logger.error("执行任务失败: ID={}, 错误={}", taskId, e.getMessage(), e);
             Map<String, String> error = new HashMap<>();
@@ -492,6 +531,12 @@ public class TaskController {
             workflow2.put("description", "分析多个震点的数据并生成综合报告");
             workflows.add(workflow2);
 
+            Map<String, Object> workflow3 = new HashMap<>();
+            workflow3.put("id", "workflow3");
+            workflow3.put("name", "并行多指标分析工作流");
+            workflow3.put("description", "并行比较能量和微震事件指标，汇总后进行深度分析");
+            workflows.add(workflow3);
+
             response.put("workflows", workflows);
 
             return ResponseEntity.ok(response);
@@ -525,9 +570,14 @@ public class TaskController {
      * 执行工作流
      */
     @PostMapping("/workflows/{workflowId}/execute")
-    public ResponseEntity<?> executeWorkflow(
+    public CompletableFuture<ResponseEntity<?>> executeWorkflow(
             @PathVariable String workflowId,
             @RequestBody(required = false) Map<String, Object> parameters) {
+        // 在虚拟线程上执行，工作流中的查询受请求截止时间约束
+        return sparqlService.supplyAsync(() -> executeWorkflowBlocking(workflowId, parameters));
+    }
+
+    private ResponseEntity<?> executeWorkflowBlocking(String workflowId, Map<String, Object> parameters) {
         try {
             // 如果没有提供参数，使用空Map
             if (parameters == null) {
@@ -538,6 +588,9 @@ public class TaskController {
             Map<String, Object> result = taskChainService.executeWorkflow(workflowId, parameters);
 
             return ResponseEntity.ok(result);
+        } catch (DeadlineExceededException e) {
+            logger.warn("执行工作流超时或被取消: " + e.getMessage());
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             logger.error("执行工作流失败: " + e.getMessage(), e);
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
@@ -545,19 +598,123 @@ public class TaskController {
     }
 
     /**
-     * 获取工作流执行状态
+     * 异步运行工作流，立即返回运行ID，通过状态接口查询进度和结果
+     */
+    @PostMapping("/workflows/{workflowId}/runs")
+    public ResponseEntity<?> submitWorkflowRun(
+            @PathVariable String workflowId,
+            @RequestBody(required = false) Map<String, Object> parameters) {
+        try {
+            WorkflowRunService.WorkflowRun run = workflowRunService.submit(workflowId, parameters);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("runId", run.getRunId());
+            response.put("workflowId", workflowId);
+            response.put("status", run.getStatus().name());
+            response.put("statusUrl", "/api/tasks/workflows/runs/" + run.getRunId());
+            return ResponseEntity.accepted().body(response);
+        } catch (RejectedExecutionException e) {
+            logger.warn("工作流运行队列已满: " + workflowId);
+            return ResponseEntity.status(503).body(Map.of("error", "工作流运行队列已满，请稍后重试"));
+        } catch (Exception e) {
+            logger.error("提交工作流运行失败: " + e.getMessage(), e);
+            return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 获取工作流运行状态
+     */
+    @GetMapping("/workflows/runs/{runId}")
+    public ResponseEntity<?> getWorkflowRun(@PathVariable String runId) {
+        WorkflowRunService.WorkflowRun run = workflowRunService.getRun(runId);
+        if (run == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "找不到工作流运行: " + runId));
+        }
+        return ResponseEntity.ok(run.toStatusMap());
+    }
+
+    /**
+     * 取消工作流运行
+     */
+    @DeleteMapping("/workflows/runs/{runId}")
+    public ResponseEntity<?> cancelWorkflowRun(@PathVariable String runId) {
+        // 使用取消时取到的运行记录，之后即使已结束并被清理也能返回其状态
+        WorkflowRunService.WorkflowRun run = workflowRunService.cancel(runId);
+        if (run == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "找不到工作流运行: " + runId));
+        }
+        return ResponseEntity.ok(run.toStatusMap());
+    }
+
+    /**
+     * 从最后一个检查点继续执行中断的工作流运行，已完成的任务不再执行
+     */
+    @PostMapping("/workflows/runs/{runId}/resume")
+    public ResponseEntity<?> resumeWorkflowRun(@PathVariable String runId) {
+        try {
+            WorkflowRunService.WorkflowRun run = workflowRunService.resume(runId);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("runId", run.getRunId());
+            response.put("workflowId", run.getWorkflowId());
+            response.put("status", run.getStatus().name());
+            response.put("statusUrl", "/api/tasks/workflows/runs/" + run.getRunId());
+            return ResponseEntity.accepted().body(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(404).body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            logger.warn("工作流运行队列已满: " + runId);
+            return ResponseEntity.status(503).body(Map.of("error", "工作流运行队列已满，请稍后重试"));
+        } catch (Exception e) {
+            logger.error("继续执行工作流运行失败: " + e.getMessage(), e);
+            return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 列出有检查点、尚未执行完成的工作流运行
+     */
+    @GetMapping("/workflows/runs/interrupted")
+    public ResponseEntity<?> getInterruptedWorkflowRuns() {
+        return ResponseEntity.ok(contextStore.listInterrupted());
+    }
+
+    /**
+     * 获取工作流运行池和执行上下文存储的统计信息
+     */
+    @GetMapping("/workflows/stats")
+    public ResponseEntity<?> getWorkflowStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("runs", workflowRunService.getStats());
+        stats.put("contexts", contextStore.getStats());
+        stats.put("dag", dagScheduler.getStats());
+        stats.put("memo", memoStore.getStats());
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * 获取工作流执行状态 - 指定runId时返回该次运行，否则返回最近一次运行
      */
     @GetMapping("/workflows/{workflowId}/status")
-    public ResponseEntity<?> getWorkflowStatus(@PathVariable String workflowId) {
+    public ResponseEntity<?> getWorkflowStatus(
+            @PathVariable String workflowId,
+            @RequestParam(required = false) String runId) {
         try {
-            // 获取工作流执行状态
-            // 实际应从taskChainService获取
-            Map<String, Object> status = new HashMap<>();
-            status.put("workflowId", workflowId);
-            status.put("status", "completed");
-            status.put("executionPath", Arrays.asList("task1:outcome1_1", "task2:outcome2_1"));
-
-            return ResponseEntity.ok(status);
+            WorkflowRunService.WorkflowRun run = runId != null
+                    ? workflowRunService.getRun(runId)
+                    : workflowRunService.getLatestRun(workflowId);
+
+            if (run == null || !run.getWorkflowId().equals(workflowId)) {
+                Map<String, Object> status = new HashMap<>();
+                status.put("workflowId", workflowId);
+                status.put("status", "NOT_STARTED");
+                return ResponseEntity.ok(status);
+            }
+
+            return ResponseEntity.ok(run.toStatusMap());
         } catch (Exception e) {
             logger.error("获取工作流状态失败: " + e.getMessage(), e);
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
@@ -605,8 +762,14 @@ public class TaskController {
     }
 
     @PostMapping("/workflows/{workflowId}/reset")
-    public ResponseEntity<Map<String, Object>> resetWorkflow(@PathVariable String workflowId) {
-        taskChainService.resetWorkflowContext(workflowId);
+    public ResponseEntity<Map<String, Object>> resetWorkflow(
+            @PathVariable String workflowId,
+            @RequestParam(required = false) String runId) {
+        try {
+            taskChainService.resetWorkflowContext(workflowId, runId);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.<String, Object>of("error", e.getMessage()));
+        }
 
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
@@ -621,9 +784,14 @@ public class TaskController {
     @GetMapping("/workflows/{workflowId}/tasks/{taskId}")
     public ResponseEntity<Map<String, Object>> getTaskOptions(
             @PathVariable String workflowId,
-            @PathVariable String taskId) {
-        Map<String, Object> options = taskChainService.getTaskOptions(workflowId, taskId);
-        return ResponseEntity.ok(options);
+            @PathVariable String taskId,
+            @RequestParam(required = false) String runId) {
+        try {
+            Map<String, Object> options = taskChainService.getTaskOptions(workflowId, runId, taskId);
+            return ResponseEntity.ok(options);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.<String, Object>of("error", e.getMessage()));
+        }
     }
 
     /**
@@ -636,9 +804,15 @@ public class TaskController {
             @RequestBody Map<String, String> request) {
         String outcomeId = request.get("outcomeId");
         String contradictionReason = request.get("contradictionReason"); // 获取偏差原因
+        String runId = request.get("runId"); // 可选，不传时使用当前会话的上下文
 
-        Map<String, Object> result = taskChainService.selectOutcome(workflowId, taskId, outcomeId, contradictionReason);
-        return ResponseEntity.ok(result);
+        try {
+            Map<String, Object> result = taskChainService.selectOutcome(workflowId, runId, taskId, outcomeId,
+                    contradictionReason);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.<String, Object>of("error", e.getMessage()));
+        }
     }
 
     /**
@@ -0,0 +1,34 @@
+package com.example.rdfsearch.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+/**
+ * 数据集版本记录 - 本应用每次写入数据集前递增，重启后继续使用
+ */
+@Entity
+public class DatasetVersionRecord {
+
+    @Id
+    private String name;
+
+    private long generation;
+
+    // Getters and setters
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.rdfsearch.model;
+
+import java.util.Date;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+
+/**
+ * 工作流执行上下文记录 - 执行中每完成一个任务写入检查点，已结束的上下文从内存淘汰时写入，
+ * 按运行ID取回；未结束的记录可从检查点继续执行
+ */
+@Entity
+public class ExecutionContextRecord {
+
+    @Id
+    private String runId;
+
+    private String workflowId;
+
+    // 运行是否已执行完成
+    private Boolean finished;
+
+    // 是否为交互式执行的上下文（由用户逐步选择结果），没有可继续执行的检查点
+    private Boolean interactive;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date savedAt;
+
+    // 上下文快照(JSON)
+    @Lob
+    private String snapshot;
+
+    // Getters and setters
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public void setRunId(String runId) {
+        this.runId = runId;
+    }
+
+    public String getWorkflowId() {
+        return workflowId;
+    }
+
+    public void setWorkflowId(String workflowId) {
+        this.workflowId = workflowId;
+    }
+
+    public Boolean getFinished() {
+        return finished;
+    }
+
+    public void setFinished(Boolean finished) {
+        this.finished = finished;
+    }
+
+    public Boolean getInteractive() {
+        return interactive;
+    }
+
+    public void setInteractive(Boolean interactive) {
+        this.interactive = interactive;
+    }
+
+    public Date getSavedAt() {
+        return savedAt;
+    }
+
+    public void setSavedAt(Date savedAt) {
+        this.savedAt = savedAt;
+    }
+
+    public String getSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(String snapshot) {
+        this.snapshot = snapshot;
+    }
+}
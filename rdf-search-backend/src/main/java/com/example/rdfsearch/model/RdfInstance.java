@@ -1,5 +1,6 @@
 package com.example.rdfsearch.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class RdfInstance {
@@ -18,6 +19,12 @@ public class RdfInstance {
     private String description;
     private String riskType;
 
+    // 存储中长度字面量的原始词法形式和数据类型，用于生成分页游标，不输出
+    @JsonIgnore
+    private String lengthLexical;
+    @JsonIgnore
+    private String lengthDatatype;
+
     // 用于简化输出的属性
     @JsonProperty("name")
     private String simplifiedName;
@@ -31,6 +38,31 @@ public class RdfInstance {
         this.simplifiedName = simplifyUri(uri);
     }
 
+    /**
+     * 复制全部字段，缓存中共享的实例不直接交给调用方
+     */
+    public RdfInstance copy() {
+        RdfInstance copy = new RdfInstance();
+        copy.uri = uri;
+        copy.length = length;
+        copy.microseismicEventCount = microseismicEventCount;
+        copy.energyRelease = energyRelease;
+        copy.cumulativeApparentVolume = cumulativeApparentVolume;
+        copy.dailyEventRate = dailyEventRate;
+        copy.dailyEnergyRelease = dailyEnergyRelease;
+        copy.dailyApparentVolumeRate = dailyApparentVolumeRate;
+        copy.serialNumber = serialNumber;
+        copy.mileage = mileage;
+        copy.startMileage = startMileage;
+        copy.endMileage = endMileage;
+        copy.description = description;
+        copy.riskType = riskType;
+        copy.lengthLexical = lengthLexical;
+        copy.lengthDatatype = lengthDatatype;
+        copy.simplifiedName = simplifiedName;
+        return copy;
+    }
+
     // 从URI中提取简化名称
     private String simplifyUri(String uri) {
         // 如果URI包含#，取其后部分，否则取最后一个/后的部分
@@ -159,4 +191,17 @@ public class RdfInstance {
     public String getSimplifiedName() {
         return simplifiedName;
     }
+
+    public String getLengthLexical() {
+        return lengthLexical;
+    }
+
+    public String getLengthDatatype() {
+        return lengthDatatype;
+    }
+
+    public void setLengthLiteral(String lengthLexical, String lengthDatatype) {
+        this.lengthLexical = lengthLexical;
+        this.lengthDatatype = lengthDatatype;
+    }
 }
\ No newline at end of file
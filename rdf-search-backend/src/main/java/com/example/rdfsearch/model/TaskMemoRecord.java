@@ -0,0 +1,83 @@
+package com.example.rdfsearch.model;
+
+import java.util.Date;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+
+/**
+ * 任务结果缓存记录 - 按任务类型和规范化输入的摘要保存任务结果及其写入的上下文变量
+ */
+@Entity
+public class TaskMemoRecord {
+
+    @Id
+    private String memoKey;
+
+    private String taskType;
+
+    private String outcomeId;
+
+    // 写入时的数据集版本，读取时与当前版本比较
+    private String datasetVersion;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date savedAt;
+
+    // 结果数据和上下文写入(JSON)
+    @Lob
+    private String payload;
+
+    // Getters and setters
+
+    public String getMemoKey() {
+        return memoKey;
+    }
+
+    public void setMemoKey(String memoKey) {
+        this.memoKey = memoKey;
+    }
+
+    public String getTaskType() {
+        return taskType;
+    }
+
+    public void setTaskType(String taskType) {
+        this.taskType = taskType;
+    }
+
+    public String getOutcomeId() {
+        return outcomeId;
+    }
+
+    public void setOutcomeId(String outcomeId) {
+        this.outcomeId = outcomeId;
+    }
+
+    public String getDatasetVersion() {
+        return datasetVersion;
+    }
+
+    public void setDatasetVersion(String datasetVersion) {
+        this.datasetVersion = datasetVersion;
+    }
+
+    public Date getSavedAt() {
+        return savedAt;
+    }
+
+    public void setSavedAt(Date savedAt) {
+        this.savedAt = savedAt;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+}
@@ -15,10 +15,12 @@ public class TaskNode {
     private String type;
     private Map<String, Object> inputParameters;
     private List<TaskOutcome> possibleOutcomes;
+    private List<String> dependsOn; // 依赖的任务ID，全部完成后才执行（DAG工作流）
 
     public TaskNode() {
         this.inputParameters = new HashMap<>();
         this.possibleOutcomes = new ArrayList<>();
+        this.dependsOn = new ArrayList<>();
     }
 
     public TaskNode(String id, String name, String type) {
@@ -28,6 +30,7 @@ public class TaskNode {
         this.description = "";
         this.inputParameters = new HashMap<>();
         this.possibleOutcomes = new ArrayList<>();
+        this.dependsOn = new ArrayList<>();
     }
 
     // Getters and Setters
@@ -85,4 +88,25 @@ public class TaskNode {
         }
         this.possibleOutcomes.add(outcome);
     }
-}
\ No newline at end of file
+
+    public List<String> getDependsOn() {
+        return dependsOn;
+    }
+
+    public void setDependsOn(List<String> dependsOn) {
+        this.dependsOn = dependsOn;
+    }
+
+    public void addDependency(String taskId) {
+        if (this.dependsOn == null) {
+            this.dependsOn = new ArrayList<>();
+        }
+        if (!this.dependsOn.contains(taskId)) {
+            this.dependsOn.add(taskId);
+        }
+    }
+
+    public boolean hasDependencies() {
+        return dependsOn != null && !dependsOn.isEmpty();
+    }
+}
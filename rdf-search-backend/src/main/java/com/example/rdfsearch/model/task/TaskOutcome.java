@@ -76,4 +76,15 @@ public class TaskOutcome {
     public void setResultData(Map<String, Object> resultData) {
         this.resultData = resultData;
     }
+
+    /**
+     * 创建本次执行使用的结果对象: 复制定义字段，结果数据为新的空Map。
+     * 工作流定义被所有运行共享，执行时只写入副本。
+     */
+    public TaskOutcome copyDefinition() {
+        TaskOutcome copy = new TaskOutcome(id, name, nextTaskId);
+        copy.description = description;
+        copy.condition = condition;
+        return copy;
+    }
 }
\ No newline at end of file
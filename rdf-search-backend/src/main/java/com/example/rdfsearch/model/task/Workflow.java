@@ -1,6 +1,10 @@
 package com.example.rdfsearch.model.task;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -15,14 +19,14 @@ public class Workflow {
     private String sourceTaskId; // 新增：源任务ID
 
     public Workflow() {
-        this.tasks = new HashMap<>();
+        this.tasks = new LinkedHashMap<>();
     }
 
     public Workflow(String id, String name) {
         this.id = id;
         this.name = name;
         this.description = "";
-        this.tasks = new HashMap<>();
+        this.tasks = new LinkedHashMap<>();
     }
 
     // Getters and Setters
@@ -77,7 +81,7 @@ public class Workflow {
 
     public void addTask(TaskNode task) {
         if (this.tasks == null) {
-            this.tasks = new HashMap<>();
+            this.tasks = new LinkedHashMap<>();
         }
 
         this.tasks.put(task.getId(), task);
@@ -91,4 +95,73 @@ public class Workflow {
     public TaskNode getTask(String taskId) {
         return this.tasks.get(taskId);
     }
-}
\ No newline at end of file
+
+    /**
+     * 是否为DAG工作流: 任一任务声明了依赖时按依赖关系并行调度，否则沿nextTaskId顺序执行
+     */
+    public boolean isDag() {
+        if (tasks == null) {
+            return false;
+        }
+        for (TaskNode task : tasks.values()) {
+            if (task.hasDependencies()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 直接依赖指定任务的任务ID
+     */
+    public List<String> getDependents(String taskId) {
+        List<String> dependents = new ArrayList<>();
+        for (TaskNode task : tasks.values()) {
+            if (task.hasDependencies() && task.getDependsOn().contains(taskId)) {
+                dependents.add(task.getId());
+            }
+        }
+        return dependents;
+    }
+
+    /**
+     * 按依赖关系拓扑排序，同层按添加顺序；依赖不存在或存在环时抛出异常
+     */
+    public List<String> topologicalOrder() {
+        Map<String, Integer> pending = new LinkedHashMap<>();
+        for (TaskNode task : tasks.values()) {
+            int count = 0;
+            if (task.hasDependencies()) {
+                for (String dependency : new LinkedHashSet<>(task.getDependsOn())) {
+                    if (!tasks.containsKey(dependency)) {
+                        throw new IllegalStateException("任务 " + task.getId() + " 依赖的任务不存在: " + dependency);
+                    }
+                    count++;
+                }
+            }
+            pending.put(task.getId(), count);
+        }
+
+        List<String> order = new ArrayList<>();
+        boolean progressed = true;
+        while (order.size() < tasks.size() && progressed) {
+            progressed = false;
+            for (Map.Entry<String, Integer> entry : pending.entrySet()) {
+                if (entry.getValue() == 0) {
+                    String taskId = entry.getKey();
+                    entry.setValue(-1);
+                    order.add(taskId);
+                    for (String dependent : getDependents(taskId)) {
+                        pending.merge(dependent, -1, Integer::sum);
+                    }
+                    progressed = true;
+                }
+            }
+        }
+
+        if (order.size() < tasks.size()) {
+            throw new IllegalStateException("工作流 " + id + " 的任务依赖存在环");
+        }
+        return order;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.rdfsearch.repository;
+
+import com.example.rdfsearch.model.DatasetVersionRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DatasetVersionRecordRepository extends JpaRepository<DatasetVersionRecord, String> {
+}
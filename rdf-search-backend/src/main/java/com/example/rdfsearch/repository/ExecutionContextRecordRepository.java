@@ -0,0 +1,24 @@
+package com.example.rdfsearch.repository;
+
+import com.example.rdfsearch.model.ExecutionContextRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface ExecutionContextRecordRepository extends JpaRepository<ExecutionContextRecord, String> {
+    // 删除某时间之前写入的上下文
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ExecutionContextRecord r WHERE r.savedAt < :date")
+    int deleteSavedBefore(@Param("date") Date date);
+
+    // 按完成状态查找，最近写入的在前
+    List<ExecutionContextRecord> findByFinishedOrderBySavedAtDesc(Boolean finished);
+}
@@ -0,0 +1,18 @@
+package com.example.rdfsearch.repository;
+
+import com.example.rdfsearch.model.TaskMemoRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface TaskMemoRecordRepository extends JpaRepository<TaskMemoRecord, String> {
+    // 删除不属于指定数据集版本的记录
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TaskMemoRecord r WHERE r.datasetVersion IS NULL OR r.datasetVersion <> :version")
+    int deleteOtherVersions(@Param("version") String version);
+}
@@ -0,0 +1,66 @@
+package com.example.rdfsearch.service;
+
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.rdfsearch.model.DatasetVersionRecord;
+import com.example.rdfsearch.repository.DatasetVersionRecordRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 持久的数据集版本号 - 本应用的每次SPARQL写入在发送前递增并写入H2，重启后从H2读取
+ *
+ * 先递增再写入数据集: 写入失败或进程在两者之间退出时版本号只会多变一次，
+ * 不会出现数据已变化而版本号未变的情况。版本号只反映经过本应用的写入，
+ * 外部直接写入Fuseki的变化（以及H2保存失败期间的写入）由使用方的过期时间兜底。
+ */
+@Component
+public class DatasetVersionStore {
+
+    private static final String NAME = "default";
+
+    @Autowired
+    private DatasetVersionRecordRepository recordRepository;
+
+    // 读取失败时的版本号前缀，使本次启动的版本号与任何已保存的记录都不同
+    private String prefix = "";
+    private long generation;
+
+    @PostConstruct
+    public void init() {
+        try {
+            generation = recordRepository.findById(NAME).map(DatasetVersionRecord::getGeneration).orElse(0L);
+        } catch (Exception e) {
+            prefix = UUID.randomUUID().toString().substring(0, 8) + ":";
+            System.err.println("读取数据集版本失败，版本号只在本次启动内有效: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 当前数据集版本号
+     */
+    public synchronized String currentVersion() {
+        return prefix + generation;
+    }
+
+    /**
+     * 在发送写入请求之前调用，递增并保存版本号
+     */
+    public synchronized void beforeWrite() {
+        generation++;
+        if (!prefix.isEmpty()) {
+            return;
+        }
+        try {
+            DatasetVersionRecord record = new DatasetVersionRecord();
+            record.setName(NAME);
+            record.setGeneration(generation);
+            recordRepository.save(record);
+        } catch (Exception e) {
+            System.err.println("保存数据集版本失败: " + e.getMessage());
+        }
+    }
+}
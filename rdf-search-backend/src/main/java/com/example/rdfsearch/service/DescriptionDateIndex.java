@@ -0,0 +1,354 @@
+package com.example.rdfsearch.service;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.update.UpdateFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 描述日期索引 - 把description中出现的日期解析为类型化的xsd:date:
+ * "从YYYY年MM月DD日"为ont:periodStart，"至YYYY年MM月DD日"为ont:periodEnd，
+ * 任意位置的"YYYY年MM月DD日"为ont:mentionsDate，每处出现都写入，与原REGEX条件匹配的文本一致。
+ * 日期区间按对写入ont:periodSpan（"开始日/结束日"）: 同一行中每个"从"日期与其后的每个"至"日期成对，
+ * 与原条件"从开始日.*至结束日"匹配的描述相同，多个区间的开始日和结束日不会交叉组合。
+ *
+ * 日期范围查询改为带常量的三元组模式，由存储的POS索引直接定位，
+ * 不再对每条描述做REGEX扫描。表格导入时随数据写入（应用内只有导入会写描述）；
+ * 启动后和每隔recheck-seconds由后台检查并补齐未索引的事件（包括外部直接写入Fuseki的数据），
+ * 首次补齐完成前查询仍使用原来的REGEX条件，结果不受影响。
+ */
+@Component
+public class DescriptionDateIndex {
+
+    private static final String ONT = "http://www.semanticweb.org/yoruh/ontologies/2024/9/untitled-ontology-11#";
+
+    public static final String START_PROPERTY = ONT + "periodStart";
+    public static final String END_PROPERTY = ONT + "periodEnd";
+    public static final String MENTION_PROPERTY = ONT + "mentionsDate";
+    public static final String SPAN_PROPERTY = ONT + "periodSpan";
+
+    // 索引格式版本，写在每个已索引的事件上；格式变化后旧版本的事件由后台重新补齐
+    private static final String VERSION_PROPERTY = ONT + "dateIndexVersion";
+    private static final int INDEX_VERSION = 2;
+
+    // 与原REGEX条件相同的文本: 查询日期带前导零，只有两位的月、日才可能被匹配到
+    private static final Pattern DATE_TEXT = Pattern.compile("(\\d{4})年(\\d{2})月(\\d{2})日");
+
+    // SPARQL中筛选含日期描述的正则
+    private static final String DATE_TEXT_REGEX = "[0-9]{4}年[0-9]{2}月[0-9]{2}日";
+
+    private static final int MAX_PASSES = 3;
+
+    private static final String XSD_DATE = "<" + XSDDatatype.XSDdate.getURI() + ">";
+
+    @Autowired
+    private SparqlService sparqlService;
+
+    @Value("${sparql.date-index.enabled:true}")
+    private boolean enabled;
+
+    // 补齐时每个INSERT DATA包含的事件数
+    @Value("${sparql.date-index.batch-size:500}")
+    private int batchSize;
+
+    // 重新检查是否有未索引事件的间隔
+    @Value("${sparql.date-index.recheck-seconds:300}")
+    private long recheckSeconds;
+
+    // 索引是否可用于查询，及最近一次确认全部补齐的时间
+    private volatile boolean ready;
+    private volatile long indexedAt;
+    private final AtomicBoolean indexing = new AtomicBoolean();
+    private volatile long failedAt;
+
+    private final AtomicLong indexedEvents = new AtomicLong();
+    private final AtomicLong unparsedDescriptions = new AtomicLong();
+
+    /**
+     * 解析描述中出现的日期，按索引属性分组；没有有效日期时返回空Map
+     */
+    public static Map<String, Set<LocalDate>> parseDates(String description) {
+        Map<String, Set<LocalDate>> dates = new LinkedHashMap<>();
+        if (description == null) {
+            return dates;
+        }
+        Matcher matcher = DATE_TEXT.matcher(description);
+        while (matcher.find()) {
+            LocalDate date;
+            try {
+                date = LocalDate.of(Integer.parseInt(matcher.group(1)),
+                        Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(3)));
+            } catch (DateTimeException e) {
+                continue;
+            }
+            dates.computeIfAbsent(MENTION_PROPERTY, k -> new LinkedHashSet<>()).add(date);
+            int prefix = matcher.start() - 1;
+            if (prefix >= 0 && description.charAt(prefix) == '从') {
+                dates.computeIfAbsent(START_PROPERTY, k -> new LinkedHashSet<>()).add(date);
+            } else if (prefix >= 0 && description.charAt(prefix) == '至') {
+                dates.computeIfAbsent(END_PROPERTY, k -> new LinkedHashSet<>()).add(date);
+            }
+        }
+        return dates;
+    }
+
+    /**
+     * 解析描述中的日期区间，返回"开始日/结束日"；
+     * 与REGEX条件"从开始日.*至结束日"一致: "."不匹配换行，因此只在同一行内成对
+     */
+    public static Set<String> parseSpans(String description) {
+        Set<String> spans = new LinkedHashSet<>();
+        if (description == null) {
+            return spans;
+        }
+        for (String line : description.split("[\\r\\n]")) {
+            List<LocalDate> starts = new ArrayList<>();
+            Matcher matcher = DATE_TEXT.matcher(line);
+            while (matcher.find()) {
+                LocalDate date;
+                try {
+                    date = LocalDate.of(Integer.parseInt(matcher.group(1)),
+                            Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(3)));
+                } catch (DateTimeException e) {
+                    continue;
+                }
+                int prefix = matcher.start() - 1;
+                if (prefix >= 0 && line.charAt(prefix) == '从') {
+                    starts.add(date);
+                } else if (prefix >= 0 && line.charAt(prefix) == '至') {
+                    for (LocalDate start : starts) {
+                        spans.add(spanValue(start, date));
+                    }
+                }
+            }
+        }
+        return spans;
+    }
+
+    private static String spanValue(LocalDate start, LocalDate end) {
+        return start + "/" + end;
+    }
+
+    /**
+     * 导入前为模型中的描述补充类型化日期，返回补充的资源数
+     */
+    public int enrich(Model model) {
+        Property description = model.createProperty(ONT + "description");
+
+        List<Statement> statements = model.listStatements(null, description, (String) null).toList();
+        int enriched = 0;
+        for (Statement statement : statements) {
+            if (!statement.getObject().isLiteral()) {
+                continue;
+            }
+            Map<String, Set<LocalDate>> dates = parseDates(statement.getString());
+            if (dates.isEmpty()) {
+                continue;
+            }
+            for (Map.Entry<String, Set<LocalDate>> entry : dates.entrySet()) {
+                Property property = model.createProperty(entry.getKey());
+                for (LocalDate date : entry.getValue()) {
+                    statement.getSubject().addLiteral(property,
+                            model.createTypedLiteral(date.toString(), XSDDatatype.XSDdate));
+                }
+            }
+            Property span = model.createProperty(SPAN_PROPERTY);
+            for (String value : parseSpans(statement.getString())) {
+                statement.getSubject().addLiteral(span, model.createLiteral(value));
+            }
+            statement.getSubject().addLiteral(model.createProperty(VERSION_PROPERTY),
+                    model.createTypedLiteral(String.valueOf(INDEX_VERSION), XSDDatatype.XSDinteger));
+            enriched++;
+        }
+        return enriched;
+    }
+
+    /**
+     * 开始日和结束日都精确匹配的条件，索引未就绪或日期无效时返回null（调用方使用REGEX条件）
+     */
+    public String exactRangePattern(String startDate, String endDate) {
+        LocalDate start = parseDate(startDate);
+        LocalDate end = parseDate(endDate);
+        if (start == null || end == null || !isReady()) {
+            return null;
+        }
+        return "  ?event ont:periodSpan " + typedSpan(startDate, endDate) + " .\n";
+    }
+
+    /**
+     * 开始日精确匹配的条件，索引未就绪或日期无效时返回null
+     */
+    public String startDayPattern(String date) {
+        LocalDate day = parseDate(date);
+        if (day == null || !isReady()) {
+            return null;
+        }
+        return "  ?event ont:periodStart " + dateLiteral(day) + " .\n";
+    }
+
+    /**
+     * 描述中任意位置出现指定日期的条件（包括区间的开始日和结束日），索引未就绪或日期无效时返回null
+     */
+    public String mentionsDayPattern(String date) {
+        LocalDate day = parseDate(date);
+        if (day == null || !isReady()) {
+            return null;
+        }
+        return "  ?event ont:mentionsDate " + dateLiteral(day) + " .\n";
+    }
+
+    private static LocalDate parseDate(String date) {
+        try {
+            return date != null ? LocalDate.parse(date.trim()) : null;
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static String dateLiteral(LocalDate date) {
+        return "\"" + date + "\"^^" + XSD_DATE;
+    }
+
+    /**
+     * 日期区间(YYYY-MM-DD, YYYY-MM-DD)对应的ont:periodSpan字面量，无效时返回null
+     */
+    public static String typedSpan(String startDate, String endDate) {
+        LocalDate start = parseDate(startDate);
+        LocalDate end = parseDate(endDate);
+        return start != null && end != null ? "\"" + spanValue(start, end) + "\"" : null;
+    }
+
+    /**
+     * 描述是否已全部补齐；导入随数据写入索引，数据版本变化不影响就绪状态。
+     * 首次补齐前或距上次确认超过recheck-seconds时触发后台检查，检查期间已就绪的索引继续使用
+     */
+    public boolean isReady() {
+        if (!enabled) {
+            return false;
+        }
+        if (System.currentTimeMillis() - indexedAt >= TimeUnit.SECONDS.toMillis(recheckSeconds)) {
+            refresh();
+        }
+        return ready;
+    }
+
+    private void refresh() {
+        // 补齐失败后间隔一段时间再重试
+        if (System.currentTimeMillis() - failedAt < 5000 || !indexing.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("description-date-index").start(() -> {
+            try {
+                // 直到一轮没有需要补齐的事件为止；
+                // 副本延迟等原因未能收敛时不标记就绪，下次查询再补
+                for (int pass = 0; pass < MAX_PASSES; pass++) {
+                    if (backfill() == 0) {
+                        indexedAt = System.currentTimeMillis();
+                        ready = true;
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                failedAt = System.currentTimeMillis();
+                System.err.println("补齐描述日期索引失败: " + e.getMessage());
+            } finally {
+                indexing.set(false);
+            }
+        });
+    }
+
+    /**
+     * 为描述中含日期但尚无类型化日期的事件解析描述并写入，返回写入的事件数；
+     * 没有需要补齐的事件时查询只返回日期无效的少数描述，兼作重新检查的探测
+     */
+    private int backfill() {
+        String queryString = "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n" +
+                "PREFIX ont: <" + ONT + ">\n" +
+                "SELECT ?event ?description WHERE {\n" +
+                "  ?event rdf:type ont:RockBurst .\n" +
+                "  ?event ont:description ?description .\n" +
+                "  FILTER NOT EXISTS { ?event ont:dateIndexVersion " + INDEX_VERSION + " }\n" +
+                "  FILTER(REGEX(STR(?description), \"" + DATE_TEXT_REGEX + "\"))\n" +
+                "}";
+
+        List<String> triples = new ArrayList<>();
+        long[] unparsed = new long[1];
+        sparqlService.streamQueryOrThrow(queryString, row -> {
+            Object event = row.get("event");
+            Object description = row.get("description");
+            Map<String, Set<LocalDate>> dates = description != null
+                    ? parseDates(description.toString())
+                    : Map.of();
+            if (event == null || dates.isEmpty()) {
+                unparsed[0]++;
+                return true;
+            }
+            String subject = NodeFmtLib.strNT(NodeFactory.createURI(event.toString()));
+            List<String> eventTriples = new ArrayList<>();
+            for (Map.Entry<String, Set<LocalDate>> entry : dates.entrySet()) {
+                for (LocalDate date : entry.getValue()) {
+                    eventTriples.add(subject + " <" + entry.getKey() + "> " + dateLiteral(date) + " .");
+                }
+            }
+            for (String span : parseSpans(description.toString())) {
+                eventTriples.add(subject + " <" + SPAN_PROPERTY + "> \"" + span + "\" .");
+            }
+            eventTriples.add(subject + " <" + VERSION_PROPERTY + "> " + INDEX_VERSION + " .");
+            triples.add(String.join("\n", eventTriples));
+            return true;
+        });
+        unparsedDescriptions.set(unparsed[0]);
+
+        if (!triples.isEmpty()) {
+            // 有未索引的事件（外部写入或旧格式），补齐完成前查询退回REGEX条件
+            ready = false;
+        }
+        for (int from = 0; from < triples.size(); from += batchSize) {
+            List<String> batch = triples.subList(from, Math.min(from + batchSize, triples.size()));
+            sparqlService.submitUpdate(UpdateFactory.create("INSERT DATA {\n" + String.join("\n", batch) + "\n}"))
+                    .join();
+        }
+
+        if (!triples.isEmpty()) {
+            indexedEvents.addAndGet(triples.size());
+            System.out.println("描述日期索引已补齐: " + triples.size() + " 个事件");
+        }
+        return triples.size();
+    }
+
+    /**
+     * 获取日期索引统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ready", enabled && ready);
+        stats.put("indexedAt", indexedAt);
+        stats.put("recheckSeconds", recheckSeconds);
+        stats.put("indexing", indexing.get());
+        stats.put("indexedEvents", indexedEvents.get());
+        stats.put("unparsedDescriptions", unparsedDescriptions.get());
+        return stats;
+    }
+}
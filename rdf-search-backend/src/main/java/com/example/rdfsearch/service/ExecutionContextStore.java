@@ -0,0 +1,310 @@
+package com.example.rdfsearch.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.rdfsearch.model.ExecutionContextRecord;
+import com.example.rdfsearch.repository.ExecutionContextRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 工作流执行上下文存储 - 按运行ID隔离，同一工作流的多次运行互不覆盖
+ *
+ * 内存中的上下文数量有上限，超出时按最近访问时间淘汰；长时间未访问的上下文定期淘汰。
+ * 执行中的上下文不会被淘汰。其余上下文（包括未结束的交互式上下文）淘汰时写入数据库，
+ * 之后按运行ID访问时再取回；写入失败的未结束上下文保留在内存中，不丢弃用户的进度。
+ * 执行中每完成一个任务写入一次检查点，进程重启或运行中断后可从检查点继续执行。
+ */
+@Component
+public class ExecutionContextStore {
+
+    @Autowired
+    private ExecutionContextRecordRepository recordRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 内存中保留的上下文上限
+    @Value("${workflow.context.max-entries:500}")
+    private int maxEntries;
+
+    // 超过该时长未访问的上下文被淘汰
+    @Value("${workflow.context.idle-minutes:30}")
+    private long idleMinutes;
+
+    // 上下文淘汰时是否写入数据库
+    @Value("${workflow.context.spill-enabled:true}")
+    private boolean spillEnabled;
+
+    // 数据库中上下文的保留时长
+    @Value("${workflow.context.spill-retention-hours:24}")
+    private long spillRetentionHours;
+
+    // 每完成一个任务是否写入检查点
+    @Value("${workflow.checkpoint.enabled:true}")
+    private boolean checkpointEnabled;
+
+    private final Map<String, TaskChainService.ExecutionContext> contexts = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService sweeper;
+    private final AtomicBoolean sweepScheduled = new AtomicBoolean();
+
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong restored = new AtomicLong();
+    private final AtomicLong checkpoints = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "execution-context-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * 为一次新运行创建上下文，替换同ID的旧上下文
+     */
+    TaskChainService.ExecutionContext create(String runId, String workflowId) {
+        TaskChainService.ExecutionContext context = new TaskChainService.ExecutionContext(runId, workflowId);
+        contexts.put(runId, context);
+        evictIfFull();
+        return context;
+    }
+
+    /**
+     * 获取交互式执行的上下文，内存中没有时从数据库取回，都没有时创建
+     */
+    TaskChainService.ExecutionContext getOrCreate(String runId, String workflowId) {
+        TaskChainService.ExecutionContext context = get(runId);
+        if (context != null) {
+            return context;
+        }
+        context = contexts.computeIfAbsent(runId, id -> {
+            TaskChainService.ExecutionContext created = new TaskChainService.ExecutionContext(id, workflowId);
+            created.setInteractive(true);
+            return created;
+        });
+        evictIfFull();
+        return context;
+    }
+
+    /**
+     * 获取上下文，不存在时返回null
+     */
+    TaskChainService.ExecutionContext get(String runId) {
+        TaskChainService.ExecutionContext context = contexts.get(runId);
+        if (context == null && persisted()) {
+            context = restore(runId);
+        }
+        if (context != null) {
+            context.touch();
+        }
+        return context;
+    }
+
+    /**
+     * 删除上下文（内存和数据库）
+     */
+    void remove(String runId) {
+        contexts.remove(runId);
+        if (persisted()) {
+            try {
+                recordRepository.deleteById(runId);
+            } catch (Exception e) {
+                System.err.println("删除执行上下文记录失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 写入检查点，失败时只记录错误，不影响执行
+     */
+    void checkpoint(TaskChainService.ExecutionContext context) {
+        if (checkpointEnabled && save(context)) {
+            checkpoints.incrementAndGet();
+        }
+    }
+
+    /**
+     * 列出数据库中未执行完成、当前也不在执行的运行
+     */
+    public List<Map<String, Object>> listInterrupted() {
+        List<Map<String, Object>> interrupted = new ArrayList<>();
+        if (!persisted()) {
+            return interrupted;
+        }
+        try {
+            for (ExecutionContextRecord record : recordRepository.findByFinishedOrderBySavedAtDesc(false)) {
+                if (Boolean.TRUE.equals(record.getInteractive())) {
+                    continue;
+                }
+                TaskChainService.ExecutionContext context = contexts.get(record.getRunId());
+                if (context != null && (context.isRunning() || context.isFinished())) {
+                    continue;
+                }
+                Map<String, Object> item = new HashMap<>();
+                item.put("runId", record.getRunId());
+                item.put("workflowId", record.getWorkflowId());
+                item.put("savedAt", record.getSavedAt());
+                interrupted.add(item);
+            }
+        } catch (Exception e) {
+            System.err.println("读取未完成的执行上下文失败: " + e.getMessage());
+        }
+        return interrupted;
+    }
+
+    private boolean persisted() {
+        return spillEnabled || checkpointEnabled;
+    }
+
+    private TaskChainService.ExecutionContext restore(String runId) {
+        try {
+            ExecutionContextRecord record = recordRepository.findById(runId).orElse(null);
+            if (record == null) {
+                return null;
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> snapshot = objectMapper.readValue(record.getSnapshot(), Map.class);
+            TaskChainService.ExecutionContext context = TaskChainService.ExecutionContext.fromSnapshot(snapshot);
+            TaskChainService.ExecutionContext existing = contexts.putIfAbsent(runId, context);
+            if (existing != null) {
+                return existing;
+            }
+            restored.incrementAndGet();
+            evictIfFull();
+            return context;
+        } catch (Exception e) {
+            System.err.println("读取执行上下文记录失败: " + runId + ", " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void evictIfFull() {
+        // 超出上限时交给后台线程淘汰，淘汰可能涉及写数据库
+        if (contexts.size() > maxEntries && sweepScheduled.compareAndSet(false, true)) {
+            sweeper.execute(this::sweep);
+        }
+    }
+
+    private void sweep() {
+        sweepScheduled.set(false);
+        try {
+            long idleBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(idleMinutes);
+            List<TaskChainService.ExecutionContext> candidates = new ArrayList<>();
+            for (TaskChainService.ExecutionContext context : contexts.values()) {
+                if (!context.isRunning()) {
+                    candidates.add(context);
+                }
+            }
+            candidates.sort(Comparator.comparingLong(TaskChainService.ExecutionContext::getLastAccess));
+
+            int excess = contexts.size() - maxEntries;
+            for (TaskChainService.ExecutionContext context : candidates) {
+                if (excess <= 0 && context.getLastAccess() >= idleBefore) {
+                    break;
+                }
+                if (evict(context)) {
+                    excess--;
+                }
+            }
+
+            if (persisted()) {
+                recordRepository.deleteSavedBefore(
+                        new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(spillRetentionHours)));
+            }
+        } catch (Exception e) {
+            System.err.println("淘汰执行上下文失败: " + e.getMessage());
+        }
+    }
+
+    private boolean evict(TaskChainService.ExecutionContext context) {
+        if (context.isRunning()) {
+            return false;
+        }
+        if (spillEnabled) {
+            if (save(context)) {
+                spilled.incrementAndGet();
+            } else if (!context.isFinished()) {
+                // 未结束的上下文写入失败时不淘汰，下次清理时重试
+                return false;
+            }
+        }
+        if (!contexts.remove(context.getId(), context)) {
+            return false;
+        }
+        evicted.incrementAndGet();
+        return true;
+    }
+
+    private boolean save(TaskChainService.ExecutionContext context) {
+        try {
+            ExecutionContextRecord record = new ExecutionContextRecord();
+            record.setRunId(context.getId());
+            record.setWorkflowId(context.getWorkflowId());
+            record.setFinished(context.isFinished());
+            record.setInteractive(context.isInteractive());
+            record.setSavedAt(new Date());
+            record.setSnapshot(objectMapper.writeValueAsString(context.toSnapshot()));
+            recordRepository.save(record);
+            return true;
+        } catch (Exception e) {
+            System.err.println("写入执行上下文记录失败: " + context.getId() + ", " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 获取上下文存储统计信息
+     */
+    public Map<String, Object> getStats() {
+        int running = 0;
+        int finished = 0;
+        for (TaskChainService.ExecutionContext context : contexts.values()) {
+            if (context.isRunning()) {
+                running++;
+            } else if (context.isFinished()) {
+                finished++;
+            }
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("inMemory", contexts.size());
+        stats.put("running", running);
+        stats.put("finished", finished);
+        stats.put("maxEntries", maxEntries);
+        stats.put("idleMinutes", idleMinutes);
+        stats.put("spillEnabled", spillEnabled);
+        stats.put("evicted", evicted.get());
+        stats.put("spilled", spilled.get());
+        stats.put("restored", restored.get());
+        stats.put("checkpointEnabled", checkpointEnabled);
+        stats.put("checkpoints", checkpoints.get());
+        return stats;
+    }
+}
@@ -1,16 +1,35 @@
 package com.example.rdfsearch.service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.query.*;
 import org.apache.jena.rdf.model.RDFNode;
-import org.apache.jena.update.UpdateExecutionFactory;
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.exec.http.QueryExecutionHTTP;
+import org.apache.jena.sparql.exec.http.QueryExecutionHTTPBuilder;
+import org.apache.jena.sparql.exec.http.UpdateExecutionHTTP;
+import org.apache.jena.sparql.util.ModelUtils;
 import org.apache.jena.update.UpdateFactory;
-import org.apache.jena.update.UpdateProcessor;
 import org.apache.jena.update.UpdateRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -18,13 +37,66 @@ import org.springframework.stereotype.Service;
 
 import com.example.rdfsearch.model.RdfInstance;
 import com.example.rdfsearch.model.TaskHistory;
-import com.example.rdfsearch.repository.TaskHistoryRepository;
+import com.example.rdfsearch.service.sparql.CountingHttpClient;
+import com.example.rdfsearch.service.sparql.EmbeddedDataset;
+import com.example.rdfsearch.service.sparql.FusekiConnectionPool;
+import com.example.rdfsearch.service.sparql.PreparedQueryCache;
+import com.example.rdfsearch.service.sparql.QueryDeadline;
+import com.example.rdfsearch.service.sparql.QueryMetrics;
+import com.example.rdfsearch.service.sparql.QueryParams;
+import com.example.rdfsearch.service.sparql.RdfInstanceDecoder;
+import com.example.rdfsearch.service.sparql.ReplicaRouter;
+import com.example.rdfsearch.service.sparql.RockBurstSnapshot;
+import com.example.rdfsearch.service.sparql.QueryResultCache;
+import com.example.rdfsearch.service.sparql.SearchCursor;
+import com.example.rdfsearch.service.sparql.SingleFlight;
+import com.example.rdfsearch.service.sparql.SparqlAsyncExecutor;
+import com.example.rdfsearch.service.sparql.TypedRowDecoder;
+import com.example.rdfsearch.service.sparql.UpdatePipeline;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 @Service
 public class SparqlService {
-    // 注入TaskHistoryRepository
+    // 共享的Fuseki HTTP连接池
+    @Autowired
+    private FusekiConnectionPool connectionPool;
+
+    // 搜索查询模板缓存
+    @Autowired
+    private PreparedQueryCache preparedQueryCache;
+
+    // SELECT结果缓存，更新时按版本号失效
+    @Autowired
+    private QueryResultCache resultCache;
+
+    // 虚拟线程异步执行器
+    @Autowired
+    private SparqlAsyncExecutor asyncExecutor;
+
+    // 查询历史异步批量记录
+    @Autowired
+    private TaskHistoryRecorder taskHistoryRecorder;
+
+    @Autowired
+    private DatasetVersionStore datasetVersionStore;
+
+    // 相同查询的并发请求合并
+    @Autowired
+    private SingleFlight singleFlight;
+
+    // 进程内TDB2数据集（sparql.mode=embedded时启用）
+    @Autowired
+    private EmbeddedDataset embeddedDataset;
+
+    // 按查询模板统计延迟/行数/字节数，并记录慢查询
+    @Autowired
+    private QueryMetrics queryMetrics;
+
+    // 读副本路由，写后读取固定到主库
     @Autowired
-    private TaskHistoryRepository taskHistoryRepository;
+    private ReplicaRouter replicaRouter;
 
     // 从配置文件注入Fuseki端点
     @Value("${fuseki.query.endpoint:http://localhost:3030/mydata/query}")
@@ -33,6 +105,70 @@ public class SparqlService {
     @Value("${fuseki.update.endpoint:http://localhost:3030/mydata/update}")
     private String updateEndpoint;
 
+    // SELECT结果格式: auto(按投影宽度选择) / thrift / json / default(Jena默认协商)
+    @Value("${fuseki.results.format:auto}")
+    private String resultFormat;
+
+    // auto模式下投影变量数达到该值时使用Thrift
+    @Value("${fuseki.results.thrift-min-vars:6}")
+    private int thriftMinVars;
+
+    // 搜索分页大小
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    // 快照加载失败后的重试间隔
+    private static final long SNAPSHOT_RETRY_MS = 5000;
+
+    // 优先Thrift，服务端不支持时回退到JSON
+    private static final String THRIFT_ACCEPT = WebContent.contentTypeResultsThrift + ", "
+            + WebContent.contentTypeResultsJSON + ";q=0.9";
+
+    // 流式读取: Jena的JSON结果解析器会先读入完整结果，只接受可逐行解析的Thrift和XML
+    private static final String STREAM_ACCEPT = WebContent.contentTypeResultsThrift + ", "
+            + WebContent.contentTypeResultsXML + ";q=0.9";
+
+    // 更新合并管道: 时间窗口内的更新合并为一个请求发送
+    @Value("${sparql.update.batch.enabled:true}")
+    private boolean updateBatchEnabled;
+
+    @Value("${sparql.update.batch.window-ms:20}")
+    private long updateBatchWindowMs;
+
+    @Value("${sparql.update.batch.max-size:50}")
+    private int updateBatchMaxSize;
+
+    // 岩爆数值属性列式快照，advancedSearch/searchByLength在快照可用时不再访问Fuseki
+    @Value("${sparql.snapshot.enabled:true}")
+    private boolean snapshotEnabled;
+
+    // 数据版本未变时快照的最长使用时间，用于感知绕过本服务的外部写入
+    @Value("${sparql.snapshot.max-age-seconds:300}")
+    private long snapshotMaxAgeSeconds;
+
+    @Value("${sparql.snapshot.load-timeout-ms:60000}")
+    private long snapshotLoadTimeoutMs;
+
+    private volatile RockBurstSnapshot snapshot;
+    private final AtomicBoolean snapshotLoading = new AtomicBoolean();
+    private volatile long snapshotFailedAt;
+
+    private UpdatePipeline updatePipeline;
+
+    @PostConstruct
+    public void initUpdatePipeline() {
+        if (updateBatchEnabled) {
+            updatePipeline = new UpdatePipeline(this::applyUpdate, updateBatchWindowMs, updateBatchMaxSize);
+        }
+    }
+
+    @PreDestroy
+    public void shutdownUpdatePipeline() {
+        if (updatePipeline != null) {
+            updatePipeline.shutdown();
+        }
+    }
+
     /**
      * 执行SPARQL更新操作
      */
@@ -42,12 +178,11 @@ public class SparqlService {
             UpdateRequest updateRequest = UpdateFactory.create(updateQueryString);
 
             // 执行更新操作
-            UpdateProcessor processor = UpdateExecutionFactory.createRemote(
-                    updateRequest, updateEndpoint);
-            processor.execute();
+            submitUpdate(updateRequest).join();
         } catch (Exception e) {
+            QueryDeadline.rethrowIfAborted(e);
             e.printStackTrace();
-            System.err.println("SPARQL更新失败: " + e.getMessage());
+            System.err.println("SPARQL更新失败: " + unwrap(e).getMessage());
         }
     }
 
@@ -56,122 +191,308 @@ public class SparqlService {
      */
     public void update(String updateQueryString) {
         try {
-            System.out.println("执行SPARQL更新: " + updateQueryString);
 
             // 创建并执行更新请求
             UpdateRequest updateRequest = UpdateFactory.create(updateQueryString);
-            UpdateProcessor processor = UpdateExecutionFactory.createRemote(
-                    updateRequest, updateEndpoint);
-            processor.execute();
+            submitUpdate(updateRequest).join();
 
             System.out.println("更新成功完成");
         } catch (Exception e) {
-            System.err.println("SPARQL更新失败: " + e.getMessage());
+            QueryDeadline.rethrowIfAborted(e);
+            System.err.println("SPARQL更新失败: " + unwrap(e).getMessage());
             e.printStackTrace();
         }
     }
 
+    /**
+     * 与update相同，但更新失败时抛出异常，供需要确认写入结果的调用方使用
+     */
+    public void updateOrThrow(String updateQueryString) {
+        UpdateRequest updateRequest = UpdateFactory.create(updateQueryString);
+        try {
+            submitUpdate(updateRequest).join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * 提交更新到合并管道，返回的Future在更新写入后完成
+     * 同一调用方先后提交的更新按顺序执行
+     */
+    public CompletableFuture<Void> submitUpdate(UpdateRequest updateRequest) {
+        // 截止时间已过的请求不再发起写入
+        QueryDeadline.checkCurrent();
+
+        // 写入在主库提交（或失败、结果未知）之后，本会话在sticky-ms内的读取固定到主库
+        String session = ReplicaRouter.currentSession();
+        return sendToPipeline(updateRequest)
+                .whenComplete((result, error) -> replicaRouter.recordWrite(session));
+    }
+
+    private CompletableFuture<Void> sendToPipeline(UpdateRequest updateRequest) {
+        if (updatePipeline == null) {
+            try {
+                applyUpdate(updateRequest);
+                return CompletableFuture.completedFuture(null);
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return updatePipeline.submit(updateRequest);
+    }
+
+    /**
+     * 获取更新合并管道统计信息
+     */
+    public Map<String, Object> getUpdatePipelineStats() {
+        if (updatePipeline == null) {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("enabled", false);
+            return stats;
+        }
+        Map<String, Object> stats = updatePipeline.getStats();
+        stats.put("enabled", true);
+        return stats;
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * 并发合并的键：固定到主库的读取不与可能发往副本的执行合并
+     */
+    private String flightKey(String cacheKey, long version) {
+        return cacheKey + "@" + version + (replicaRouter.isPinnedToPrimary() ? "@primary" : "");
+    }
+
+    /**
+     * 放入结果缓存，副本可能尚未同步最近写入时不缓存从副本读到的结果
+     */
+    private void cacheResult(String cacheKey, Object value, long version) {
+        if (replicaRouter.isPinnedToPrimary() || replicaRouter.isReplicaReadConsistent()) {
+            resultCache.put(cacheKey, value, version);
+        }
+    }
+
     /**
      * 执行SPARQL查询并返回通用结果列表
      * 这个方法是为了支持TaskService而添加的
      */
     public List<Map<String, String>> query(String queryString) {
-        List<Map<String, String>> results = new ArrayList<>();
+        String cacheKey = "query:" + QueryResultCache.normalize(queryString);
+        List<Map<String, String>> cached = resultCache.get(cacheKey);
+        if (cached != null) {
+            return copyRows(cached);
+        }
 
-        try {
-            Query query = QueryFactory.create(queryString);
-            try (QueryExecution qexec = QueryExecutionFactory.sparqlService(queryEndpoint, query)) {
-                ResultSet resultSet = qexec.execSelect();
-
-                while (resultSet.hasNext()) {
-                    QuerySolution solution = resultSet.nextSolution();
-                    Map<String, String> row = new HashMap<>();
-
-                    solution.varNames().forEachRemaining(varName -> {
-                        RDFNode node = solution.get(varName);
-                        if (node != null) {
-                            row.put(varName, node.toString());
-                        }
-                    });
+        // 相同查询并发到达时只执行一次，其余调用方共享只读结果，各自得到副本
+        long version = resultCache.currentVersion();
+        return copyRows(singleFlight.execute(flightKey(cacheKey, version), () -> {
+            List<Map<String, String>> results = new ArrayList<>();
 
-                    results.add(row);
-                }
+            try {
+                select(queryString, false, resultSet -> {
+                    while (resultSet.hasNext()) {
+                        QuerySolution solution = resultSet.nextSolution();
+                        Map<String, String> row = new HashMap<>();
+
+                        solution.varNames().forEachRemaining(varName -> {
+                            RDFNode node = solution.get(varName);
+                            if (node != null) {
+                                row.put(varName, node.toString());
+                            }
+                        });
+
+                        results.add(row);
+                    }
+                });
+            } catch (Exception e) {
+                QueryDeadline.rethrowIfAborted(e);
+                e.printStackTrace();
+                System.err.println("SPARQL查询失败: " + e.getMessage());
+                return freezeRows(results);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("SPARQL查询失败: " + e.getMessage());
-        }
 
-        return results;
+            List<Map<String, String>> frozen = freezeRows(results);
+            cacheResult(cacheKey, frozen, version);
+            return frozen;
+        }));
     }
 
     /**
      * 执行SPARQL查询并返回通用结果列表
-     * 为TaskExecutor服务的方法
+     * 为TaskExecutor服务的方法；不返回null，查询失败时返回失败前已读取的行（通常为空列表）
      */
     public List<Map<String, Object>> executeQuery(String queryString) {
-        List<Map<String, Object>> results = new ArrayList<>();
+        String cacheKey = "rows:" + QueryResultCache.normalize(queryString);
+        List<Map<String, Object>> cached = resultCache.get(cacheKey);
+        if (cached != null) {
+            return copyRows(cached);
+        }
 
-        try {
-            Query query = QueryFactory.create(queryString);
-            try (QueryExecution qexec = QueryExecutionFactory.sparqlService(queryEndpoint, query)) {
-                ResultSet resultSet = qexec.execSelect();
-
-                while (resultSet.hasNext()) {
-                    QuerySolution solution = resultSet.nextSolution();
-                    Map<String, Object> row = new HashMap<>();
-
-                    solution.varNames().forEachRemaining(varName -> {
-                        RDFNode node = solution.get(varName);
-                        if (node != null) {
-                            if (node.isLiteral()) {
-                                // 根据字面量类型转换为适当的Java类型
-                                try {
-                                    if (node.asLiteral().getDatatype() != null) {
-                                        String datatypeURI = node.asLiteral().getDatatype().getURI();
-                                        if (datatypeURI.contains("integer")) {
-                                            row.put(varName, node.asLiteral().getInt());
-                                        } else if (datatypeURI.contains("float") || datatypeURI.contains("double")) {
-                                            row.put(varName, node.asLiteral().getFloat());
-                                        } else if (datatypeURI.contains("boolean")) {
-                                            row.put(varName, node.asLiteral().getBoolean());
-                                        } else if (datatypeURI.contains("dateTime")) {
-                                            row.put(varName, node.asLiteral().getString());
-                                        } else {
-                                            row.put(varName, node.asLiteral().getString());
-                                        }
-                                    } else {
-                                        row.put(varName, node.asLiteral().getString());
-                                    }
-                                } catch (Exception e) {
-                                    // 转换失败时使用字符串
-                                    row.put(varName, node.asLiteral().getString());
-                                }
-                            } else {
-                                // 资源节点
-                                row.put(varName, node.toString());
-                            }
-                        }
-                    });
+        long version = resultCache.currentVersion();
+        return copyRows(singleFlight.execute(flightKey(cacheKey, version), () -> {
+            List<Map<String, Object>> results = new ArrayList<>();
 
+            try {
+                forEachTypedRow(queryString, false, row -> {
                     results.add(row);
-                }
+                    return true;
+                });
+            } catch (Exception e) {
+                QueryDeadline.rethrowIfAborted(e);
+                e.printStackTrace();
+                System.err.println("SPARQL查询失败: " + e.getMessage());
+                return freezeRows(results);
             }
+
+            List<Map<String, Object>> frozen = freezeRows(results);
+            cacheResult(cacheKey, frozen, version);
+            return frozen;
+        }));
+    }
+
+    /**
+     * 流式执行SPARQL查询，结果行边读取边交给rowHandler处理，不在内存中保留完整结果
+     * rowHandler返回false时提前终止查询并关闭与Fuseki的连接
+     *
+     * @return 已处理的行数
+     */
+    public long streamQuery(String queryString, Predicate<Map<String, Object>> rowHandler) {
+        try {
+            return forEachTypedRow(queryString, true, rowHandler);
         } catch (Exception e) {
+            QueryDeadline.rethrowIfAborted(e);
             e.printStackTrace();
             System.err.println("SPARQL查询失败: " + e.getMessage());
+            return 0;
         }
+    }
 
-        return results;
+    /**
+     * 与streamQuery相同，但查询失败时抛出异常，供需要区分"无结果"与"查询失败"的调用方使用
+     */
+    public long streamQueryOrThrow(String queryString, Predicate<Map<String, Object>> rowHandler) {
+        return forEachTypedRow(queryString, true, rowHandler);
+    }
+
+    /**
+     * 逐行读取查询结果并转换为Java类型，异常直接抛出由调用方处理
+     * streaming为true时请求可逐行解析的结果格式，结果不会先整体读入内存
+     */
+    private long forEachTypedRow(String queryString, boolean streaming, Predicate<Map<String, Object>> rowHandler) {
+        long[] rowCount = { 0 };
+
+        select(queryString, streaming, resultSet -> {
+            // 每个结果集只解析一次变量位置
+            TypedRowDecoder decoder = TypedRowDecoder.forVars(resultSet.getResultVars());
+            while (resultSet.hasNext()) {
+                rowCount[0]++;
+                if (!rowHandler.test(decoder.decode(resultSet.nextBinding()))) {
+                    break;
+                }
+            }
+        });
+
+        return rowCount[0];
+    }
+
+    /**
+     * 将结果行转换为只读列表，缓存中的结果在多个调用方之间共享
+     */
+    private static <V> List<Map<String, V>> freezeRows(List<Map<String, V>> rows) {
+        List<Map<String, V>> frozen = new ArrayList<>(rows.size());
+        for (Map<String, V> row : rows) {
+            frozen.add(Collections.unmodifiableMap(row));
+        }
+        return Collections.unmodifiableList(frozen);
+    }
+
+    /**
+     * 缓存中和并发合并共享的结果只读，返回给调用方可修改的副本，与未缓存时每次新建结果的行为一致
+     */
+    private static <V> List<Map<String, V>> copyRows(List<Map<String, V>> rows) {
+        List<Map<String, V>> copy = new ArrayList<>(rows.size());
+        for (Map<String, V> row : rows) {
+            copy.add(new HashMap<>(row));
+        }
+        return copy;
+    }
+
+    private static void copyInstances(List<RdfInstance> shared, List<RdfInstance> target) {
+        for (RdfInstance instance : shared) {
+            target.add(instance.copy());
+        }
+    }
+
+    /**
+     * 异步执行SPARQL查询，在虚拟线程上运行，调用线程立即返回
+     */
+    public CompletableFuture<List<Map<String, String>>> queryAsync(String queryString) {
+        return asyncExecutor.submit(() -> query(queryString));
+    }
+
+    /**
+     * 异步执行SPARQL查询并返回类型化结果
+     */
+    public CompletableFuture<List<Map<String, Object>>> executeQueryAsync(String queryString) {
+        return asyncExecutor.submit(() -> executeQuery(queryString));
+    }
+
+    /**
+     * 异步执行SPARQL更新
+     */
+    public CompletableFuture<Void> updateAsync(String updateQueryString) {
+        try {
+            return submitUpdate(UpdateFactory.create(updateQueryString))
+                    .exceptionally(e -> {
+                        System.err.println("SPARQL异步更新失败: " + unwrap(e).getMessage());
+                        return null;
+                    });
+        } catch (Exception e) {
+            System.err.println("SPARQL异步更新失败: " + e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * 在SPARQL异步执行器上运行任意查询逻辑，供控制器返回异步响应
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> task) {
+        return asyncExecutor.submit(task);
     }
 
     /**
      * 基本长度搜索
      */
     public List<RdfInstance> searchByLength(int minLength, int maxLength) {
+        return searchByLength(minLength, maxLength, null, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * 基本长度搜索（keyset分页）
+     * 按(长度, URI)排序，cursor为上一页返回的游标，为null时返回第一页
+     */
+    public List<RdfInstance> searchByLength(int minLength, int maxLength, String cursor, int pageSize) {
         List<RdfInstance> results = new ArrayList<>();
+        SearchCursor after = cursor != null && !cursor.isEmpty() ? SearchCursor.decode(cursor) : null;
+        if (after != null && !after.isLengthOrdered()) {
+            throw new IllegalArgumentException("分页游标与长度搜索不匹配");
+        }
+
+        RockBurstSnapshot current = currentSnapshot();
+        if (current != null) {
+            return hydrate(current.searchByLength(minLength, maxLength,
+                    after != null ? after.getLengthValue() : null,
+                    after != null ? after.getUri() : null,
+                    clampPageSize(pageSize)));
+        }
 
-        // 构建SPARQL查询 - 查询所有属性
+        // 构建SPARQL查询 - 子查询按(长度, URI)取一页不重复的键，再连接其他属性；
+        // 多值属性使一个键对应多行，LIMIT作用于结果行时会在键的中间截断，下一页从该键之后开始会漏掉剩余的行
         String queryString = "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n" +
                 "PREFIX ont: <http://www.semanticweb.org/yoruh/ontologies/2024/9/untitled-ontology-11#>\n" +
                 "PREFIX xsd: <http://www.w3.org/2001/XMLSchema#>\n" +
@@ -179,8 +500,15 @@ public class SparqlService {
                 "?cumulativeApparentVolume ?dailyEventRate ?dailyEnergyRelease " +
                 "?dailyApparentVolumeRate ?serialNumber ?mileage ?startMileage " +
                 "?endMileage ?description ?riskType WHERE {\n" +
-                "  ?uri ont:length ?length .\n" +
-                "  FILTER (?length >= " + minLength + " && ?length <= " + maxLength + ")\n" +
+                "  {\n" +
+                "    SELECT DISTINCT ?uri ?length WHERE {\n" +
+                "      ?uri ont:length ?length .\n" +
+                "      FILTER (?length >= ?minLength && ?length <= ?maxLength)\n" +
+                (after != null
+                        ? "      FILTER (?length > ?afterLength || (?length = ?afterLength && STR(?uri) > ?afterUri))\n"
+                        : "") +
+                "    } ORDER BY ?length ?uri LIMIT " + clampPageSize(pageSize) + "\n" +
+                "  }\n" +
                 "  OPTIONAL { ?uri ont:microseismicEventCount ?microseismicEventCount }\n" +
                 "  OPTIONAL { ?uri ont:energyRelease ?energyRelease }\n" +
                 "  OPTIONAL { ?uri ont:cumulativeApparentVolume ?cumulativeApparentVolume }\n" +
@@ -193,10 +521,17 @@ public class SparqlService {
                 "  OPTIONAL { ?uri ont:endMileage ?endMileage }\n" +
                 "  OPTIONAL { ?uri ont:description ?description }\n" +
                 "  OPTIONAL { ?uri ont:riskType ?riskType }\n" +
-                "} ORDER BY ?length LIMIT 100";
-
-        // 执行查询并处理结果
-        executeQuery(queryString, results);
+                "} ORDER BY ?length ?uri";
+
+        // 绑定参数并执行查询
+        QueryParams params = new QueryParams()
+                .integer("minLength", minLength)
+                .integer("maxLength", maxLength);
+        if (after != null) {
+            params.node("afterLength", after.getLengthNode())
+                    .string("afterUri", after.getUri());
+        }
+        executeQuery(preparedQueryCache.bind(queryString, params), queryString, true, results);
 
         return results;
     }
@@ -210,18 +545,52 @@ public class SparqlService {
             Float energyReleaseMin, Float energyReleaseMax,
             Float dailyEnergyReleaseMin, Float dailyEnergyReleaseMax,
             List<String> riskTypes) {
+        return advancedSearch(lengthMin, lengthMax,
+                microseismicEventCountMin, microseismicEventCountMax,
+                energyReleaseMin, energyReleaseMax,
+                dailyEnergyReleaseMin, dailyEnergyReleaseMax,
+                riskTypes, null, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * 高级多属性搜索（keyset分页）
+     * 按URI排序，cursor为上一页返回的游标，为null时返回第一页
+     */
+    public List<RdfInstance> advancedSearch(
+            Float lengthMin, Float lengthMax,
+            Integer microseismicEventCountMin, Integer microseismicEventCountMax,
+            Float energyReleaseMin, Float energyReleaseMax,
+            Float dailyEnergyReleaseMin, Float dailyEnergyReleaseMax,
+            List<String> riskTypes, String cursor, int pageSize) {
 
         List<RdfInstance> results = new ArrayList<>();
+        QueryParams params = new QueryParams();
+        SearchCursor after = cursor != null && !cursor.isEmpty() ? SearchCursor.decode(cursor) : null;
+        if (after != null && after.isLengthOrdered()) {
+            throw new IllegalArgumentException("分页游标与高级搜索不匹配");
+        }
+
+        // 至少有一个过滤条件时由快照回答，全部为空时仍走原查询
+        boolean filtered = lengthMin != null || lengthMax != null
+                || microseismicEventCountMin != null || microseismicEventCountMax != null
+                || energyReleaseMin != null || energyReleaseMax != null
+                || dailyEnergyReleaseMin != null || dailyEnergyReleaseMax != null
+                || (riskTypes != null && !riskTypes.isEmpty());
+        RockBurstSnapshot current = filtered ? currentSnapshot() : null;
+        if (current != null) {
+            RockBurstSnapshot.Range[] ranges = new RockBurstSnapshot.Range[4];
+            ranges[RockBurstSnapshot.LENGTH] = RockBurstSnapshot.Range.of(lengthMin, lengthMax);
+            ranges[RockBurstSnapshot.MICROSEISMIC_EVENT_COUNT] =
+                    RockBurstSnapshot.Range.of(microseismicEventCountMin, microseismicEventCountMax);
+            ranges[RockBurstSnapshot.ENERGY_RELEASE] = RockBurstSnapshot.Range.of(energyReleaseMin, energyReleaseMax);
+            ranges[RockBurstSnapshot.DAILY_ENERGY_RELEASE] =
+                    RockBurstSnapshot.Range.of(dailyEnergyReleaseMin, dailyEnergyReleaseMax);
+            return hydrate(current.search(ranges, riskTypes,
+                    after != null ? after.getUri() : null, clampPageSize(pageSize)));
+        }
 
-        // 构建SPARQL查询
+        // 构建SPARQL查询模板的条件部分，参数值通过变量绑定传入
         StringBuilder queryBuilder = new StringBuilder();
-        queryBuilder.append("PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n");
-        queryBuilder.append("PREFIX ont: <http://www.semanticweb.org/yoruh/ontologies/2024/9/untitled-ontology-11#>\n");
-        queryBuilder.append("PREFIX xsd: <http://www.w3.org/2001/XMLSchema#>\n");
-        queryBuilder.append("SELECT ?uri ?length ?microseismicEventCount ?energyRelease ");
-        queryBuilder.append("?cumulativeApparentVolume ?dailyEventRate ?dailyEnergyRelease ");
-        queryBuilder.append("?dailyApparentVolumeRate ?serialNumber ?mileage ?startMileage ");
-        queryBuilder.append("?endMileage ?description ?riskType WHERE {\n");
 
         // 添加搜索过滤条件
         List<String> filters = new ArrayList<>();
@@ -229,12 +598,18 @@ public class SparqlService {
         // 长度过滤器
         if (lengthMin != null || lengthMax != null) {
             queryBuilder.append("  ?uri ont:length ?length .\n");
+            if (lengthMin != null) {
+                params.decimal("lengthMin", lengthMin);
+            }
+            if (lengthMax != null) {
+                params.decimal("lengthMax", lengthMax);
+            }
             if (lengthMin != null && lengthMax != null) {
-                filters.add("?length >= " + lengthMin + " && ?length <= " + lengthMax);
+                filters.add("?length >= ?lengthMin && ?length <= ?lengthMax");
             } else if (lengthMin != null) {
-                filters.add("?length >= " + lengthMin);
+                filters.add("?length >= ?lengthMin");
             } else if (lengthMax != null) {
-                filters.add("?length <= " + lengthMax);
+                filters.add("?length <= ?lengthMax");
             }
         } else {
             queryBuilder.append("  OPTIONAL { ?uri ont:length ?length }\n");
@@ -243,13 +618,19 @@ public class SparqlService {
         // 微震事件数过滤器
         if (microseismicEventCountMin != null || microseismicEventCountMax != null) {
             queryBuilder.append("  ?uri ont:microseismicEventCount ?microseismicEventCount .\n");
+            if (microseismicEventCountMin != null) {
+                params.integer("microseismicEventCountMin", microseismicEventCountMin);
+            }
+            if (microseismicEventCountMax != null) {
+                params.integer("microseismicEventCountMax", microseismicEventCountMax);
+            }
             if (microseismicEventCountMin != null && microseismicEventCountMax != null) {
-                filters.add("?microseismicEventCount >= " + microseismicEventCountMin +
-                        " && ?microseismicEventCount <= " + microseismicEventCountMax);
+                filters.add("?microseismicEventCount >= ?microseismicEventCountMin" +
+                        " && ?microseismicEventCount <= ?microseismicEventCountMax");
             } else if (microseismicEventCountMin != null) {
-                filters.add("?microseismicEventCount >= " + microseismicEventCountMin);
+                filters.add("?microseismicEventCount >= ?microseismicEventCountMin");
             } else if (microseismicEventCountMax != null) {
-                filters.add("?microseismicEventCount <= " + microseismicEventCountMax);
+                filters.add("?microseismicEventCount <= ?microseismicEventCountMax");
             }
         } else {
             queryBuilder.append("  OPTIONAL { ?uri ont:microseismicEventCount ?microseismicEventCount }\n");
@@ -258,13 +639,18 @@ public class SparqlService {
         // 能量释放过滤器
         if (energyReleaseMin != null || energyReleaseMax != null) {
             queryBuilder.append("  ?uri ont:energyRelease ?energyRelease .\n");
+            if (energyReleaseMin != null) {
+                params.decimal("energyReleaseMin", energyReleaseMin);
+            }
+            if (energyReleaseMax != null) {
+                params.decimal("energyReleaseMax", energyReleaseMax);
+            }
             if (energyReleaseMin != null && energyReleaseMax != null) {
-                filters.add("?energyRelease >= " + energyReleaseMin +
-                        " && ?energyRelease <= " + energyReleaseMax);
+                filters.add("?energyRelease >= ?energyReleaseMin && ?energyRelease <= ?energyReleaseMax");
             } else if (energyReleaseMin != null) {
-                filters.add("?energyRelease >= " + energyReleaseMin);
+                filters.add("?energyRelease >= ?energyReleaseMin");
             } else if (energyReleaseMax != null) {
-                filters.add("?energyRelease <= " + energyReleaseMax);
+                filters.add("?energyRelease <= ?energyReleaseMax");
             }
         } else {
             queryBuilder.append("  OPTIONAL { ?uri ont:energyRelease ?energyRelease }\n");
@@ -273,13 +659,19 @@ public class SparqlService {
         // 日能量释放过滤器
         if (dailyEnergyReleaseMin != null || dailyEnergyReleaseMax != null) {
             queryBuilder.append("  ?uri ont:dailyEnergyRelease ?dailyEnergyRelease .\n");
+            if (dailyEnergyReleaseMin != null) {
+                params.decimal("dailyEnergyReleaseMin", dailyEnergyReleaseMin);
+            }
+            if (dailyEnergyReleaseMax != null) {
+                params.decimal("dailyEnergyReleaseMax", dailyEnergyReleaseMax);
+            }
             if (dailyEnergyReleaseMin != null && dailyEnergyReleaseMax != null) {
-                filters.add("?dailyEnergyRelease >= " + dailyEnergyReleaseMin +
-                        " && ?dailyEnergyRelease <= " + dailyEnergyReleaseMax);
+                filters.add("?dailyEnergyRelease >= ?dailyEnergyReleaseMin" +
+                        " && ?dailyEnergyRelease <= ?dailyEnergyReleaseMax");
             } else if (dailyEnergyReleaseMin != null) {
-                filters.add("?dailyEnergyRelease >= " + dailyEnergyReleaseMin);
+                filters.add("?dailyEnergyRelease >= ?dailyEnergyReleaseMin");
             } else if (dailyEnergyReleaseMax != null) {
-                filters.add("?dailyEnergyRelease <= " + dailyEnergyReleaseMax);
+                filters.add("?dailyEnergyRelease <= ?dailyEnergyReleaseMax");
             }
         } else {
             queryBuilder.append("  OPTIONAL { ?uri ont:dailyEnergyRelease ?dailyEnergyRelease }\n");
@@ -289,13 +681,14 @@ public class SparqlService {
         if (riskTypes != null && !riskTypes.isEmpty()) {
             queryBuilder.append("  ?uri ont:riskType ?riskType .\n");
 
-            // 创建风险类型的FILTER（IN）表达式
+            // 创建风险类型的FILTER（IN）表达式，每个风险类型作为字符串参数绑定
             StringBuilder riskFilterBuilder = new StringBuilder("?riskType IN (");
             for (int i = 0; i < riskTypes.size(); i++) {
                 if (i > 0) {
                     riskFilterBuilder.append(", ");
                 }
-                riskFilterBuilder.append("\"").append(riskTypes.get(i)).append("\"");
+                riskFilterBuilder.append("?riskType").append(i);
+                params.string("riskType" + i, riskTypes.get(i));
             }
             riskFilterBuilder.append(")");
             filters.add(riskFilterBuilder.toString());
@@ -325,228 +718,562 @@ public class SparqlService {
             queryBuilder.append(")\n");
         }
 
-        // 完成查询
-        queryBuilder.append("} ORDER BY ?uri LIMIT 100");
+        // 子查询按URI取一页不重复的实体，外层以相同条件连接各属性；
+        // 多值属性使一个实体对应多行，LIMIT作用于结果行时会在实体中间截断，下一页从其后开始会漏掉剩余的行
+        String conditions = queryBuilder.toString();
+        if (after != null) {
+            params.string("afterUri", after.getUri());
+        }
+        String queryString = "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n" +
+                "PREFIX ont: <http://www.semanticweb.org/yoruh/ontologies/2024/9/untitled-ontology-11#>\n" +
+                "PREFIX xsd: <http://www.w3.org/2001/XMLSchema#>\n" +
+                "SELECT ?uri ?length ?microseismicEventCount ?energyRelease " +
+                "?cumulativeApparentVolume ?dailyEventRate ?dailyEnergyRelease " +
+                "?dailyApparentVolumeRate ?serialNumber ?mileage ?startMileage " +
+                "?endMileage ?description ?riskType WHERE {\n" +
+                "  {\n" +
+                "    SELECT DISTINCT ?uri WHERE {\n" +
+                conditions +
+                // 从上一页最后的URI之后继续
+                (after != null ? "  FILTER (STR(?uri) > ?afterUri)\n" : "") +
+                "    } ORDER BY ?uri LIMIT " + clampPageSize(pageSize) + "\n" +
+                "  }\n" +
+                conditions +
+                "} ORDER BY ?uri";
+
+        // 绑定参数并执行查询
+        executeQuery(preparedQueryCache.bind(queryString, params), queryString, true, results);
 
-        // 执行查询并处理结果
-        executeQuery(queryBuilder.toString(), results);
+        return results;
+    }
+
+    /**
+     * 当前可用的快照：版本与数据集一致时返回，否则触发后台重新加载并返回null（本次走SPARQL）
+     */
+    private RockBurstSnapshot currentSnapshot() {
+        if (!snapshotEnabled) {
+            return null;
+        }
+
+        long version = resultCache.currentVersion();
+        RockBurstSnapshot current = snapshot;
+        boolean sameVersion = current != null && current.getVersion() == version;
+        if (!sameVersion
+                || System.currentTimeMillis() - current.getLoadedAt() > snapshotMaxAgeSeconds * 1000) {
+            // 仅过期但版本未变时，重新加载期间继续使用旧快照
+            refreshSnapshot(version);
+        }
+        return sameVersion && !current.isMultiValued() ? current : null;
+    }
+
+    private void refreshSnapshot(long version) {
+        // 加载失败后间隔一段时间再重试，避免Fuseki不可用时每个请求都发起全量加载
+        if (System.currentTimeMillis() - snapshotFailedAt < SNAPSHOT_RETRY_MS
+                || !snapshotLoading.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("rockburst-snapshot").start(() -> {
+            try {
+                loadSnapshot(version);
+            } catch (Exception e) {
+                snapshotFailedAt = System.currentTimeMillis();
+                System.err.println("加载岩爆数值快照失败: " + e.getMessage());
+            } finally {
+                snapshotLoading.set(false);
+            }
+        });
+    }
+
+    private void loadSnapshot(long version) {
+        // 副本可能尚未同步最近的写入，此时构建的快照不可信
+        if (!replicaRouter.isReplicaReadConsistent()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        String queryString = "PREFIX ont: <" + RockBurstSnapshot.ONT + ">\n" +
+                "SELECT ?uri ?p ?o WHERE {\n" +
+                "  VALUES ?p { ont:length ont:microseismicEventCount ont:energyRelease " +
+                "ont:dailyEnergyRelease ont:riskType }\n" +
+                "  ?uri ?p ?o\n" +
+                "}";
+        Var uriVar = Var.alloc("uri");
+        Var propertyVar = Var.alloc("p");
+        Var valueVar = Var.alloc("o");
+
+        RockBurstSnapshot.Builder builder = new RockBurstSnapshot.Builder();
+        QueryDeadline deadline = QueryDeadline.after(snapshotLoadTimeoutMs);
+        try {
+            deadline.call(() -> {
+                select(queryString, false, resultSet -> {
+                    while (resultSet.hasNext()) {
+                        Binding binding = resultSet.nextBinding();
+                        builder.add(binding.get(uriVar), binding.get(propertyVar), binding.get(valueVar));
+                    }
+                });
+                return null;
+            });
+        } finally {
+            deadline.finish();
+        }
 
+        RockBurstSnapshot loaded = builder.build(version);
+        snapshot = loaded;
+        if (loaded.isMultiValued()) {
+            System.err.println("岩爆数值快照存在多值属性，搜索继续使用SPARQL查询");
+        }
+        System.out.println("岩爆数值快照已加载: 实体=" + loaded.size() + ", 版本=" + version
+                + ", 耗时=" + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * 按页回查实体的完整属性，结果顺序与uris一致
+     */
+    private List<RdfInstance> hydrate(List<String> uris) {
+        List<RdfInstance> results = new ArrayList<>();
+        if (uris.isEmpty()) {
+            return results;
+        }
+
+        StringBuilder values = new StringBuilder();
+        for (String uri : uris) {
+            values.append(' ').append(NodeFmtLib.strNT(NodeFactory.createURI(uri)));
+        }
+        String queryString = "PREFIX ont: <" + RockBurstSnapshot.ONT + ">\n" +
+                "SELECT ?uri ?length ?microseismicEventCount ?energyRelease " +
+                "?cumulativeApparentVolume ?dailyEventRate ?dailyEnergyRelease " +
+                "?dailyApparentVolumeRate ?serialNumber ?mileage ?startMileage " +
+                "?endMileage ?description ?riskType WHERE {\n" +
+                "  VALUES ?uri {" + values + " }\n" +
+                "  OPTIONAL { ?uri ont:length ?length }\n" +
+                "  OPTIONAL { ?uri ont:microseismicEventCount ?microseismicEventCount }\n" +
+                "  OPTIONAL { ?uri ont:energyRelease ?energyRelease }\n" +
+                "  OPTIONAL { ?uri ont:cumulativeApparentVolume ?cumulativeApparentVolume }\n" +
+                "  OPTIONAL { ?uri ont:dailyEventRate ?dailyEventRate }\n" +
+                "  OPTIONAL { ?uri ont:dailyEnergyRelease ?dailyEnergyRelease }\n" +
+                "  OPTIONAL { ?uri ont:dailyApparentVolumeRate ?dailyApparentVolumeRate }\n" +
+                "  OPTIONAL { ?uri ont:serialNumber ?serialNumber }\n" +
+                "  OPTIONAL { ?uri ont:mileage ?mileage }\n" +
+                "  OPTIONAL { ?uri ont:startMileage ?startMileage }\n" +
+                "  OPTIONAL { ?uri ont:endMileage ?endMileage }\n" +
+                "  OPTIONAL { ?uri ont:description ?description }\n" +
+                "  OPTIONAL { ?uri ont:riskType ?riskType }\n" +
+                "}";
+
+        List<RdfInstance> rows = new ArrayList<>();
+        executeQuery(QueryFactory.create(queryString), queryString, false, rows);
+
+        // VALUES不保证结果顺序，按快照给出的顺序重排
+        Map<String, List<RdfInstance>> byUri = new HashMap<>();
+        for (RdfInstance row : rows) {
+            byUri.computeIfAbsent(row.getUri(), k -> new ArrayList<>()).add(row);
+        }
+        for (String uri : uris) {
+            List<RdfInstance> matched = byUri.get(uri);
+            if (matched != null) {
+                results.addAll(matched);
+            }
+        }
         return results;
     }
 
+    /**
+     * 获取岩爆数值快照统计信息
+     */
+    public Map<String, Object> getSnapshotStats() {
+        RockBurstSnapshot current = snapshot;
+        Map<String, Object> stats = current != null ? current.getStats() : new HashMap<>();
+        stats.put("enabled", snapshotEnabled);
+        stats.put("loaded", current != null);
+        stats.put("loading", snapshotLoading.get());
+        stats.put("datasetVersion", resultCache.currentVersion());
+        return stats;
+    }
+
+    /**
+     * 长度搜索的下一页游标，当前页不满一页时返回null（已到末尾）
+     * 游标使用存储中长度字面量的原始形式，转换为Float会损失精度，与存储的值比较时不再相等
+     */
+    public String nextLengthCursor(List<RdfInstance> page, int pageSize) {
+        if (countKeys(page, true) < clampPageSize(pageSize)) {
+            return null;
+        }
+        RdfInstance last = page.get(page.size() - 1);
+        if (last.getLengthLexical() == null) {
+            return null;
+        }
+        return SearchCursor.afterLength(last.getLengthLexical(), last.getLengthDatatype(), last.getUri()).encode();
+    }
+
+    /**
+     * 高级搜索的下一页游标，当前页不满一页时返回null（已到末尾）
+     */
+    public String nextUriCursor(List<RdfInstance> page, int pageSize) {
+        if (countKeys(page, false) < clampPageSize(pageSize)) {
+            return null;
+        }
+        return SearchCursor.afterUri(page.get(page.size() - 1).getUri()).encode();
+    }
+
+    // 一页中排序键的个数: 同一个键的多行（多值属性）相邻，只计一次
+    private static int countKeys(List<RdfInstance> page, boolean byLength) {
+        int keys = 0;
+        RdfInstance previous = null;
+        for (RdfInstance row : page) {
+            if (previous == null || !Objects.equals(previous.getUri(), row.getUri())
+                    || (byLength && !(Objects.equals(previous.getLengthLexical(), row.getLengthLexical())
+                            && Objects.equals(previous.getLengthDatatype(), row.getLengthDatatype())))) {
+                keys++;
+            }
+            previous = row;
+        }
+        return keys;
+    }
+
+    private static int clampPageSize(int pageSize) {
+        return Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+    }
+
     /**
      * 根据任务个体查询对应微震数据
      * 修改：添加userId参数，用于记录查询历史
      */
     public Map<String, Object> searchByTask(String taskUri, String userId) {
-        List<RdfInstance> results = new ArrayList<>();
         Map<String, Object> response = new HashMap<>();
-        Map<String, String> taskInfo = new HashMap<>();
 
-        // 首先查询任务本身的信息
-        String taskInfoQuery = "PREFIX ont: <http://www.semanticweb.org/yoruh/ontologies/2024/9/untitled-ontology-11#>\n"
+        // 任务信息与目标实体数据在同一个查询中连接，一次往返
+        String taskSearchQuery = "PREFIX ont: <http://www.semanticweb.org/yoruh/ontologies/2024/9/untitled-ontology-11#>\n"
                 +
                 "PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>\n" +
-                "SELECT ?targetEntity ?startDate ?endDate ?label WHERE {\n" +
-                "  <" + taskUri + "> ont:hasTargetEntity ?targetEntity .\n" +
-                "  <" + taskUri + "> ont:hasStartDate ?startDate .\n" +
-                "  <" + taskUri + "> ont:hasEndDate ?endDate .\n" +
-                "  OPTIONAL { <" + taskUri + "> rdfs:label ?label }\n" +
+                "SELECT ?targetEntity ?startDate ?endDate ?label " +
+                "?uri ?length ?microseismicEventCount ?energyRelease " +
+                "?cumulativeApparentVolume ?dailyEnergyRelease ?dailyApparentVolumeRate " +
+                "?serialNumber ?mileage ?startMileage ?endMileage ?description ?riskType WHERE {\n" +
+                "  ?task ont:hasTargetEntity ?targetEntity .\n" +
+                "  ?task ont:hasStartDate ?startDate .\n" +
+                "  ?task ont:hasEndDate ?endDate .\n" +
+                "  OPTIONAL { ?task rdfs:label ?label }\n" +
+                "  BIND(?targetEntity AS ?uri)\n" +
+                "  OPTIONAL { ?uri ont:length ?length }\n" +
+                "  OPTIONAL { ?uri ont:microseismicEventCount ?microseismicEventCount }\n" +
+                "  OPTIONAL { ?uri ont:energyRelease ?energyRelease }\n" +
+                "  OPTIONAL { ?uri ont:cumulativeApparentVolume ?cumulativeApparentVolume }\n" +
+                "  OPTIONAL { ?uri ont:dailyEnergyRelease ?dailyEnergyRelease }\n" +
+                "  OPTIONAL { ?uri ont:dailyApparentVolumeRate ?dailyApparentVolumeRate }\n" +
+                "  OPTIONAL { ?uri ont:serialNumber ?serialNumber }\n" +
+                "  OPTIONAL { ?uri ont:mileage ?mileage }\n" +
+                "  OPTIONAL { ?uri ont:startMileage ?startMileage }\n" +
+                "  OPTIONAL { ?uri ont:endMileage ?endMileage }\n" +
+                "  OPTIONAL { ?uri ont:description ?description }\n" +
+                "  OPTIONAL { ?uri ont:riskType ?riskType }\n" +
                 "}";
 
+        TaskSearchResult result;
         try {
-            Query query = QueryFactory.create(taskInfoQuery);
-            try (QueryExecution qexec = QueryExecutionFactory.sparqlService(queryEndpoint, query)) {
-                ResultSet resultSet = qexec.execSelect();
-                if (resultSet.hasNext()) {
-                    QuerySolution solution = resultSet.nextSolution();
-
-                    if (solution.get("targetEntity") != null) {
-                        taskInfo.put("targetEntity", solution.get("targetEntity").toString());
-                    }
-                    if (solution.get("startDate") != null) {
-                        taskInfo.put("startDate", solution.get("startDate").toString());
-                    }
-                    if (solution.get("endDate") != null) {
-                        taskInfo.put("endDate", solution.get("endDate").toString());
-                    }
-                    if (solution.get("label") != null) {
-                        taskInfo.put("label", solution.get("label").toString());
-                    }
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("任务信息查询失败: " + e.getMessage());
+            Query query = preparedQueryCache.bind(taskSearchQuery, new QueryParams().uri("task", taskUri));
+            result = loadTaskSearch(taskSearchQuery, query);
+        } catch (IllegalArgumentException e) {
+            System.err.println("任务URI无效: " + e.getMessage());
+            result = TaskSearchResult.EMPTY;
         }
 
+        response.put("taskInfo", new HashMap<>(result.taskInfo));
+        List<RdfInstance> results = new ArrayList<>();
+        copyInstances(result.results, results);
+        response.put("results", results);
+
         // 如果找不到任务信息，返回空结果
-        if (taskInfo.isEmpty()) {
-            response.put("taskInfo", taskInfo);
-            response.put("results", results);
+        if (result.taskInfo.isEmpty()) {
             return response;
         }
 
-        // 根据目标实体查询数据
-        String targetEntity = taskInfo.get("targetEntity");
-        if (targetEntity != null) {
-            String dataQuery = "PREFIX ont: <http://www.semanticweb.org/yoruh/ontologies/2024/9/untitled-ontology-11#>\n"
-                    +
-                    "SELECT ?uri ?length ?microseismicEventCount ?energyRelease " +
-                    "?cumulativeApparentVolume ?dailyEnergyRelease ?dailyApparentVolumeRate " +
-                    "?serialNumber ?mileage ?startMileage ?endMileage ?description ?riskType WHERE {\n" +
-                    "  BIND(<" + targetEntity + "> AS ?uri)\n" +
-                    "  OPTIONAL { ?uri ont:length ?length }\n" +
-                    "  OPTIONAL { ?uri ont:microseismicEventCount ?microseismicEventCount }\n" +
-                    "  OPTIONAL { ?uri ont:energyRelease ?energyRelease }\n" +
-                    "  OPTIONAL { ?uri ont:cumulativeApparentVolume ?cumulativeApparentVolume }\n" +
-                    "  OPTIONAL { ?uri ont:dailyEnergyRelease ?dailyEnergyRelease }\n" +
-                    "  OPTIONAL { ?uri ont:dailyApparentVolumeRate ?dailyApparentVolumeRate }\n" +
-                    "  OPTIONAL { ?uri ont:serialNumber ?serialNumber }\n" +
-                    "  OPTIONAL { ?uri ont:mileage ?mileage }\n" +
-                    "  OPTIONAL { ?uri ont:startMileage ?startMileage }\n" +
-                    "  OPTIONAL { ?uri ont:endMileage ?endMileage }\n" +
-                    "  OPTIONAL { ?uri ont:description ?description }\n" +
-                    "  OPTIONAL { ?uri ont:riskType ?riskType }\n" +
-                    "}";
-
-            executeQuery(dataQuery, results);
-        }
-
-        response.put("taskInfo", taskInfo);
-        response.put("results", results);
-
-        // 记录查询历史 (新增代码)
+        // 记录查询历史，异步批量写入，不占用请求时间
         if (userId != null && !userId.isEmpty()) { // 匿名用户可能没有userId
+            TaskHistory history = new TaskHistory();
+            history.setTaskUri(taskUri);
+            history.setUserId(userId);
+            history.setQueryTime(new Date());
+            // 可选：保存简要结果摘要
+            String resultSummary = result.results.size() > 0
+                    ? "找到" + result.results.size() + "条结果，目标:" + result.taskInfo.get("targetEntity")
+                    : "未找到结果";
+            history.setQueryResult(resultSummary);
+            taskHistoryRecorder.record(history);
+        }
+
+        return response;
+    }
+
+    /**
+     * 执行任务连接查询，任务信息取第一行，只保留与第一行任务信息一致的数据行
+     * （任务有多个标签等情况下连接会产生重复行）
+     */
+    private TaskSearchResult loadTaskSearch(String templateText, Query query) {
+        String cacheKey = "taskSearch:" + QueryResultCache.normalize(query.serialize());
+        TaskSearchResult cached = resultCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        long version = resultCache.currentVersion();
+        return singleFlight.execute(flightKey(cacheKey, version), () -> {
+            Map<String, String> taskInfo = new HashMap<>();
+            List<RdfInstance> loaded = new ArrayList<>();
+
             try {
-                TaskHistory history = new TaskHistory();
-                history.setTaskUri(taskUri);
-                history.setUserId(userId);
-                history.setQueryTime(new Date());
-                // 可选：保存简要结果摘要
-                String resultSummary = results.size() > 0
-                        ? "找到" + results.size() + "条结果，目标:" + taskInfo.get("targetEntity")
-                        : "未找到结果";
-                history.setQueryResult(resultSummary);
-                taskHistoryRepository.save(history);
-                System.out.println("已记录查询历史: 用户=" + userId + ", 任务=" + taskUri);
+                selectPrepared(templateText, query, resultSet -> {
+                    RdfInstanceDecoder decoder = RdfInstanceDecoder.forVars(resultSet.getResultVars());
+                    Node[] firstTaskNodes = null;
+
+                    while (resultSet.hasNext()) {
+                        Binding binding = resultSet.nextBinding();
+                        Node[] taskNodes = new Node[TASK_INFO_VARS.length];
+                        for (int i = 0; i < TASK_INFO_VARS.length; i++) {
+                            taskNodes[i] = binding.get(TASK_INFO_VARS[i]);
+                        }
+
+                        if (firstTaskNodes == null) {
+                            firstTaskNodes = taskNodes;
+                            for (int i = 0; i < TASK_INFO_VARS.length; i++) {
+                                if (taskNodes[i] != null) {
+                                    taskInfo.put(TASK_INFO_VARS[i].getVarName(),
+                                            ModelUtils.convertGraphNodeToRDFNode(taskNodes[i]).toString());
+                                }
+                            }
+                        } else if (!Arrays.equals(firstTaskNodes, taskNodes)) {
+                            continue;
+                        }
+
+                        loaded.add(decoder.decode(binding));
+                    }
+                });
             } catch (Exception e) {
-                // 记录历史失败不应影响主要功能
-                System.err.println("记录查询历史失败: " + e.getMessage());
+                QueryDeadline.rethrowIfAborted(e);
                 e.printStackTrace();
+                System.err.println("任务搜索查询失败: " + e.getMessage());
+                return TaskSearchResult.EMPTY;
             }
-        }
 
-        return response;
+            TaskSearchResult result = new TaskSearchResult(
+                    Collections.unmodifiableMap(taskInfo), Collections.unmodifiableList(loaded));
+            cacheResult(cacheKey, result, version);
+            return result;
+        });
+    }
+
+    // 任务信息列，按顺序写入taskInfo
+    private static final Var[] TASK_INFO_VARS = {
+            Var.alloc("targetEntity"), Var.alloc("startDate"), Var.alloc("endDate"), Var.alloc("label")
+    };
+
+    /**
+     * 任务搜索结果，缓存并在调用方之间共享，内容只读
+     */
+    private static class TaskSearchResult {
+        static final TaskSearchResult EMPTY = new TaskSearchResult(
+                Collections.emptyMap(), Collections.emptyList());
+
+        final Map<String, String> taskInfo;
+        final List<RdfInstance> results;
+
+        TaskSearchResult(Map<String, String> taskInfo, List<RdfInstance> results) {
+            this.taskInfo = taskInfo;
+            this.results = results;
+        }
     }
 
     /**
      * 执行SPARQL查询并处理结果
      */
-    private void executeQuery(String queryString, List<RdfInstance> results) {
-        try {
-            // 创建查询
-            Query query = QueryFactory.create(queryString);
-
-            // 执行查询
-            try (QueryExecution qexec = QueryExecutionFactory.sparqlService(queryEndpoint, query)) {
-                ResultSet resultSet = qexec.execSelect();
-
-                // 处理结果
-                while (resultSet.hasNext()) {
-                    QuerySolution solution = resultSet.nextSolution();
-                    RdfInstance instance = new RdfInstance();
-
-                    // 设置URI
-                    RDFNode uriNode = solution.get("uri");
-                    if (uriNode != null) {
-                        instance.setUri(uriNode.toString());
-                    }
+    private void executeQuery(Query query, String metricsText, boolean prepared, List<RdfInstance> results) {
+        String cacheKey = "instances:" + QueryResultCache.normalize(query.serialize());
+        List<RdfInstance> cached = resultCache.get(cacheKey);
+        if (cached != null) {
+            copyInstances(cached, results);
+            return;
+        }
 
-                    // 设置length
-                    RDFNode lengthNode = solution.get("length");
-                    if (lengthNode != null) {
-                        instance.setLength(lengthNode.asLiteral().getFloat());
-                    }
+        long version = resultCache.currentVersion();
+        List<RdfInstance> shared = singleFlight.execute(flightKey(cacheKey, version), () -> {
+            List<RdfInstance> loaded = new ArrayList<>();
 
-                    // 设置microseismicEventCount
-                    RDFNode microseismicEventCountNode = solution.get("microseismicEventCount");
-                    if (microseismicEventCountNode != null) {
-                        instance.setMicroseismicEventCount(microseismicEventCountNode.asLiteral().getInt());
+            try {
+                // 执行查询
+                select(query, metricsText, prepared, false, resultSet -> {
+                    // 变量位置和字段转换器每个结果集只解析一次，逐行按下标填充
+                    RdfInstanceDecoder decoder = RdfInstanceDecoder.forVars(resultSet.getResultVars());
+                    while (resultSet.hasNext()) {
+                        loaded.add(decoder.decode(resultSet.nextBinding()));
                     }
+                });
+            } catch (Exception e) {
+                QueryDeadline.rethrowIfAborted(e);
+                e.printStackTrace();
+                System.err.println("SPARQL查询失败: " + e.getMessage());
+                return Collections.<RdfInstance>emptyList();
+            }
 
-                    // 设置energyRelease
-                    RDFNode energyReleaseNode = solution.get("energyRelease");
-                    if (energyReleaseNode != null) {
-                        instance.setEnergyRelease(energyReleaseNode.asLiteral().getFloat());
-                    }
+            List<RdfInstance> frozen = Collections.unmodifiableList(loaded);
+            cacheResult(cacheKey, frozen, version);
+            return frozen;
+        });
+        copyInstances(shared, results);
+    }
 
-                    // 设置cumulativeApparentVolume
-                    RDFNode cumulativeApparentVolumeNode = solution.get("cumulativeApparentVolume");
-                    if (cumulativeApparentVolumeNode != null) {
-                        instance.setCumulativeApparentVolume(cumulativeApparentVolumeNode.asLiteral().getFloat());
-                    }
+    /**
+     * 执行SELECT查询，结果在归还连接（或结束读事务）前由handler读取完毕
+     * 嵌入模式下直接查询进程内TDB2数据集，否则通过共享连接池访问Fuseki（由ReplicaRouter选择读端点）
+     * 每次执行的耗时、行数和响应字节数按查询模板记入QueryMetrics
+     */
+    private void select(String queryString, boolean streaming, Consumer<ResultSet> handler) {
+        select(QueryFactory.create(queryString), queryString, false, streaming, handler);
+    }
 
-                    // 设置dailyEventRate
-                    RDFNode dailyEventRateNode = solution.get("dailyEventRate");
-                    if (dailyEventRateNode != null) {
-                        instance.setDailyEventRate(dailyEventRateNode.asLiteral().getString());
-                    }
+    /**
+     * 执行由预编译模板绑定参数得到的查询，统计按模板文本归类，不需要再规范化查询文本
+     */
+    private void selectPrepared(String templateText, Query query, Consumer<ResultSet> handler) {
+        select(query, templateText, true, false, handler);
+    }
 
-                    // 设置dailyEnergyRelease
-                    RDFNode dailyEnergyReleaseNode = solution.get("dailyEnergyRelease");
-                    if (dailyEnergyReleaseNode != null) {
-                        instance.setDailyEnergyRelease(dailyEnergyReleaseNode.asLiteral().getFloat());
-                    }
+    /**
+     * 执行SELECT查询，streaming为true时向Fuseki请求可逐行解析的结果格式
+     * metricsText为预编译模板文本（prepared为true）或临时拼接的查询文本，用于按模板统计
+     */
+    private void select(Query query, String metricsText, boolean prepared, boolean streaming,
+            Consumer<ResultSet> handler) {
+        QueryDeadline deadline = QueryDeadline.current();
+        if (deadline != null) {
+            deadline.check();
+        }
 
-                    // 设置dailyApparentVolumeRate
-                    RDFNode dailyApparentVolumeRateNode = solution.get("dailyApparentVolumeRate");
-                    if (dailyApparentVolumeRateNode != null) {
-                        instance.setDailyApparentVolumeRate(dailyApparentVolumeRateNode.asLiteral().getFloat());
-                    }
+        long startNanos = System.nanoTime();
+        long[] rows = new long[1];
+        LongAdder bytes = new LongAdder();
+        boolean failed = true;
 
-                    // 设置serialNumber
-                    RDFNode serialNumberNode = solution.get("serialNumber");
-                    if (serialNumberNode != null) {
-                        instance.setSerialNumber(serialNumberNode.asLiteral().getInt());
-                    }
+        Consumer<ResultSet> counted = resultSet -> {
+            try {
+                handler.accept(resultSet);
+            } finally {
+                rows[0] = resultSet.getRowNumber();
+            }
+        };
 
-                    // 设置mileage
-                    RDFNode mileageNode = solution.get("mileage");
-                    if (mileageNode != null) {
-                        instance.setMileage(mileageNode.asLiteral().getString());
+        try {
+            if (embeddedDataset.isEnabled()) {
+                embeddedDataset.read(dataset -> {
+                    try (QueryExecution qexec = QueryExecutionFactory.create(query, dataset)) {
+                        execSelect(qexec, deadline, counted);
                     }
-
-                    // 设置startMileage
-                    RDFNode startMileageNode = solution.get("startMileage");
-                    if (startMileageNode != null) {
-                        instance.setStartMileage(startMileageNode.asLiteral().getString());
+                });
+            } else {
+                // 只在HTTP请求期间占用异步执行名额
+                CountingHttpClient.counting(bytes, () -> asyncExecutor.withPermit(() -> replicaRouter.read(endpoint -> connectionPool.execute(endpoint, () -> {
+                    QueryExecutionHTTPBuilder builder = QueryExecutionHTTP.service(endpoint)
+                            .httpClient(connectionPool.getHttpClient())
+                            .query(query);
+
+                    String acceptHeader = selectAcceptHeader(query, streaming);
+                    if (acceptHeader != null) {
+                        builder.acceptHeader(acceptHeader);
                     }
 
-                    // 设置endMileage
-                    RDFNode endMileageNode = solution.get("endMileage");
-                    if (endMileageNode != null) {
-                        instance.setEndMileage(endMileageNode.asLiteral().getString());
+                    if (deadline != null) {
+                        long remainingMs = Math.max(1, deadline.remainingMillis());
+                        // HTTP请求超时，以及让Fuseki在服务端同样放弃执行（timeout参数单位为秒）
+                        builder.timeout(remainingMs, TimeUnit.MILLISECONDS);
+                        builder.param("timeout", Double.toString(remainingMs / 1000.0));
                     }
 
-                    // 设置description
-                    RDFNode descriptionNode = solution.get("description");
-                    if (descriptionNode != null) {
-                        instance.setDescription(descriptionNode.asLiteral().getString());
+                    try (QueryExecution qexec = builder.build()) {
+                        execSelect(qexec, deadline, counted);
                     }
+                    return null;
+                }))));
+            }
+            failed = false;
+        } finally {
+            long elapsedNanos = System.nanoTime() - startNanos;
+            if (prepared) {
+                queryMetrics.recordTemplate(metricsText, query, elapsedNanos, rows[0], bytes.sum(), failed);
+            } else {
+                queryMetrics.record(metricsText, elapsedNanos, rows[0], bytes.sum(), failed);
+            }
+        }
+    }
 
-                    // 设置riskType
-                    RDFNode riskTypeNode = solution.get("riskType");
-                    if (riskTypeNode != null) {
-                        instance.setRiskType(riskTypeNode.asLiteral().getString());
-                    }
+    /**
+     * 执行SELECT并在截止时间到达或请求取消时中止执行
+     */
+    private void execSelect(QueryExecution qexec, QueryDeadline deadline, Consumer<ResultSet> handler) {
+        if (deadline == null) {
+            handler.accept(qexec.execSelect());
+            return;
+        }
 
-                    results.add(instance);
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("SPARQL查询失败: " + e.getMessage());
+        try (QueryDeadline.Registration registration = deadline.onAbort(qexec::abort)) {
+            handler.accept(qexec.execSelect());
+        } catch (RuntimeException e) {
+            // 被中止的执行表现为各种I/O或取消异常，统一转换为DeadlineExceededException
+            deadline.check();
+            throw e;
+        }
+    }
+
+    /**
+     * 按查询选择结果格式：宽行（投影变量多）使用紧凑的二进制Thrift格式，其余使用JSON
+     * 流式读取时不使用JSON（Jena 4.7解析JSON结果时会先读入全部行），固定为Thrift并回退到XML
+     * 返回null时使用Jena默认的内容协商
+     */
+    private String selectAcceptHeader(Query query, boolean streaming) {
+        if (streaming) {
+            return STREAM_ACCEPT;
+        }
+        switch (resultFormat) {
+            case "thrift":
+                return THRIFT_ACCEPT;
+            case "json":
+                return WebContent.contentTypeResultsJSON;
+            case "default":
+                return null;
+            default:
+                return query.getProjectVars().size() >= thriftMinVars
+                        ? THRIFT_ACCEPT
+                        : WebContent.contentTypeResultsJSON;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 执行一个（可能已合并的）更新请求，完成后使查询缓存失效
+     */
+    private void applyUpdate(UpdateRequest updateRequest) {
+        // 持久版本号在发送之前递增，任务结果缓存跨重启判断数据是否变化
+        datasetVersionStore.beforeWrite();
+        try {
+            sendUpdate(updateRequest);
+        } finally {
+            // 数据可能已变化，使查询缓存失效
+            resultCache.bumpVersion();
+        }
+    }
+
+    /**
+     * 发送SPARQL更新请求，嵌入模式下在TDB2写事务中执行
+     */
+    private void sendUpdate(UpdateRequest updateRequest) {
+        if (embeddedDataset.isEnabled()) {
+            embeddedDataset.update(updateRequest);
+            return;
+        }
+
+        connectionPool.execute(updateEndpoint, () -> {
+            UpdateExecutionHTTP.service(updateEndpoint)
+                    .httpClient(connectionPool.getHttpClient())
+                    .update(updateRequest)
+                    .build()
+                    .execute();
+            return null;
+        });
+    }
+}
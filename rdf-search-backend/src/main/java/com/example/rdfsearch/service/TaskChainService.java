@@ -3,11 +3,17 @@ package com.example.rdfsearch.service;
 import com.example.rdfsearch.model.task.TaskNode;
 import com.example.rdfsearch.model.task.TaskOutcome;
 import com.example.rdfsearch.model.task.Workflow;
+import com.example.rdfsearch.service.expression.Expression;
+import com.example.rdfsearch.service.expression.ExpressionCompiler;
+import com.example.rdfsearch.service.expression.VariableResolver;
+import com.example.rdfsearch.service.sparql.QueryDeadline;
+import com.example.rdfsearch.service.sparql.ReplicaRouter;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -19,11 +25,24 @@ public class TaskChainService {
     @Autowired
     private SparqlService sparqlService;
 
+    // 描述中日期区间的类型化索引
+    @Autowired
+    private DescriptionDateIndex dateIndex;
+
     @Autowired
     private TaskService taskService;
 
-    // 缓存执行上下文，保存执行状态
-    private Map<String, ExecutionContext> executionContexts = new ConcurrentHashMap<>();
+    // 声明了任务依赖的工作流由DAG调度器并行执行
+    @Autowired
+    private WorkflowDagScheduler dagScheduler;
+
+    // 按运行ID保存的执行上下文
+    @Autowired
+    private ExecutionContextStore contextStore;
+
+    // 分析类任务的结果缓存
+    @Autowired
+    private TaskMemoStore memoStore;
 
     // 工作流定义缓存
     private Map<String, Workflow> workflowCache = new ConcurrentHashMap<>();
@@ -33,10 +52,22 @@ public class TaskChainService {
         AVERAGE, MAX, MIN, SUM, LATEST, FIRST
     }
 
+    // 可下推到SPARQL的属性名与日期格式
+    private static final Pattern PROPERTY_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final Pattern DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+
+    // 分析类任务从上下文读取的变量，与任务参数一起组成结果缓存的键
+    private static final Map<String, List<String>> MEMO_CONTEXT_INPUTS = Map.of(
+            "MultiAttributeComparison", List.of(),
+            "DataAnalysis", List.of("comparisonResults", "analysisResults"),
+            "DeepAnalysis", List.of("detailedAnalysis"));
+
     /**
      * 获取任务节点的所有可能选项，用于用户交互选择
+     *
+     * @param runId 运行ID，为空时使用当前会话在该工作流上的上下文
      */
-    public Map<String, Object> getTaskOptions(String workflowId, String taskId) {
+    public Map<String, Object> getTaskOptions(String workflowId, String runId, String taskId) {
         // 获取工作流定义
         Workflow workflow = getWorkflowDefinition(workflowId);
 
@@ -47,11 +78,11 @@ public class TaskChainService {
         }
 
         // 获取或创建执行上下文
-        ExecutionContext context = executionContexts.computeIfAbsent(
-                workflowId, id -> new ExecutionContext(id));
+        ExecutionContext context = getContext(workflowId, runId);
 
         // 返回任务信息和可选的结果
         Map<String, Object> result = new HashMap<>();
+        result.put("runId", context.getId());
         result.put("taskId", task.getId());
         result.put("taskName", task.getName());
         result.put("taskDescription", task.getDescription());
@@ -108,7 +139,7 @@ public class TaskChainService {
     /**
      * 选择任务结果，前进到下一个任务
      */
-    public Map<String, Object> selectOutcome(String workflowId, String taskId, String outcomeId,
+    public Map<String, Object> selectOutcome(String workflowId, String runId, String taskId, String outcomeId,
             String contradictionReason) {
         // 获取工作流定义
         Workflow workflow = getWorkflowDefinition(workflowId);
@@ -126,8 +157,7 @@ public class TaskChainService {
                 .orElseThrow(() -> new RuntimeException("找不到结果: " + outcomeId));
 
         // 获取执行上下文
-        ExecutionContext context = executionContexts.computeIfAbsent(
-                workflowId, id -> new ExecutionContext(id));
+        ExecutionContext context = getContext(workflowId, runId);
 
         // 获取推荐的结果
         String recommendedOutcomeId = getRecommendedOutcome(task, context);
@@ -151,8 +181,9 @@ public class TaskChainService {
         // 执行任务处理逻辑
         executeTaskByType(task, selectedOutcome, context);
 
-        // 标记任务已执行
+        // 标记任务已执行，没有下一个任务时该次运行结束
         context.markTaskExecuted(taskId);
+        context.setFinished(selectedOutcome.getNextTaskId() == null);
 
         // 使用getOutcomeData获取结果数据
         Map<String, Object> outcomeData = getOutcomeData(task, selectedOutcome, context);
@@ -160,6 +191,7 @@ public class TaskChainService {
         // 返回结果
         Map<String, Object> result = new HashMap<>();
         result.put("workflowId", workflowId);
+        result.put("runId", context.getId());
         result.put("taskId", taskId);
         result.put("selectedOutcome", outcomeId);
         result.put("outcomeName", selectedOutcome.getName());
@@ -216,13 +248,9 @@ public class TaskChainService {
     private void executeTaskAnalysis(TaskNode task, ExecutionContext context) {
         switch (task.getType()) {
             case "MultiAttributeComparison":
-                executeMultiAttributeComparison(task, context);
-                break;
             case "DataAnalysis":
-                executeDataAnalysis(task, context);
-                break;
             case "DeepAnalysis":
-                executeDeepAnalysis(task, context);
+                executeMemoized(task, context);
                 break;
             case "CustomScript":
                 executeCustomScript(task, context);
@@ -238,42 +266,210 @@ public class TaskChainService {
      * @return 执行结果
      */
     public Map<String, Object> executeWorkflow(String workflowId, Map<String, Object> initialParameters) {
-        // 每次执行工作流时，创建一个全新的执行上下文，而不是复用旧的
-        ExecutionContext context = new ExecutionContext(workflowId);
-        executionContexts.put(workflowId, context);
+        return executeWorkflow(UUID.randomUUID().toString(), workflowId, initialParameters, null);
+    }
+
+    /**
+     * 执行工作流，并把每个任务的开始和完成通知给监听器
+     *
+     * @param runId             运行ID，执行上下文按该ID保存
+     * @param workflowId        工作流ID
+     * @param initialParameters 初始参数
+     * @param listener          进度监听器，可为null
+     * @return 执行结果
+     */
+    public Map<String, Object> executeWorkflow(String runId, String workflowId, Map<String, Object> initialParameters,
+            WorkflowListener listener) {
+        // 每次运行创建独立的执行上下文，同一工作流的并发运行互不覆盖
+        ExecutionContext context = contextStore.create(runId, workflowId);
+        context.setRunning(true);
+        boolean completed = false;
+        try {
+            Map<String, Object> result = runWorkflow(context, workflowId, initialParameters, listener);
+            completed = true;
+            return result;
+        } finally {
+            finishRun(context, completed);
+        }
+    }
+
+    /**
+     * 从最后一个检查点继续执行中断的运行，已完成的任务不再执行
+     *
+     * @param runId    运行ID
+     * @param listener 进度监听器，可为null
+     * @return 执行结果
+     */
+    public Map<String, Object> resumeWorkflow(String runId, WorkflowListener listener) {
+        ExecutionContext context = getResumableContext(runId);
+        if (!context.tryStart()) {
+            throw new IllegalStateException("工作流运行正在执行或已完成: " + runId);
+        }
+        boolean completed = false;
+        try {
+            Workflow workflow = getWorkflowDefinition(context.getWorkflowId());
+            System.out.println("从检查点继续执行工作流运行: " + runId + ", 已完成任务: " + context.getExecutionPath());
+
+            Map<String, Object> result;
+            if (workflow.isDag()) {
+                result = runDag(workflow, context, listener);
+            } else {
+                result = resumeLinear(workflow, context, listener);
+            }
+            completed = true;
+            return result;
+        } finally {
+            finishRun(context, completed);
+        }
+    }
+
+    /**
+     * 检查运行能否从检查点继续执行，返回其工作流ID
+     *
+     * @throws IllegalArgumentException 找不到运行的检查点
+     * @throws IllegalStateException    运行正在执行或已完成
+     */
+    public String getResumableWorkflowId(String runId) {
+        return getResumableContext(runId).getWorkflowId();
+    }
+
+    private ExecutionContext getResumableContext(String runId) {
+        ExecutionContext context = contextStore.get(runId);
+        if (context == null || context.isInteractive()) {
+            throw new IllegalArgumentException("找不到工作流运行的检查点: " + runId);
+        }
+        if (context.isFinished()) {
+            throw new IllegalStateException("工作流运行已完成: " + runId);
+        }
+        if (context.isRunning()) {
+            throw new IllegalStateException("工作流运行正在执行: " + runId);
+        }
+        return context;
+    }
+
+    /**
+     * 运行结束: 成功时标记完成，失败、超时或取消时保持未完成以便继续执行，并写入最终检查点
+     */
+    private void finishRun(ExecutionContext context, boolean completed) {
+        context.setRunning(false);
+        if (completed) {
+            context.setFinished(true);
+        }
+        context.touch();
+        contextStore.checkpoint(context);
+    }
 
+    private Map<String, Object> runWorkflow(ExecutionContext context, String workflowId,
+            Map<String, Object> initialParameters, WorkflowListener listener) {
         // 2. 设置初始参数
         initialParameters.forEach((key, value) -> context.setVariable(key, value));
 
         // 3. 获取工作流定义
         Workflow workflow = getWorkflowDefinition(workflowId);
 
+        // 声明了任务依赖的工作流按依赖关系并行调度
+        if (workflow.isDag()) {
+            return runDag(workflow, context, listener);
+        }
+
+        // 记录初始参数，第一个任务完成前中断也可以继续执行
+        checkpointLinear(context, null, null, workflow.getStartTaskId());
+
         // 4. 执行工作流中的第一个任务
-        String currentTaskId = workflow.getStartTaskId();
+        return runLinear(workflow, context, workflow.getStartTaskId(), null, listener);
+    }
+
+    /**
+     * 按检查点中记录的下一个任务继续执行顺序工作流
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> resumeLinear(Workflow workflow, ExecutionContext context, WorkflowListener listener) {
+        Map<String, Object> state = context.getResumeState();
+        if (state == null || !"linear".equals(state.get("mode"))) {
+            return runLinear(workflow, context, workflow.getStartTaskId(), null, listener);
+        }
+
+        // 从检查点重建最后完成的任务的结果，作为工作流在没有后续任务时的最终结果；
+        // 结果数据只写入新对象，不写回共享的工作流定义
+        TaskOutcome lastOutcome = null;
+        String lastTaskId = (String) state.get("lastTaskId");
+        String lastOutcomeId = (String) state.get("lastOutcomeId");
+        if (lastTaskId != null && lastOutcomeId != null) {
+            TaskNode lastTask = workflow.getTask(lastTaskId);
+            if (lastTask != null) {
+                lastOutcome = lastTask.getPossibleOutcomes().stream()
+                        .filter(o -> o.getId().equals(lastOutcomeId))
+                        .findFirst()
+                        .map(TaskOutcome::copyDefinition)
+                        .orElse(null);
+            }
+            if (lastOutcome == null) {
+                lastOutcome = new TaskOutcome(lastOutcomeId, (String) state.get("lastOutcomeName"), null);
+            }
+            Map<String, Object> lastResultData = (Map<String, Object>) state.get("lastResultData");
+            if (lastResultData != null) {
+                lastOutcome.getResultData().putAll(lastResultData);
+            }
+        }
+
+        return runLinear(workflow, context, (String) state.get("nextTaskId"), lastOutcome, listener);
+    }
+
+    /**
+     * 记录顺序工作流的检查点: 下一个任务及最后完成的任务的结果
+     */
+    private void checkpointLinear(ExecutionContext context, TaskNode task, TaskOutcome outcome, String nextTaskId) {
+        Map<String, Object> state = new HashMap<>();
+        state.put("mode", "linear");
+        state.put("nextTaskId", nextTaskId);
+        if (task != null && outcome != null) {
+            state.put("lastTaskId", task.getId());
+            state.put("lastOutcomeId", outcome.getId());
+            state.put("lastOutcomeName", outcome.getName());
+            state.put("lastResultData", new HashMap<>(outcome.getResultData()));
+        }
+        context.setResumeState(state);
+        contextStore.checkpoint(context);
+    }
+
+    private Map<String, Object> runLinear(Workflow workflow, ExecutionContext context, String startTaskId,
+            TaskOutcome lastOutcome, WorkflowListener listener) {
+        String workflowId = workflow.getId();
+        String currentTaskId = startTaskId;
         TaskNode currentTask = null;
-        TaskOutcome outcome = null;
+        TaskOutcome outcome = lastOutcome;
 
         // 添加循环检测
         Set<String> visitedStates = new HashSet<>();
 
         // 5. 循环执行任务，直到工作流结束
         while (currentTaskId != null) {
+            // 请求已超时或被取消时不再执行后续任务
+            QueryDeadline.checkCurrent();
+
             currentTask = workflow.getTask(currentTaskId);
 
             if (currentTask == null) {
                 throw new RuntimeException("找不到任务: " + currentTaskId);
             }
 
-            // 检测循环
+            // 检测循环（从检查点继续时包括之前已执行的任务）
             String currentState = currentTaskId;
-            if (visitedStates.contains(currentState)) {
+            if (visitedStates.contains(currentState) || context.isTaskExecuted(currentState)) {
                 System.out.println("检测到循环执行，终止工作流: " + currentState);
                 break;
             }
             visitedStates.add(currentState);
 
             // 执行当前任务
+            if (listener != null) {
+                listener.onTaskStarted(currentTask);
+            }
+            long taskStart = System.nanoTime();
             outcome = executeTask(currentTask, context);
+            if (listener != null) {
+                listener.onTaskCompleted(currentTask, outcome, (System.nanoTime() - taskStart) / 1_000_000);
+            }
 
             // 记录执行历史
             context.addHistory(currentTaskId, outcome.getId());
@@ -281,11 +477,15 @@ public class TaskChainService {
 
             // 获取下一个任务ID
             currentTaskId = outcome.getNextTaskId();
+
+            // 写入检查点，之后中断时从下一个任务继续
+            checkpointLinear(context, currentTask, outcome, currentTaskId);
         }
 
         // 6. 返回最终结果
         Map<String, Object> result = new HashMap<>();
         result.put("workflowId", workflowId);
+        result.put("runId", context.getId());
         result.put("completed", true);
         result.put("executionPath", context.getExecutionPath());
 
@@ -298,12 +498,70 @@ public class TaskChainService {
         return result;
     }
 
+    /**
+     * 按依赖关系并行执行DAG工作流，汇总各任务结果
+     */
+    private Map<String, Object> runDag(Workflow workflow, ExecutionContext context, WorkflowListener listener) {
+        WorkflowDagScheduler.DagResult dagResult = dagScheduler.run(workflow, context, listener, this::executeTask,
+                () -> contextStore.checkpoint(context));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("workflowId", workflow.getId());
+        result.put("runId", context.getId());
+        result.put("completed", true);
+        result.put("executionPath", context.getExecutionPath());
+        result.put("taskResults", dagResult.getResults());
+        result.put("skippedTasks", dagResult.getSkipped());
+
+        String finalTaskId = dagResult.getFinalTaskId();
+        if (finalTaskId != null) {
+            result.put("finalOutcome", dagResult.getOutcome(finalTaskId).getName());
+            result.put("finalResult", dagResult.getResults().get(finalTaskId));
+        }
+
+        return result;
+    }
+
+    /**
+     * 工作流执行进度监听器
+     */
+    public interface WorkflowListener {
+        void onTaskStarted(TaskNode task);
+
+        void onTaskCompleted(TaskNode task, TaskOutcome outcome, long elapsedMs);
+    }
+
     /**
      * 重置工作流执行上下文
+     *
+     * @param runId 运行ID，为空时重置当前会话在该工作流上的上下文
      */
-    public void resetWorkflowContext(String workflowId) {
-        // 从上下文缓存中移除，强制下次执行时创建新的上下文
-        executionContexts.remove(workflowId);
+    public void resetWorkflowContext(String workflowId, String runId) {
+        // 从上下文存储中移除，强制下次执行时创建新的上下文
+        contextStore.remove(contextKey(workflowId, runId));
+    }
+
+    /**
+     * 交互式执行的上下文键: 指定运行ID时使用运行ID，否则使用请求的会话标识（X-Session-Id或HTTP会话）；
+     * 两者都没有时拒绝请求，不按客户端地址区分（代理后面的用户会共用同一个上下文）
+     */
+    private String contextKey(String workflowId, String runId) {
+        if (runId != null && !runId.isBlank()) {
+            return runId;
+        }
+        String session = ReplicaRouter.currentSession();
+        if (session == null) {
+            throw new IllegalArgumentException("交互式执行需要指定runId或会话标识(" + ReplicaRouter.SESSION_HEADER + ")");
+        }
+        return workflowId + "@" + session;
+    }
+
+    private ExecutionContext getContext(String workflowId, String runId) {
+        ExecutionContext context = contextStore.getOrCreate(contextKey(workflowId, runId), workflowId);
+        if (!workflowId.equals(context.getWorkflowId())) {
+            throw new RuntimeException("运行 " + runId + " 不属于工作流: " + workflowId);
+        }
+        return context;
     }
 
     /**
@@ -318,7 +576,9 @@ public class TaskChainService {
 
         // 这里应该从数据库或配置加载工作流
         // 暂时返回一个示例工作流
-        Workflow workflow = createSampleWorkflow(workflowId);
+        Workflow workflow = "workflow3".equals(workflowId)
+                ? createParallelSampleWorkflow(workflowId)
+                : createSampleWorkflow(workflowId);
 
         // 保存到缓存
         workflowCache.put(workflowId, workflow);
@@ -453,18 +713,111 @@ public class TaskChainService {
     }
 
     /**
-     * 执行上下文类
+     * 创建示例DAG工作流 - 能量与微震事件两个分支并行比较和分析，汇总后进行深度分析
+     */
+    private Workflow createParallelSampleWorkflow(String workflowId) {
+        Workflow workflow = new Workflow(workflowId, "并行多指标分析工作流");
+        workflow.setDescription("并行比较能量和微震事件指标，汇总两个分支的分析结果后进行深度分析");
+        workflow.setSourceTaskId(null);
+
+        List<String> timeRanges = Arrays.asList("2023-05-04/2023-05-05", "2023-05-03/2023-05-04");
+
+        // 扇出：两个比较分支互不依赖，并行执行
+        TaskNode split = new TaskNode("split", "分支开始", "FanOut");
+        split.setDescription("并行执行能量和微震事件分析");
+
+        TaskNode energyCompare = new TaskNode("energyCompare", "能量数据比较", "MultiAttributeComparison");
+        energyCompare.setDescription("对比两个时间段的能量释放");
+        Map<String, Object> energyParams = new HashMap<>();
+        energyParams.put("timeRanges", timeRanges);
+        energyParams.put("attributes", Arrays.asList("energyRelease", "dailyEnergyRelease"));
+        energyParams.put("aggregationMethod", "AVERAGE");
+        energyCompare.setInputParameters(energyParams);
+        energyCompare.addDependency("split");
+        energyCompare.addOutcome(new TaskOutcome("energyCompare_done", "比较完成", null));
+
+        TaskNode eventCompare = new TaskNode("eventCompare", "微震事件比较", "MultiAttributeComparison");
+        eventCompare.setDescription("对比两个时间段的微震事件数");
+        Map<String, Object> eventParams = new HashMap<>();
+        eventParams.put("timeRanges", timeRanges);
+        eventParams.put("attributes", Arrays.asList("microseismicEventCount"));
+        eventParams.put("aggregationMethod", "MAX");
+        eventCompare.setInputParameters(eventParams);
+        eventCompare.addDependency("split");
+        eventCompare.addOutcome(new TaskOutcome("eventCompare_done", "比较完成", null));
+
+        // 每个分析只依赖本分支的比较结果
+        TaskNode energyAnalysis = new TaskNode("energyAnalysis", "能量阈值分析", "DataAnalysis");
+        energyAnalysis.setDescription("分析能量指标是否超过阈值");
+        energyAnalysis.addDependency("energyCompare");
+        energyAnalysis.addOutcome(new TaskOutcome("energyAnalysis_done", "分析完成", null));
+
+        TaskNode eventAnalysis = new TaskNode("eventAnalysis", "微震事件分析", "DataAnalysis");
+        eventAnalysis.setDescription("分析微震事件数是否超过阈值");
+        eventAnalysis.addDependency("eventCompare");
+        eventAnalysis.addOutcome(new TaskOutcome("eventAnalysis_done", "分析完成", null));
+
+        // 扇入：汇总两个分支的结果
+        TaskNode merge = new TaskNode("merge", "汇总分析结果", "FanIn");
+        merge.setDescription("汇总能量和微震事件分支的分析结果");
+        merge.addDependency("energyAnalysis");
+        merge.addDependency("eventAnalysis");
+        merge.addOutcome(new TaskOutcome("merge_done", "汇总完成", null));
+
+        TaskNode deep = new TaskNode("deep", "综合深度分析", "DeepAnalysis");
+        deep.setDescription("基于汇总结果评估风险等级");
+        deep.addDependency("merge");
+        TaskOutcome deepOutcome = new TaskOutcome("deep_done", "分析完成", null);
+        deepOutcome.setDescription("分析完成");
+        deep.addOutcome(deepOutcome);
+
+        workflow.addTask(split);
+        workflow.addTask(energyCompare);
+        workflow.addTask(eventCompare);
+        workflow.addTask(energyAnalysis);
+        workflow.addTask(eventAnalysis);
+        workflow.addTask(merge);
+        workflow.addTask(deep);
+
+        return workflow;
+    }
+
+    /**
+     * 执行上下文类 - 一次运行的变量、执行历史和决策偏差，按运行ID保存在ExecutionContextStore中
      */
-    class ExecutionContext {
+    static class ExecutionContext implements VariableResolver {
         private String id;
+        private String workflowId;
         private Map<String, Object> variables;
         private List<ExecutionHistoryEntry> history;
         private Set<String> executedTasks;
         private Map<String, String> decisionDeviations;
         private Map<String, String> deviationReasons;
 
+        // DAG分支上下文记录本分支写入的变量，用于合并回运行上下文；运行上下文为null
+        private Map<String, Object> writes;
+
+        // 从检查点继续执行所需的状态（下一个任务或DAG中已完成任务的结果），随快照保存
+        private Map<String, Object> resumeState;
+
+        // 工作流执行中的上下文不会被淘汰
+        private volatile boolean running;
+        private volatile boolean finished;
+
+        // 交互式执行（用户逐步选择结果）的上下文，不能从检查点继续执行
+        private volatile boolean interactive;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        // 条件求值的槽位数组，在本上下文的多次求值间复用，不随快照保存
+        private Object[] expressionFrame = new Object[0];
+
         public ExecutionContext(String id) {
+            this(id, id);
+        }
+
+        public ExecutionContext(String id, String workflowId) {
             this.id = id;
+            this.workflowId = workflowId;
             this.variables = new HashMap<>();
             this.history = new ArrayList<>();
             this.executedTasks = new HashSet<>();
@@ -472,33 +825,187 @@ public class TaskChainService {
             this.deviationReasons = new HashMap<>();
         }
 
+        public String getWorkflowId() {
+            return workflowId;
+        }
+
+        public boolean isRunning() {
+            return running;
+        }
+
+        public void setRunning(boolean running) {
+            this.running = running;
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+
+        public void setFinished(boolean finished) {
+            this.finished = finished;
+        }
+
+        public boolean isInteractive() {
+            return interactive;
+        }
+
+        public void setInteractive(boolean interactive) {
+            this.interactive = interactive;
+        }
+
+        /**
+         * 开始执行，已在执行或已完成时返回false
+         */
+        public synchronized boolean tryStart() {
+            if (running || finished) {
+                return false;
+            }
+            running = true;
+            return true;
+        }
+
+        public synchronized Map<String, Object> getResumeState() {
+            return resumeState;
+        }
+
+        public synchronized void setResumeState(Map<String, Object> resumeState) {
+            this.resumeState = resumeState;
+        }
+
+        public long getLastAccess() {
+            return lastAccess;
+        }
+
+        public void touch() {
+            lastAccess = System.currentTimeMillis();
+        }
+
+        /**
+         * 转换为可序列化的快照，用于写入数据库
+         */
+        public synchronized Map<String, Object> toSnapshot() {
+            List<Map<String, Object>> historyEntries = new ArrayList<>();
+            for (ExecutionHistoryEntry entry : history) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("taskId", entry.getTaskId());
+                item.put("outcomeId", entry.getOutcomeId());
+                item.put("timestamp", entry.getTimestamp().getTime());
+                historyEntries.add(item);
+            }
+
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("id", id);
+            snapshot.put("workflowId", workflowId);
+            snapshot.put("variables", new HashMap<>(variables));
+            snapshot.put("history", historyEntries);
+            snapshot.put("executedTasks", new ArrayList<>(executedTasks));
+            snapshot.put("decisionDeviations", new HashMap<>(decisionDeviations));
+            snapshot.put("deviationReasons", new HashMap<>(deviationReasons));
+            snapshot.put("finished", finished);
+            snapshot.put("interactive", interactive);
+            snapshot.put("resumeState", resumeState);
+            return snapshot;
+        }
+
+        /**
+         * 从快照恢复
+         */
+        @SuppressWarnings("unchecked")
+        public static ExecutionContext fromSnapshot(Map<String, Object> snapshot) {
+            ExecutionContext context = new ExecutionContext(
+                    (String) snapshot.get("id"), (String) snapshot.get("workflowId"));
+            Map<String, Object> variables = (Map<String, Object>) snapshot.get("variables");
+            if (variables != null) {
+                context.variables.putAll(variables);
+            }
+            List<Map<String, Object>> history = (List<Map<String, Object>>) snapshot.get("history");
+            if (history != null) {
+                for (Map<String, Object> item : history) {
+                    context.history.add(new ExecutionHistoryEntry((String) item.get("taskId"),
+                            (String) item.get("outcomeId"), new Date(((Number) item.get("timestamp")).longValue())));
+                }
+            }
+            List<String> executedTasks = (List<String>) snapshot.get("executedTasks");
+            if (executedTasks != null) {
+                context.executedTasks.addAll(executedTasks);
+            }
+            Map<String, String> decisionDeviations = (Map<String, String>) snapshot.get("decisionDeviations");
+            if (decisionDeviations != null) {
+                context.decisionDeviations.putAll(decisionDeviations);
+            }
+            Map<String, String> deviationReasons = (Map<String, String>) snapshot.get("deviationReasons");
+            if (deviationReasons != null) {
+                context.deviationReasons.putAll(deviationReasons);
+            }
+            context.finished = Boolean.TRUE.equals(snapshot.get("finished"));
+            context.interactive = Boolean.TRUE.equals(snapshot.get("interactive"));
+            context.resumeState = (Map<String, Object>) snapshot.get("resumeState");
+            return context;
+        }
+
         public String getId() {
             return id;
         }
 
-        public void setVariable(String name, Object value) {
+        public synchronized void setVariable(String name, Object value) {
             variables.put(name, value);
+            if (writes != null) {
+                writes.put(name, value);
+            }
         }
 
-        public Object getVariable(String name) {
+        public synchronized Object getVariable(String name) {
             return variables.get(name);
         }
 
-        public void addHistory(String taskId, String outcomeId) {
+        @Override
+        public Object resolve(String name) {
+            return getVariable(name);
+        }
+
+        /**
+         * 以本上下文的变量求值条件，使用上下文持有的槽位数组
+         */
+        public synchronized boolean evaluateCondition(Expression condition) {
+            if (expressionFrame.length < condition.getFrameSize()) {
+                expressionFrame = new Object[condition.getFrameSize()];
+            }
+            return condition.test(this, expressionFrame);
+        }
+
+        public synchronized Map<String, Object> copyVariables() {
+            return new HashMap<>(variables);
+        }
+
+        /**
+         * 以给定变量创建分支上下文，分支内的写入记录在getWrites()中
+         */
+        public ExecutionContext fork(Map<String, Object> inputs) {
+            ExecutionContext branch = new ExecutionContext(id, workflowId);
+            branch.variables.putAll(inputs);
+            branch.writes = new LinkedHashMap<>();
+            return branch;
+        }
+
+        public synchronized Map<String, Object> getWrites() {
+            return writes != null ? new LinkedHashMap<>(writes) : Collections.emptyMap();
+        }
+
+        public synchronized void addHistory(String taskId, String outcomeId) {
             history.add(new ExecutionHistoryEntry(taskId, outcomeId, new Date()));
         }
 
-        public List<String> getExecutionPath() {
+        public synchronized List<String> getExecutionPath() {
             return history.stream()
                     .map(entry -> entry.getTaskId() + ":" + entry.getOutcomeId())
                     .collect(Collectors.toList());
         }
 
-        public void markTaskExecuted(String taskId) {
+        public synchronized void markTaskExecuted(String taskId) {
             executedTasks.add(taskId);
         }
 
-        public boolean isTaskExecuted(String taskId) {
+        public synchronized boolean isTaskExecuted(String taskId) {
             return executedTasks.contains(taskId);
         }
 
@@ -553,7 +1060,7 @@ public class TaskChainService {
     /**
      * 执行历史条目
      */
-    class ExecutionHistoryEntry {
+    static class ExecutionHistoryEntry {
         private String taskId;
         private String outcomeId;
         private Date timestamp;
@@ -587,7 +1094,68 @@ public class TaskChainService {
     private TaskOutcome executeTask(TaskNode task, ExecutionContext context) {
         System.out.println("执行任务: " + task.getName() + " (ID: " + task.getId() + ")");
 
+        TaskOutcome outcome;
         // 根据任务类型执行不同的逻辑
+        switch (task.getType()) {
+            case "MultiAttributeComparison":
+            case "DataAnalysis":
+            case "DeepAnalysis":
+                outcome = executeMemoized(task, context);
+                break;
+            case "CustomScript":
+                outcome = executeCustomScript(task, context);
+                break;
+            case "FanOut":
+                outcome = chooseOutcome(task, context);
+                break;
+            case "FanIn":
+                outcome = executeFanIn(task, context);
+                break;
+            default:
+                throw new RuntimeException("不支持的任务类型: " + task.getType());
+        }
+
+        // 任务内部会把查询异常转换为错误结果，超时或取消时不应沿错误分支继续执行
+        QueryDeadline.checkCurrent();
+        return outcome;
+    }
+
+    /**
+     * 执行分析类任务，任务参数、读取的上下文变量和数据集都未变化时直接使用缓存的结果
+     */
+    private TaskOutcome executeMemoized(TaskNode task, ExecutionContext context) {
+        String key = memoStore.keyFor(task.getType(), memoInputs(task, context));
+        TaskMemoStore.Memo memo = memoStore.get(key);
+        if (memo != null) {
+            TaskOutcome outcome = task.getPossibleOutcomes().stream()
+                    .filter(o -> o.getId().equals(memo.getOutcomeId()))
+                    .findFirst()
+                    .map(TaskOutcome::copyDefinition)
+                    .orElse(null);
+            // 工作流定义变化后找不到缓存的结果时重新执行
+            if (outcome != null) {
+                System.out.println("任务结果命中缓存: " + task.getName() + " (ID: " + task.getId() + ")");
+                memo.getWrites().forEach(context::setVariable);
+                outcome.getResultData().putAll(memo.getResultData());
+                return outcome;
+            }
+        }
+
+        // 在分支上下文中执行，记录任务写入的变量，与结果一起缓存
+        String version = memoStore.currentVersion();
+        ExecutionContext scratch = context.fork(context.copyVariables());
+        TaskOutcome outcome = runAnalysisTask(task, scratch);
+        Map<String, Object> writes = scratch.getWrites();
+        writes.forEach(context::setVariable);
+
+        if (key != null && !"error".equals(outcome.getId())) {
+            memoStore.put(key, task.getType(), outcome.getId(), new HashMap<>(outcome.getResultData()), writes,
+                    version);
+        }
+        return outcome;
+    }
+
+    private TaskOutcome runAnalysisTask(TaskNode task, ExecutionContext context) {
         switch (task.getType()) {
             case "MultiAttributeComparison":
                 return executeMultiAttributeComparison(task, context);
@@ -595,13 +1163,121 @@ public class TaskChainService {
                 return executeDataAnalysis(task, context);
             case "DeepAnalysis":
                 return executeDeepAnalysis(task, context);
-            case "CustomScript":
-                return executeCustomScript(task, context);
             default:
                 throw new RuntimeException("不支持的任务类型: " + task.getType());
         }
     }
 
+    /**
+     * 结果缓存的输入: 任务参数、任务读取的上下文变量，以及结果条件和条件引用的变量
+     */
+    private Map<String, Object> memoInputs(TaskNode task, ExecutionContext context) {
+        Map<String, Object> variables = new HashMap<>();
+        for (String name : MEMO_CONTEXT_INPUTS.getOrDefault(task.getType(), List.of())) {
+            variables.put(name, context.getVariable(name));
+        }
+
+        List<Map<String, Object>> outcomes = new ArrayList<>();
+        for (TaskOutcome outcome : task.getPossibleOutcomes()) {
+            String condition = outcome.getCondition();
+            Map<String, Object> item = new HashMap<>();
+            item.put("id", outcome.getId());
+            item.put("condition", condition);
+            outcomes.add(item);
+
+            if (condition == null || condition.isEmpty() || "true".equals(condition)) {
+                continue;
+            }
+            try {
+                for (String name : ExpressionCompiler.compile(condition).getVariableNames()) {
+                    variables.put(name, context.getVariable(name));
+                }
+            } catch (IllegalArgumentException e) {
+                // 无效条件总是不满足，不依赖变量
+            }
+        }
+
+        Map<String, Object> inputs = new HashMap<>();
+        inputs.put("parameters", task.getInputParameters());
+        inputs.put("variables", variables);
+        inputs.put("outcomes", outcomes);
+        return inputs;
+    }
+
+    /**
+     * 扇入节点 - 汇总各依赖任务的结果数据，供后续任务和最终结果使用
+     *
+     * 并行分支写入同名变量（如两个DataAnalysis都写detailedAnalysis）时运行上下文只保留其中一个，
+     * 因此按依赖顺序合并各分支结果数据中的detailedAnalysis，写回上下文供后续的深度分析使用
+     */
+    @SuppressWarnings("unchecked")
+    private TaskOutcome executeFanIn(TaskNode task, ExecutionContext context) {
+        Map<String, Object> dependencyResults = (Map<String, Object>) context
+                .getVariable(WorkflowDagScheduler.DEPENDENCY_RESULTS);
+        Map<String, Object> fanInResults = dependencyResults != null
+                ? new LinkedHashMap<>(dependencyResults)
+                : new LinkedHashMap<>();
+        context.setVariable("fanInResults", fanInResults);
+
+        Map<String, Object> detailedAnalysis = new LinkedHashMap<>();
+        for (Object branchResult : fanInResults.values()) {
+            if (branchResult instanceof Map
+                    && ((Map<String, Object>) branchResult).get("detailedAnalysis") instanceof Map) {
+                mergeBranchValues(detailedAnalysis,
+                        (Map<String, Object>) ((Map<String, Object>) branchResult).get("detailedAnalysis"));
+            }
+        }
+        if (!detailedAnalysis.isEmpty()) {
+            context.setVariable("detailedAnalysis", detailedAnalysis);
+        }
+
+        TaskOutcome outcome = chooseOutcome(task, context);
+        outcome.getResultData().put("fanInResults", fanInResults);
+        if (!detailedAnalysis.isEmpty()) {
+            outcome.getResultData().put("detailedAnalysis", detailedAnalysis);
+        }
+        return outcome;
+    }
+
+    /**
+     * 把一个分支的结果合并到汇总结果: Map逐层合并，不同的文本依次拼接，其他值以后面的分支为准
+     */
+    @SuppressWarnings("unchecked")
+    private static void mergeBranchValues(Map<String, Object> target, Map<String, Object> source) {
+        for (Map.Entry<String, Object> entry : source.entrySet()) {
+            Object existing = target.get(entry.getKey());
+            Object value = entry.getValue();
+            if (value instanceof Map) {
+                Map<String, Object> merged = existing instanceof Map
+                        ? new LinkedHashMap<>((Map<String, Object>) existing)
+                        : new LinkedHashMap<>();
+                mergeBranchValues(merged, (Map<String, Object>) value);
+                target.put(entry.getKey(), merged);
+            } else if (existing instanceof String && value instanceof String && !existing.equals(value)) {
+                target.put(entry.getKey(), existing + (String) value);
+            } else {
+                target.put(entry.getKey(), value);
+            }
+        }
+    }
+
+    /**
+     * 按条件选择结果，都不满足时返回第一个；没有定义结果时返回"完成"
+     *
+     * 返回的是本次执行的副本，结果数据只写入副本，不修改所有运行共享的工作流定义
+     */
+    private TaskOutcome chooseOutcome(TaskNode task, ExecutionContext context) {
+        for (TaskOutcome outcome : task.getPossibleOutcomes()) {
+            if (evaluateCondition(outcome.getCondition(), context)) {
+                return outcome.copyDefinition();
+            }
+        }
+        if (!task.getPossibleOutcomes().isEmpty()) {
+            return task.getPossibleOutcomes().get(0).copyDefinition();
+        }
+        return new TaskOutcome(task.getId() + "_done", "完成", null);
+    }
+
     /**
      * 执行多属性比较任务
      */
@@ -613,34 +1289,15 @@ public class TaskChainService {
             String aggregationMethodStr = getStringParam(task, "aggregationMethod", "AVERAGE");
             AggregationMethod aggregationMethod = AggregationMethod.valueOf(aggregationMethodStr.toUpperCase());
 
-            // 2. 执行比较
-            Map<String, Map<String, Object>> comparisonResults = new HashMap<>();
-
-            // 对每个时间范围进行分析
-            for (String timeRange : timeRanges) {
-                String[] parts = timeRange.split("/");
-                if (parts.length != 2) {
-                    throw new IllegalArgumentException("时间范围格式错误: " + timeRange);
-                }
-
-                String startDate = parts[0];
-                String endDate = parts[1];
-
-                Map<String, Object> rangeResults = new HashMap<>();
-
-                // 对每个属性进行分析
-                for (String attribute : attributes) {
-                    // 查询数据
-                    List<Map<String, Object>> dataPoints = queryDataPoints(startDate, endDate, attribute);
-
-                    // 根据聚合方法计算结果
-                    Object value = aggregateValues(dataPoints, attribute, aggregationMethod);
-
-                    // 存储结果
-                    rangeResults.put(attribute, value);
-                }
+            // 2. 执行比较 - AVERAGE/MAX/MIN/SUM在Fuseki端一次分组聚合完成
+            Map<String, Map<String, Object>> comparisonResults = null;
+            if (aggregationMethod != AggregationMethod.LATEST && aggregationMethod != AggregationMethod.FIRST) {
+                comparisonResults = queryAggregatesPushedDown(timeRanges, attributes, aggregationMethod);
+            }
 
-                comparisonResults.put(timeRange, rangeResults);
+            // LATEST/FIRST依赖行顺序，以及无法下推时，逐个时间范围和属性流式聚合
+            if (comparisonResults == null) {
+                comparisonResults = queryAggregatesInJvm(timeRanges, attributes, aggregationMethod);
             }
 
             // 3. 将结果添加到上下文
@@ -697,22 +1354,11 @@ public class TaskChainService {
 
             context.setVariable("analysisResults", analysisResults);
 
-            // 5. 确定适当的执行结果
-            for (TaskOutcome outcome : task.getPossibleOutcomes()) {
-                String condition = outcome.getCondition();
-                if (evaluateCondition(condition, context)) {
-                    // 设置结果数据
-                    outcome.getResultData().put("comparisonResults", comparisonResults);
-                    outcome.getResultData().put("analysisResults", analysisResults);
-                    return outcome;
-                }
-            }
-
-            // 默认返回第一个结果
-            TaskOutcome defaultOutcome = task.getPossibleOutcomes().get(0);
-            defaultOutcome.getResultData().put("comparisonResults", comparisonResults);
-            defaultOutcome.getResultData().put("analysisResults", analysisResults);
-            return defaultOutcome;
+            // 确定适当的执行结果，结果数据写入本次执行的副本
+            TaskOutcome outcome = chooseOutcome(task, context);
+            outcome.getResultData().put("comparisonResults", comparisonResults);
+            outcome.getResultData().put("analysisResults", analysisResults);
+            return outcome;
 
         } catch (Exception e) {
             System.err.println("执行多属性比较任务失败: " + e.getMessage());
@@ -721,8 +1367,9 @@ public class TaskChainService {
             // 如果有错误结果，返回错误结果
             for (TaskOutcome outcome : task.getPossibleOutcomes()) {
                 if ("error".equals(outcome.getId())) {
-                    outcome.getResultData().put("error", e.getMessage());
-                    return outcome;
+                    TaskOutcome errorOutcome = outcome.copyDefinition();
+                    errorOutcome.getResultData().put("error", e.getMessage());
+                    return errorOutcome;
                 }
             }
 
@@ -801,20 +1448,10 @@ public class TaskChainService {
             // 将结果添加到上下文
             context.setVariable("detailedAnalysis", detailedAnalysis);
 
-            // 确定适当的执行结果
-            for (TaskOutcome outcome : task.getPossibleOutcomes()) {
-                String condition = outcome.getCondition();
-                if (evaluateCondition(condition, context)) {
-                    // 设置结果数据
-                    outcome.getResultData().put("detailedAnalysis", detailedAnalysis);
-                    return outcome;
-                }
-            }
-
-            // 默认返回第一个结果
-            TaskOutcome defaultOutcome = task.getPossibleOutcomes().get(0);
-            defaultOutcome.getResultData().put("detailedAnalysis", detailedAnalysis);
-            return defaultOutcome;
+            // 确定适当的执行结果，结果数据写入本次执行的副本
+            TaskOutcome outcome = chooseOutcome(task, context);
+            outcome.getResultData().put("detailedAnalysis", detailedAnalysis);
+            return outcome;
 
         } catch (Exception e) {
             System.err.println("执行数据分析任务失败: " + e.getMessage());
@@ -847,19 +1484,10 @@ public class TaskChainService {
             // 添加到上下文
             context.setVariable("deepAnalysisResults", deepAnalysisResults);
 
-            // 确定适当的执行结果
-            for (TaskOutcome outcome : task.getPossibleOutcomes()) {
-                String condition = outcome.getCondition();
-                if (evaluateCondition(condition, context)) {
-                    outcome.getResultData().put("deepAnalysisResults", deepAnalysisResults);
-                    return outcome;
-                }
-            }
-
-            // 默认返回第一个结果
-            TaskOutcome defaultOutcome = task.getPossibleOutcomes().get(0);
-            defaultOutcome.getResultData().put("deepAnalysisResults", deepAnalysisResults);
-            return defaultOutcome;
+            // 确定适当的执行结果，结果数据写入本次执行的副本
+            TaskOutcome outcome = chooseOutcome(task, context);
+            outcome.getResultData().put("deepAnalysisResults", deepAnalysisResults);
+            return outcome;
 
         } catch (Exception e) {
             System.err.println("执行深度分析任务失败: " + e.getMessage());
@@ -885,19 +1513,10 @@ public class TaskChainService {
             // 添加到上下文
             context.setVariable("scriptResult", scriptResult);
 
-            // 确定适当的执行结果
-            for (TaskOutcome outcome : task.getPossibleOutcomes()) {
-                String condition = outcome.getCondition();
-                if (evaluateCondition(condition, context)) {
-                    outcome.getResultData().put("scriptResult", scriptResult);
-                    return outcome;
-                }
-            }
-
-            // 默认返回第一个结果
-            TaskOutcome defaultOutcome = task.getPossibleOutcomes().get(0);
-            defaultOutcome.getResultData().put("scriptResult", scriptResult);
-            return defaultOutcome;
+            // 确定适当的执行结果，结果数据写入本次执行的副本
+            TaskOutcome outcome = chooseOutcome(task, context);
+            outcome.getResultData().put("scriptResult", scriptResult);
+            return outcome;
 
         } catch (Exception e) {
             System.err.println("执行自定义脚本任务失败: " + e.getMessage());
@@ -910,9 +1529,178 @@ public class TaskChainService {
     }
 
     /**
-     * 查询数据点
+     * 逐个时间范围和属性流式查询并在JVM中聚合
+     */
+    private Map<String, Map<String, Object>> queryAggregatesInJvm(List<String> timeRanges, List<String> attributes,
+            AggregationMethod aggregationMethod) {
+        Map<String, Map<String, Object>> comparisonResults = new HashMap<>();
+
+        // 对每个时间范围进行分析
+        for (String timeRange : timeRanges) {
+            String[] parts = timeRange.split("/");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("时间范围格式错误: " + timeRange);
+            }
+
+            String startDate = parts[0];
+            String endDate = parts[1];
+
+            Map<String, Object> rangeResults = new HashMap<>();
+
+            // 对每个属性进行分析
+            for (String attribute : attributes) {
+                QueryDeadline.checkCurrent();
+
+                // 流式查询数据并按聚合方法计算结果
+                Object value = queryAggregatedValue(startDate, endDate, attribute, aggregationMethod);
+
+                // 存储结果
+                rangeResults.put(attribute, value);
+            }
+
+            comparisonResults.put(timeRange, rangeResults);
+        }
+        return comparisonResults;
+    }
+
+    /**
+     * 所有时间范围和属性在一个GROUP BY查询中聚合，时间范围和属性通过VALUES传入
+     * 参数无法安全下推或查询失败时返回null，由调用方退回JVM聚合
+     */
+    private Map<String, Map<String, Object>> queryAggregatesPushedDown(List<String> timeRanges,
+            List<String> attributes, AggregationMethod aggregationMethod) {
+        List<String> distinctRanges = new ArrayList<>(new LinkedHashSet<>(timeRanges));
+        List<String> distinctAttributes = new ArrayList<>(new LinkedHashSet<>(attributes));
+        if (distinctRanges.isEmpty() || distinctAttributes.isEmpty()) {
+            return null;
+        }
+
+        for (String attribute : distinctAttributes) {
+            if (!PROPERTY_NAME.matcher(attribute).matches()) {
+                return null;
+            }
+        }
+
+        // 日期索引就绪时按类型化日期连接，否则用与原查询相同的REGEX匹配描述
+        boolean indexed = dateIndex.isReady();
+        StringBuilder rangeValues = new StringBuilder();
+        for (int i = 0; i < distinctRanges.size(); i++) {
+            String[] parts = distinctRanges.get(i).split("/");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("时间范围格式错误: " + distinctRanges.get(i));
+            }
+            if (!DATE.matcher(parts[0]).matches() || !DATE.matcher(parts[1]).matches()) {
+                return null;
+            }
+
+            rangeValues.append("    (").append(i).append(' ');
+            if (indexed) {
+                String span = DescriptionDateIndex.typedSpan(parts[0], parts[1]);
+                if (span == null) {
+                    return null;
+                }
+                rangeValues.append(span);
+            } else {
+                rangeValues.append('"').append(exactDatePattern(parts[0], parts[1])).append('"');
+            }
+            rangeValues.append(")\n");
+        }
+
+        StringBuilder attributeValues = new StringBuilder();
+        for (int i = 0; i < distinctAttributes.size(); i++) {
+            attributeValues.append("    (").append(i).append(" ont:").append(distinctAttributes.get(i)).append(")\n");
+        }
+
+        String aggregate;
+        switch (aggregationMethod) {
+            case MAX:
+                aggregate = "MAX";
+                break;
+            case MIN:
+                aggregate = "MIN";
+                break;
+            case SUM:
+                aggregate = "SUM";
+                break;
+            case AVERAGE:
+            default:
+                aggregate = "AVG";
+        }
+
+        StringBuilder queryBuilder = new StringBuilder();
+        queryBuilder.append("PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n");
+        queryBuilder.append("PREFIX ont: <http://www.semanticweb.org/yoruh/ontologies/2024/9/untitled-ontology-11#>\n");
+        queryBuilder.append("PREFIX xsd: <http://www.w3.org/2001/XMLSchema#>\n");
+        queryBuilder.append("SELECT ?rangeIndex ?attributeIndex (").append(aggregate)
+                .append("(?number) AS ?value) WHERE {\n");
+        if (indexed) {
+            queryBuilder.append("  VALUES (?rangeIndex ?rangeSpan) {\n").append(rangeValues).append("  }\n");
+            queryBuilder.append("  ?event ont:periodSpan ?rangeSpan .\n");
+        } else {
+            queryBuilder.append("  VALUES (?rangeIndex ?datePattern) {\n").append(rangeValues).append("  }\n");
+        }
+        queryBuilder.append("  VALUES (?attributeIndex ?property) {\n").append(attributeValues).append("  }\n");
+        queryBuilder.append("  ?event rdf:type ont:RockBurst .\n");
+        queryBuilder.append("  ?event ?property ?rawValue .\n");
+        queryBuilder.append("  ?event ont:description ?description .\n");
+        if (!indexed) {
+            queryBuilder.append("  FILTER(REGEX(STR(?description), ?datePattern, \"i\"))\n");
+        }
+        // 与JVM聚合一致: 无法转换为数值的值按0计
+        queryBuilder.append("  BIND(COALESCE(xsd:double(?rawValue), 0.0e0) AS ?number)\n");
+        queryBuilder.append("} GROUP BY ?rangeIndex ?attributeIndex");
+
+        // 没有数据点的组不出现在结果中，与JVM聚合一致取0.0
+        Object[][] values = new Object[distinctRanges.size()][distinctAttributes.size()];
+        try {
+            sparqlService.streamQueryOrThrow(queryBuilder.toString(), row -> {
+                Object rangeIndex = row.get("rangeIndex");
+                Object attributeIndex = row.get("attributeIndex");
+                Object value = row.get("value");
+                if (rangeIndex instanceof Number && attributeIndex instanceof Number && value != null) {
+                    values[((Number) rangeIndex).intValue()][((Number) attributeIndex).intValue()] =
+                            convertToDouble(value);
+                }
+                return true;
+            });
+        } catch (Exception e) {
+            QueryDeadline.rethrowIfAborted(e);
+            System.err.println("聚合下推查询失败，改为逐项聚合: " + e.getMessage());
+            return null;
+        }
+
+        Map<String, Map<String, Object>> comparisonResults = new HashMap<>();
+        for (int i = 0; i < distinctRanges.size(); i++) {
+            Map<String, Object> rangeResults = new HashMap<>();
+            for (int j = 0; j < distinctAttributes.size(); j++) {
+                rangeResults.put(distinctAttributes.get(j), values[i][j] != null ? values[i][j] : 0.0);
+            }
+            comparisonResults.put(distinctRanges.get(i), rangeResults);
+        }
+        return comparisonResults;
+    }
+
+    /**
+     * 流式查询数据点并聚合，逐行累加而不保留完整的数据点列表
+     */
+    private Object queryAggregatedValue(String startDate, String endDate, String attribute,
+            AggregationMethod method) {
+        ValueAggregator aggregator = new ValueAggregator();
+
+        sparqlService.streamQuery(buildDataPointsQuery(startDate, endDate, attribute), row -> {
+            Object value = row.get(attribute);
+            aggregator.accept(value, convertToDouble(value));
+            // FIRST只需要第一行，提前终止查询
+            return method != AggregationMethod.FIRST;
+        });
+
+        return aggregator.result(method);
+    }
+
+    /**
+     * 构建数据点查询
      */
-    private List<Map<String, Object>> queryDataPoints(String startDate, String endDate, String attribute) {
+    private String buildDataPointsQuery(String startDate, String endDate, String attribute) {
         // 构建SPARQL查询
         StringBuilder queryBuilder = new StringBuilder();
         queryBuilder.append("PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n");
@@ -927,38 +1715,22 @@ public class TaskChainService {
 
         queryBuilder.append("} ORDER BY ?description");
 
-        System.out.println("查询数据点: " + queryBuilder.toString());
-
-        // 执行查询
-        return sparqlService.executeQuery(queryBuilder.toString());
+        return queryBuilder.toString();
     }
 
     /**
      * 构建精确的日期范围过滤条件
      */
     private String buildExactDateRangeFilter(String startDate, String endDate) {
-        try {
-            // 解析开始日期
-            String[] startParts = startDate.split("-");
-            String startYear = startParts[0];
-            String startMonth = startParts[1];
-            String startDay = startParts[2];
-
-            // 解析结束日期
-            String[] endParts = endDate.split("-");
-            String endYear = endParts[0];
-            String endMonth = endParts[1];
-            String endDay = endParts[2];
+        // 优先使用类型化日期索引，未就绪时退回REGEX匹配描述
+        String indexed = dateIndex.exactRangePattern(startDate, endDate);
+        if (indexed != null) {
+            return indexed;
+        }
 
+        try {
             // 构建精确的日期范围匹配
-            StringBuilder filterBuilder = new StringBuilder();
-
-            String exactPattern = "从" + startYear + "年" + startMonth + "月" + startDay + "日.*至" +
-                    endYear + "年" + endMonth + "月" + endDay + "日";
-
-            filterBuilder.append("  FILTER(REGEX(STR(?description), \"" + exactPattern + "\", \"i\"))\n");
-
-            return filterBuilder.toString();
+            return "  FILTER(REGEX(STR(?description), \"" + exactDatePattern(startDate, endDate) + "\", \"i\"))\n";
         } catch (Exception e) {
             System.err.println("日期格式转换错误: " + e.getMessage());
             e.printStackTrace();
@@ -967,39 +1739,67 @@ public class TaskChainService {
     }
 
     /**
-     * 根据聚合方法聚合值
+     * 描述中日期区间的正则: "从YYYY年MM月DD日...至YYYY年MM月DD日"，保留输入中的前导零
      */
-    private Object aggregateValues(List<Map<String, Object>> dataPoints, String attribute, AggregationMethod method) {
-        // 提取所有值
-        List<Object> values = dataPoints.stream()
-                .map(point -> point.get(attribute))
-                .collect(Collectors.toList());
+    private String exactDatePattern(String startDate, String endDate) {
+        // 解析开始日期
+        String[] startParts = startDate.split("-");
+        String startYear = startParts[0];
+        String startMonth = startParts[1];
+        String startDay = startParts[2];
+
+        // 解析结束日期
+        String[] endParts = endDate.split("-");
+        String endYear = endParts[0];
+        String endMonth = endParts[1];
+        String endDay = endParts[2];
+
+        return "从" + startYear + "年" + startMonth + "月" + startDay + "日.*至" +
+                endYear + "年" + endMonth + "月" + endDay + "日";
+    }
 
-        if (values.isEmpty()) {
-            return 0.0;
+    /**
+     * 流式聚合器 - 逐个累加数据点，内存占用与结果行数无关
+     */
+    private static class ValueAggregator {
+        private long count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private Object first;
+        private Object latest;
+
+        void accept(Object value, double numericValue) {
+            if (count == 0) {
+                first = value;
+            }
+            latest = value;
+            count++;
+            sum += numericValue;
+            min = Math.min(min, numericValue);
+            max = Math.max(max, numericValue);
         }
 
-        // 转换为数值
-        List<Double> numericValues = values.stream()
-                .map(this::convertToDouble)
-                .collect(Collectors.toList());
+        Object result(AggregationMethod method) {
+            if (count == 0) {
+                return 0.0;
+            }
 
-        // 根据聚合方法计算
-        switch (method) {
-            case AVERAGE:
-                return numericValues.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-            case MAX:
-                return numericValues.stream().mapToDouble(Double::doubleValue).max().orElse(0.0);
-            case MIN:
-                return numericValues.stream().mapToDouble(Double::doubleValue).min().orElse(0.0);
-            case SUM:
-                return numericValues.stream().mapToDouble(Double::doubleValue).sum();
-            case LATEST:
-                return values.get(values.size() - 1);
-            case FIRST:
-                return values.get(0);
-            default:
-                return numericValues.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
+            switch (method) {
+                case MAX:
+                    return max;
+                case MIN:
+                    return min;
+                case SUM:
+                    return sum;
+                case LATEST:
+                    return latest;
+                case FIRST:
+                    return first;
+                case AVERAGE:
+                default:
+                    return sum / count;
+            }
         }
     }
 
@@ -1026,27 +1826,18 @@ public class TaskChainService {
      * 评估条件表达式
      */
     private boolean evaluateCondition(String condition, ExecutionContext context) {
-        // 简单的条件评估实现
-        // 在实际实现中，可以使用JavaScript引擎或表达式引擎
-
         // 如果条件为空或"true"，返回true
         if (condition == null || condition.isEmpty() || "true".equals(condition)) {
             return true;
         }
 
-        // 这里是一个非常简化的条件评估示例
-        if (condition.startsWith("energyChange > ")) {
-            double threshold = Double.parseDouble(condition.substring("energyChange > ".length()));
-            double energyChange = (double) context.getVariable("energyChange");
-            return energyChange > threshold;
-        } else if (condition.startsWith("energyChange < ")) {
-            double threshold = Double.parseDouble(condition.substring("energyChange < ".length()));
-            double energyChange = (double) context.getVariable("energyChange");
-            return energyChange < threshold;
+        // 条件按文本编译一次并缓存，变量从执行上下文取值；缺失的数值变量为NaN，比较结果为false
+        try {
+            return context.evaluateCondition(ExpressionCompiler.compile(condition));
+        } catch (IllegalArgumentException e) {
+            System.err.println("条件表达式无效，视为不满足: " + e.getMessage());
+            return false;
         }
-
-        // 默认返回false
-        return false;
     }
 
     /**
@@ -1143,10 +1934,26 @@ public class TaskChainService {
      * 执行脚本
      */
     private Map<String, Object> evaluateScript(String script, ExecutionContext context) {
-        // 简单实现 - 实际项目中可能需要更安全的脚本执行引擎
         Map<String, Object> result = new HashMap<>();
         result.put("executed", true);
+        if (script == null || script.isBlank()) {
+            // 与原先的实现一致，空脚本视为执行成功
+            result.put("message", "脚本执行成功");
+            return result;
+        }
+
+        // 脚本按文本编译一次并缓存，语法错误时抛出异常，由任务返回错误结果
+        Map<String, Object> values = ExpressionCompiler.compileScript(script).execute(context);
+
+        // 赋值的变量写回上下文，供结果条件和后续任务使用
+        values.forEach((name, value) -> {
+            if (!"result".equals(name)) {
+                context.setVariable(name, value);
+            }
+        });
+
         result.put("message", "脚本执行成功");
+        result.put("values", values);
         return result;
     }
 
@@ -1191,19 +1998,19 @@ public class TaskChainService {
                 if (!context.isTaskExecuted(task.getId())) {
                     // 这里我们不需要获取返回值，因为我们只是想确保任务被执行
                     // 结果会被存储在context中
-                    executeMultiAttributeComparison(task, context);
+                    executeMemoized(task, context);
                 }
                 break;
 
             case "DataAnalysis":
                 if (!context.isTaskExecuted(task.getId())) {
-                    executeDataAnalysis(task, context);
+                    executeMemoized(task, context);
                 }
                 break;
 
             case "DeepAnalysis":
                 if (!context.isTaskExecuted(task.getId())) {
-                    executeDeepAnalysis(task, context);
+                    executeMemoized(task, context);
                 }
                 break;
 
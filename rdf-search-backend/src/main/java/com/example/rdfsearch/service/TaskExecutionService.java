@@ -1,9 +1,12 @@
 package com.example.rdfsearch.service;
 
 import com.example.rdfsearch.model.Task;
+import com.example.rdfsearch.service.sparql.QueryDeadline;
+import com.example.rdfsearch.service.sparql.QueryScope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
@@ -23,6 +26,18 @@ public class TaskExecutionService {
     @Autowired
     private SparqlService sparqlService;
 
+    // 描述中日期区间的类型化索引
+    @Autowired
+    private DescriptionDateIndex dateIndex;
+
+    // 任务内相互独立的查询是否并行执行
+    @Value("${task.execution.parallel:true}")
+    private boolean parallelQueries;
+
+    // 没有请求截止时间时（如非HTTP调用）并行查询的超时
+    @Value("${sparql.query.timeout-ms:${spring.mvc.async.request-timeout:30000}}")
+    private long defaultTimeoutMs;
+
     /**
      * 执行任务并返回结果
      * 
@@ -60,6 +75,8 @@ public class TaskExecutionService {
                     + (result.containsKey("results") ? ((List<?>) result.get("results")).size() + "条" : "无结果"));
             System.out.println("==========================================");
         } catch (Exception e) {
+            // 超时或取消向上抛出，不作为部分结果返回
+            QueryDeadline.rethrowIfAborted(e);
             System.err.println("任务执行错误: " + e.getMessage());
             e.printStackTrace();
             result.put("error", e.getMessage());
@@ -86,7 +103,6 @@ public class TaskExecutionService {
         diagnosticQuery.append("  ?event rdf:type ?type .\n");
         diagnosticQuery.append("} GROUP BY ?type ORDER BY DESC(?count)");
 
-        System.out.println("执行类型诊断: " + diagnosticQuery.toString());
         List<Map<String, Object>> typeResults = sparqlService.executeQuery(diagnosticQuery.toString());
 
         if (typeResults != null && !typeResults.isEmpty()) {
@@ -163,11 +179,14 @@ public class TaskExecutionService {
                     // 根据实际数据中的格式: "从2023年04月27日08:00至2023年04月28日08:00"
                     String datePattern = "从" + year + "年" + month + "月" + day + "日";
 
-                    queryBuilder.append("  FILTER(");
-                    queryBuilder.append("CONTAINS(STR(?description), \"" + datePattern + "\")");
-                    queryBuilder.append(")\n");
-
-                    System.out.println("生成的日期过滤条件: " + queryBuilder.toString());
+                    String indexed = dateIndex.startDayPattern(dates[0]);
+                    if (indexed != null) {
+                        queryBuilder.append(indexed);
+                    } else {
+                        queryBuilder.append("  FILTER(");
+                        queryBuilder.append("CONTAINS(STR(?description), \"" + datePattern + "\")");
+                        queryBuilder.append(")\n");
+                    }
                 }
             }
         }
@@ -179,20 +198,16 @@ public class TaskExecutionService {
 
         queryBuilder.append("} ORDER BY DESC(?energy)");
 
-        // 执行查询
-        System.out.println("执行搜索查询: " + queryBuilder.toString());
-        List<Map<String, Object>> queryResults = sparqlService.executeQuery(queryBuilder.toString());
-
-        // 处理queryResults可能为null的情况
-        if (queryResults == null) {
-            System.out.println("警告: 查询结果为null");
-            queryResults = new ArrayList<>(); // 避免空指针异常
-        } else {
-            System.out.println("查询结果数量: " + queryResults.size());
-        }
+        // 执行查询 - 逐行流式转换为前端格式，不保留原始结果列表
+        List<Map<String, Object>> formattedEvents = new ArrayList<>();
+        long rowCount = sparqlService.streamQuery(queryBuilder.toString(), row -> {
+            formattedEvents.add(toSearchEvent(row));
+            return true;
+        });
+        System.out.println("查询结果数量: " + rowCount);
 
         // 如果没有结果，尝试不带日期过滤的查询
-        if (queryResults.isEmpty() && !timeRange.isEmpty()) {
+        if (formattedEvents.isEmpty() && !timeRange.isEmpty()) {
             System.out.println("未找到结果，尝试执行不带日期过滤的查询...");
 
             // 构建新查询，去掉日期过滤
@@ -220,37 +235,15 @@ public class TaskExecutionService {
 
             fallbackQueryBuilder.append("} ORDER BY DESC(?energy) LIMIT 10");
 
-            System.out.println("执行备用查询: " + fallbackQueryBuilder.toString());
-            List<Map<String, Object>> fallbackResults = sparqlService.executeQuery(fallbackQueryBuilder.toString());
-
-            // 同样处理可能为null的情况
-            if (fallbackResults == null) {
-                System.out.println("警告: 备用查询结果为null");
-                fallbackResults = new ArrayList<>();
-            } else {
-                System.out.println("备用查询结果数量: " + fallbackResults.size());
-
-                // 如果找到结果，输出第一个结果的description，用于分析文本格式
-                if (!fallbackResults.isEmpty() && fallbackResults.get(0).containsKey("description")) {
-                    System.out.println("样本描述文本: " + fallbackResults.get(0).get("description"));
+            long fallbackCount = sparqlService.streamQuery(fallbackQueryBuilder.toString(), row -> {
+                // 输出第一个结果的description，用于分析文本格式
+                if (formattedEvents.isEmpty() && row.containsKey("description")) {
+                    System.out.println("样本描述文本: " + row.get("description"));
                 }
-            }
-
-            // 使用备用查询结果
-            queryResults = fallbackResults;
-        }
-
-        // 处理结果以符合前端预期格式
-        List<Map<String, Object>> formattedEvents = new ArrayList<>();
-        for (Map<String, Object> result1 : queryResults) {
-            Map<String, Object> event = new HashMap<>();
-            if (result1.get("event") != null) {
-                event.put("ID", extractId(result1.get("event").toString())); // 提取ID
-            }
-            event.put("能量 (J)", result1.get("energy")); // 能量值
-            event.put("时间", result1.get("description")); // 描述作为"时间"
-            event.put("位置", result1.get("mileage")); // 里程作为"位置"
-            formattedEvents.add(event);
+                formattedEvents.add(toSearchEvent(row));
+                return true;
+            });
+            System.out.println("备用查询结果数量: " + fallbackCount);
         }
 
         // 处理结果
@@ -264,6 +257,20 @@ public class TaskExecutionService {
         return result;
     }
 
+    /**
+     * 将查询结果行转换为前端预期的事件格式
+     */
+    private Map<String, Object> toSearchEvent(Map<String, Object> row) {
+        Map<String, Object> event = new HashMap<>();
+        if (row.get("event") != null) {
+            event.put("ID", extractId(row.get("event").toString())); // 提取ID
+        }
+        event.put("能量 (J)", row.get("energy")); // 能量值
+        event.put("时间", row.get("description")); // 描述作为"时间"
+        event.put("位置", row.get("mileage")); // 里程作为"位置"
+        return event;
+    }
+
     /**
      * 执行风险分析任务
      */
@@ -292,13 +299,6 @@ public class TaskExecutionService {
 
         countQueryBuilder.append("}");
 
-        // 执行计数查询
-        List<Map<String, Object>> countResults = sparqlService.executeQuery(countQueryBuilder.toString());
-        int eventCount = 0;
-        if (!countResults.isEmpty() && countResults.get(0).containsKey("eventCount")) {
-            eventCount = Integer.parseInt(countResults.get(0).get("eventCount").toString());
-        }
-
         // 构建SPARQL查询 - 计算能量统计
         StringBuilder energyQueryBuilder = new StringBuilder();
         energyQueryBuilder.append("PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n");
@@ -315,8 +315,24 @@ public class TaskExecutionService {
 
         energyQueryBuilder.append("}");
 
-        // 执行能量统计查询
-        List<Map<String, Object>> energyResults = sparqlService.executeQuery(energyQueryBuilder.toString());
+        // 计数查询与能量统计查询相互独立，并行执行
+        List<Map<String, Object>> countResults;
+        List<Map<String, Object>> energyResults;
+        try (QueryScope scope = QueryScope.open(parallelQueries, defaultTimeoutMs)) {
+            QueryScope.Subtask<List<Map<String, Object>>> count = scope.fork(
+                    () -> sparqlService.executeQuery(countQueryBuilder.toString()));
+            QueryScope.Subtask<List<Map<String, Object>>> energy = scope.fork(
+                    () -> sparqlService.executeQuery(energyQueryBuilder.toString()));
+            scope.join();
+            countResults = count.get();
+            energyResults = energy.get();
+        }
+
+        int eventCount = 0;
+        if (!countResults.isEmpty() && countResults.get(0).containsKey("eventCount")) {
+            eventCount = Integer.parseInt(countResults.get(0).get("eventCount").toString());
+        }
+
         Map<String, Object> energyStats = energyResults.isEmpty() ? new HashMap<>() : energyResults.get(0);
 
         // 计算风险评分 (示例逻辑)
@@ -357,11 +373,18 @@ public class TaskExecutionService {
             throw new IllegalArgumentException("时间段格式错误，应为'startDate/endDate'");
         }
 
-        // 使用改进的方法获取指标值 - 同时使用开始和结束日期
-        Map<String, Object> period1Results = getMetricForDateRange(
-                periodOneDates[0], periodOneDates[1], comparisonMetric);
-        Map<String, Object> period2Results = getMetricForDateRange(
-                periodTwoDates[0], periodTwoDates[1], comparisonMetric);
+        // 使用改进的方法获取指标值 - 同时使用开始和结束日期，两个时间段并行查询
+        Map<String, Object> period1Results;
+        Map<String, Object> period2Results;
+        try (QueryScope scope = QueryScope.open(parallelQueries, defaultTimeoutMs)) {
+            QueryScope.Subtask<Map<String, Object>> period1 = scope.fork(
+                    () -> getMetricForDateRange(periodOneDates[0], periodOneDates[1], comparisonMetric));
+            QueryScope.Subtask<Map<String, Object>> period2 = scope.fork(
+                    () -> getMetricForDateRange(periodTwoDates[0], periodTwoDates[1], comparisonMetric));
+            scope.join();
+            period1Results = period1.get();
+            period2Results = period2.get();
+        }
 
         // 调试输出
         System.out.println("周期1数据: " + period1Results);
@@ -395,6 +418,10 @@ public class TaskExecutionService {
 
     /**
      * 获取指定日期范围的指标值 - 新方法，处理完整日期范围
+     *
+     * 诊断查询、正式查询和备用的getMetricForPeriod依次执行: 诊断查询的结果决定走哪条路径，
+     * 只执行选中路径的查询，因此本方法内的查询不并行；并行只发生在调用方，
+     * 两个时间段各自调用本方法，在同一个QueryScope中同时执行。
      * 
      * @param startDate 开始日期 (YYYY-MM-DD)
      * @param endDate   结束日期 (YYYY-MM-DD)
@@ -411,7 +438,7 @@ public class TaskExecutionService {
         String diagnosticQuery = "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n" +
                 "PREFIX ont: <http://www.semanticweb.org/yoruh/ontologies/2024/9/untitled-ontology-11#>\n" +
                 "PREFIX xsd: <http://www.w3.org/2001/XMLSchema#>\n" +
-                "SELECT ?event ?description ?energy ?dailyEnergy ?microCount WHERE {\n" +
+                "SELECT DISTINCT ?event ?description ?energy ?dailyEnergy ?microCount WHERE {\n" +
                 "  ?event rdf:type ont:RockBurst .\n" +
                 "  ?event ont:description ?description .\n" +
                 "  OPTIONAL { ?event ont:energyRelease ?energy }\n" +
@@ -420,30 +447,12 @@ public class TaskExecutionService {
                 buildExactDateRangeFilter(startDate, endDate) +
                 "} ORDER BY ?description";
 
-        System.out.println("诊断查询: " + diagnosticQuery);
-        List<Map<String, Object>> diagnosticResults = sparqlService.executeQuery(diagnosticQuery);
-
-        if (diagnosticResults != null && !diagnosticResults.isEmpty()) {
-            System.out.println("找到 " + diagnosticResults.size() + " 条匹配数据:");
-            for (int i = 0; i < diagnosticResults.size(); i++) {
-                System.out.println("数据 #" + (i + 1) + ":");
-                System.out.println("  - 描述: " + diagnosticResults.get(i).get("description"));
-                System.out.println("  - 能量释放: " + diagnosticResults.get(i).get("energy"));
-                System.out.println("  - 日能量释放: " + diagnosticResults.get(i).get("dailyEnergy"));
-                System.out.println("  - 微震事件数: " + diagnosticResults.get(i).get("microCount"));
-            }
-        } else {
-            System.out.println("没有找到匹配的日期范围数据，尝试备用查询...");
-            // 如果没有找到精确匹配，尝试使用单日期查询作为备用
-            return getMetricForPeriod(startDate, endDate, metric);
-        }
-
         // 构建正式指标查询
         StringBuilder queryBuilder = new StringBuilder();
         queryBuilder.append("PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n");
         queryBuilder.append("PREFIX ont: <http://www.semanticweb.org/yoruh/ontologies/2024/9/untitled-ontology-11#>\n");
         queryBuilder.append("PREFIX xsd: <http://www.w3.org/2001/XMLSchema#>\n");
-        queryBuilder.append("SELECT ?value ?description WHERE {\n");
+        queryBuilder.append("SELECT DISTINCT ?value ?description WHERE {\n");
         queryBuilder.append("  ?event rdf:type ont:RockBurst .\n");
 
         // 根据不同指标选择不同属性
@@ -473,9 +482,27 @@ public class TaskExecutionService {
         // 按描述排序并只返回一个结果
         queryBuilder.append("} ORDER BY ?description LIMIT 1");
 
-        System.out.println("执行正式查询: " + queryBuilder.toString());
-        List<Map<String, Object>> results = sparqlService.executeQuery(queryBuilder.toString());
+        String metricQuery = queryBuilder.toString();
+
+        // 诊断查询决定走精确范围还是单日期备用路径，正式查询只在选中精确范围时执行
+        List<Map<String, Object>> diagnosticResults = sparqlService.executeQuery(diagnosticQuery);
+
+        if (!diagnosticResults.isEmpty()) {
+            System.out.println("找到 " + diagnosticResults.size() + " 条匹配数据:");
+            for (int i = 0; i < diagnosticResults.size(); i++) {
+                System.out.println("数据 #" + (i + 1) + ":");
+                System.out.println("  - 描述: " + diagnosticResults.get(i).get("description"));
+                System.out.println("  - 能量释放: " + diagnosticResults.get(i).get("energy"));
+                System.out.println("  - 日能量释放: " + diagnosticResults.get(i).get("dailyEnergy"));
+                System.out.println("  - 微震事件数: " + diagnosticResults.get(i).get("microCount"));
+            }
+        } else {
+            System.out.println("没有找到匹配的日期范围数据，尝试备用查询...");
+            // 如果没有找到精确匹配，尝试使用单日期查询作为备用
+            return getMetricForPeriod(startDate, endDate, metric);
+        }
 
+        List<Map<String, Object>> results = sparqlService.executeQuery(metricQuery);
         if (results.isEmpty()) {
             System.out.println("警告: 没有找到指标数据，尝试使用单日期查询...");
             return getMetricForPeriod(startDate, endDate, metric);
@@ -504,6 +531,12 @@ public class TaskExecutionService {
      * @return SPARQL FILTER条件
      */
     private String buildExactDateRangeFilter(String startDate, String endDate) {
+        // 优先使用类型化日期索引，未就绪时退回REGEX匹配描述
+        String indexed = dateIndex.exactRangePattern(startDate, endDate);
+        if (indexed != null) {
+            return indexed;
+        }
+
         try {
             // 解析开始日期
             String[] startParts = startDate.split("-");
@@ -527,7 +560,6 @@ public class TaskExecutionService {
             filterBuilder.append("  FILTER(REGEX(STR(?description), \"" + exactPattern + "\", \"i\"))\n");
 
             String filterCondition = filterBuilder.toString();
-            System.out.println("构建的日期范围过滤条件: " + filterCondition);
             return filterCondition;
         } catch (Exception e) {
             System.err.println("日期格式转换错误: " + e.getMessage());
@@ -559,22 +591,6 @@ public class TaskExecutionService {
                 buildDateFilterCondition(startDate) +
                 "} ORDER BY ?description";
 
-        System.out.println("诊断查询: " + diagnosticQuery);
-        List<Map<String, Object>> diagnosticResults = sparqlService.executeQuery(diagnosticQuery);
-
-        if (diagnosticResults != null && !diagnosticResults.isEmpty()) {
-            System.out.println("找到 " + diagnosticResults.size() + " 条匹配数据:");
-            for (int i = 0; i < diagnosticResults.size(); i++) {
-                System.out.println("数据 #" + (i + 1) + ":");
-                System.out.println("  - 描述: " + diagnosticResults.get(i).get("description"));
-                System.out.println("  - 能量释放: " + diagnosticResults.get(i).get("energy"));
-                System.out.println("  - 日能量释放: " + diagnosticResults.get(i).get("dailyEnergy"));
-                System.out.println("  - 微震事件数: " + diagnosticResults.get(i).get("microCount"));
-            }
-        } else {
-            System.out.println("没有找到匹配数据!");
-        }
-
         // 构建正式查询 - 添加排序确保一致性
         StringBuilder queryBuilder = new StringBuilder();
         queryBuilder.append("PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n");
@@ -610,8 +626,26 @@ public class TaskExecutionService {
         // 添加排序确保结果一致性
         queryBuilder.append("} ORDER BY ?description LIMIT 1");
 
-        System.out.println("执行正式查询: " + queryBuilder.toString());
-        List<Map<String, Object>> results = sparqlService.executeQuery(queryBuilder.toString());
+        String metricQuery = queryBuilder.toString();
+
+        // 正式查询的匹配范围包含在诊断查询之内，诊断查询没有结果时不再执行正式查询
+        List<Map<String, Object>> diagnosticResults = sparqlService.executeQuery(diagnosticQuery);
+        List<Map<String, Object>> results = diagnosticResults.isEmpty()
+                ? new ArrayList<>()
+                : sparqlService.executeQuery(metricQuery);
+
+        if (!diagnosticResults.isEmpty()) {
+            System.out.println("找到 " + diagnosticResults.size() + " 条匹配数据:");
+            for (int i = 0; i < diagnosticResults.size(); i++) {
+                System.out.println("数据 #" + (i + 1) + ":");
+                System.out.println("  - 描述: " + diagnosticResults.get(i).get("description"));
+                System.out.println("  - 能量释放: " + diagnosticResults.get(i).get("energy"));
+                System.out.println("  - 日能量释放: " + diagnosticResults.get(i).get("dailyEnergy"));
+                System.out.println("  - 微震事件数: " + diagnosticResults.get(i).get("microCount"));
+            }
+        } else {
+            System.out.println("没有找到匹配数据!");
+        }
 
         if (results.isEmpty()) {
             System.out.println("警告: 该时间段没有查询到数据!");
@@ -673,6 +707,12 @@ public class TaskExecutionService {
      * 生成日期搜索条件 - 保留原始方法，增加排序功能
      */
     private String buildDateFilterCondition(String dateStr) {
+        // 索引就绪时按描述中出现的日期匹配，与下面三个REGEX条件的并集一致
+        String indexed = dateIndex.mentionsDayPattern(dateStr);
+        if (indexed != null) {
+            return indexed;
+        }
+
         try {
             // 解析日期
             String[] parts = dateStr.split("-");
@@ -698,7 +738,6 @@ public class TaskExecutionService {
             filterBuilder.append(")\n");
 
             String filterCondition = filterBuilder.toString();
-            System.out.println("生成的基础日期过滤条件: " + filterCondition);
             return filterCondition;
         } catch (Exception e) {
             System.err.println("日期格式转换错误: " + e.getMessage());
@@ -0,0 +1,126 @@
+package com.example.rdfsearch.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.rdfsearch.model.TaskHistory;
+import com.example.rdfsearch.repository.TaskHistoryRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 查询历史异步记录 - 请求线程只入队，后台线程按批次写入数据库
+ *
+ * 队列满时丢弃新记录并计数，历史记录不应拖慢或阻塞查询本身。
+ */
+@Component
+public class TaskHistoryRecorder {
+
+    @Autowired
+    private TaskHistoryRepository taskHistoryRepository;
+
+    // 两次批量写入的最长间隔
+    @Value("${task.history.batch.flush-ms:1000}")
+    private long flushMs;
+
+    @Value("${task.history.batch.max-size:100}")
+    private int maxBatchSize;
+
+    @Value("${task.history.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private BlockingQueue<TaskHistory> queue;
+    private Thread writer;
+    private volatile boolean running = true;
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        writer = Thread.ofVirtual().name("task-history-writer").start(this::writeLoop);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 提交一条历史记录，立即返回
+     */
+    public void record(TaskHistory history) {
+        if (queue.offer(history)) {
+            recorded.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+            System.err.println("查询历史队列已满，丢弃记录: " + history.getTaskUri());
+        }
+    }
+
+    private void writeLoop() {
+        List<TaskHistory> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                TaskHistory first = running ? queue.poll(flushMs, TimeUnit.MILLISECONDS) : queue.poll();
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatchSize - 1);
+                }
+            } catch (InterruptedException e) {
+                // shutdown时中断等待，继续写入剩余记录
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            } else if (!running) {
+                break;
+            }
+        }
+    }
+
+    private void flush(List<TaskHistory> batch) {
+        try {
+            taskHistoryRepository.saveAll(batch);
+            written.addAndGet(batch.size());
+        } catch (Exception e) {
+            // 记录历史失败不应影响主要功能
+            failed.addAndGet(batch.size());
+            System.err.println("批量写入查询历史失败(" + batch.size() + "条): " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取记录统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queued", queue.size());
+        stats.put("recorded", recorded.get());
+        stats.put("written", written.get());
+        stats.put("dropped", dropped.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+}
@@ -0,0 +1,362 @@
+package com.example.rdfsearch.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.rdfsearch.model.TaskMemoRecord;
+import com.example.rdfsearch.repository.TaskMemoRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 任务结果缓存 - 按（任务类型, 规范化输入, 数据集版本）缓存任务的结果及其写入的上下文变量
+ *
+ * 内存中按LRU保留有限条目，后面是H2中的记录，内存未命中时从数据库取回。
+ * 每条记录保存写入时的数据集版本（DatasetVersionStore中持久的版本号，重启后继续有效），
+ * 读取时版本不一致即视为失效，因此数据更新时不需要同步清空缓存。
+ * 外部直接写入Fuseki的变化由过期时间兜底。
+ * 数据库的写入和旧版本记录的清理在后台线程上按顺序执行，不占用任务线程。
+ * 缓存的内容以JSON保存，每次命中都解析出新的对象，运行之间不共享可变数据。
+ */
+@Component
+public class TaskMemoStore {
+
+    @Autowired
+    private TaskMemoRecordRepository recordRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DatasetVersionStore datasetVersionStore;
+
+    @Value("${workflow.memo.enabled:true}")
+    private boolean enabled;
+
+    // 内存中保留的结果数
+    @Value("${workflow.memo.max-entries:256}")
+    private int maxEntries;
+
+    // 是否在H2中保存结果
+    @Value("${workflow.memo.persistent-enabled:true}")
+    private boolean persistentEnabled;
+
+    // 结果的有效时长
+    @Value("${workflow.memo.ttl-hours:24}")
+    private long ttlHours;
+
+    // 按键排序输出Map，相同内容得到相同的键
+    private ObjectMapper canonicalMapper;
+
+    // 数据库写入线程
+    private ExecutorService writer;
+
+    // 最近一次清理旧版本记录时的数据集版本，只在写入线程上访问
+    private String cleanedVersion;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong persistentHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong staleDropped = new AtomicLong();
+
+    // 访问顺序的LinkedHashMap实现LRU
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    @PostConstruct
+    public void init() {
+        canonicalMapper = objectMapper.copy().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+        writer = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("task-memo-writer").factory());
+
+        if (enabled && persistentEnabled) {
+            String version = currentVersion();
+            writer.execute(() -> deleteOtherVersions(version));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 缓存的任务结果
+     */
+    public static class Memo {
+        private final String outcomeId;
+        private final Map<String, Object> resultData;
+        private final Map<String, Object> writes;
+
+        Memo(String outcomeId, Map<String, Object> resultData, Map<String, Object> writes) {
+            this.outcomeId = outcomeId;
+            this.resultData = resultData;
+            this.writes = writes;
+        }
+
+        public String getOutcomeId() {
+            return outcomeId;
+        }
+
+        public Map<String, Object> getResultData() {
+            return resultData;
+        }
+
+        public Map<String, Object> getWrites() {
+            return writes;
+        }
+    }
+
+    /**
+     * 当前数据集版本号，任务开始前读取，写入缓存时用于判断期间数据是否变化
+     */
+    public String currentVersion() {
+        return datasetVersionStore.currentVersion();
+    }
+
+    /**
+     * 由任务类型和输入计算缓存键；未启用或输入无法序列化时返回null
+     */
+    public String keyFor(String taskType, Map<String, Object> inputs) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            Map<String, Object> canonical = new LinkedHashMap<>();
+            canonical.put("taskType", taskType);
+            canonical.put("inputs", inputs);
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(canonicalMapper.writeValueAsString(canonical).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (Exception e) {
+            System.err.println("任务输入无法生成缓存键，不使用缓存: " + taskType + ", " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 读取缓存结果，未命中、已过期或数据已变化时返回null
+     */
+    public Memo get(String key) {
+        if (!enabled || key == null) {
+            return null;
+        }
+
+        String version = currentVersion();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && (!entry.version.equals(version) || isExpired(entry.savedAt))) {
+                entries.remove(key);
+                staleDropped.incrementAndGet();
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            Memo memo = decode(entry.outcomeId, entry.payload);
+            if (memo != null) {
+                memoryHits.incrementAndGet();
+                return memo;
+            }
+        }
+
+        if (persistentEnabled) {
+            try {
+                TaskMemoRecord record = recordRepository.findById(key).orElse(null);
+                if (record != null && (!version.equals(record.getDatasetVersion())
+                        || isExpired(record.getSavedAt().getTime()))) {
+                    // 数据已变化或已过期，在写入线程上删除记录
+                    writer.execute(() -> deleteStale(key, version));
+                    record = null;
+                }
+                if (record != null) {
+                    Memo memo = decode(record.getOutcomeId(), record.getPayload());
+                    if (memo != null) {
+                        remember(key, new Entry(version, record.getOutcomeId(), record.getPayload(),
+                                record.getSavedAt().getTime()));
+                        persistentHits.incrementAndGet();
+                        return memo;
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("读取任务结果记录失败: " + e.getMessage());
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 写入缓存，version应为任务开始前读取的版本号；若期间数据发生过更新则不缓存
+     */
+    public void put(String key, String taskType, String outcomeId, Map<String, Object> resultData,
+            Map<String, Object> writes, String version) {
+        if (!enabled || key == null || !version.equals(currentVersion())) {
+            return;
+        }
+
+        String payload;
+        try {
+            Map<String, Object> content = new HashMap<>();
+            content.put("resultData", resultData);
+            content.put("writes", writes);
+            payload = objectMapper.writeValueAsString(content);
+        } catch (Exception e) {
+            System.err.println("任务结果无法序列化，不缓存: " + taskType + ", " + e.getMessage());
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        remember(key, new Entry(version, outcomeId, payload, now));
+        stored.incrementAndGet();
+
+        if (persistentEnabled) {
+            TaskMemoRecord record = new TaskMemoRecord();
+            record.setMemoKey(key);
+            record.setTaskType(taskType);
+            record.setOutcomeId(outcomeId);
+            record.setDatasetVersion(version);
+            record.setSavedAt(new Date(now));
+            record.setPayload(payload);
+            writer.execute(() -> save(record));
+        }
+    }
+
+    // 在写入线程上执行: 数据集版本变化后第一次写入时顺带删除旧版本的记录
+    private void save(TaskMemoRecord record) {
+        if (!record.getDatasetVersion().equals(cleanedVersion)) {
+            deleteOtherVersions(record.getDatasetVersion());
+        }
+        try {
+            recordRepository.save(record);
+        } catch (Exception e) {
+            System.err.println("写入任务结果记录失败: " + e.getMessage());
+        }
+    }
+
+    // 在写入线程上执行: 删除已失效的记录，期间已被当前版本的结果覆盖时保留
+    private void deleteStale(String key, String version) {
+        try {
+            TaskMemoRecord record = recordRepository.findById(key).orElse(null);
+            if (record != null && (!version.equals(record.getDatasetVersion())
+                    || isExpired(record.getSavedAt().getTime()))) {
+                recordRepository.deleteById(key);
+                staleDropped.incrementAndGet();
+            }
+        } catch (Exception e) {
+            System.err.println("删除任务结果记录失败: " + e.getMessage());
+        }
+    }
+
+    private void remember(String key, Entry entry) {
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Memo decode(String outcomeId, String payload) {
+        try {
+            Map<String, Object> content = objectMapper.readValue(payload, Map.class);
+            Map<String, Object> resultData = (Map<String, Object>) content.get("resultData");
+            Map<String, Object> writes = (Map<String, Object>) content.get("writes");
+            return new Memo(outcomeId,
+                    resultData != null ? resultData : new HashMap<>(),
+                    writes != null ? writes : new HashMap<>());
+        } catch (Exception e) {
+            System.err.println("解析任务结果缓存失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean isExpired(long savedAt) {
+        return System.currentTimeMillis() - savedAt > ttlMillis();
+    }
+
+    private long ttlMillis() {
+        return TimeUnit.HOURS.toMillis(ttlHours);
+    }
+
+    /**
+     * 删除不属于指定数据集版本的数据库记录
+     */
+    private void deleteOtherVersions(String version) {
+        try {
+            int deleted = recordRepository.deleteOtherVersions(version);
+            cleanedVersion = version;
+            if (deleted > 0) {
+                staleDropped.addAndGet(deleted);
+            }
+        } catch (Exception e) {
+            System.err.println("清理旧版本任务结果记录失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取任务结果缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (entries) {
+            stats.put("inMemory", entries.size());
+        }
+        stats.put("enabled", enabled);
+        stats.put("maxEntries", maxEntries);
+        stats.put("persistentEnabled", persistentEnabled);
+        stats.put("ttlHours", ttlHours);
+        stats.put("memoryHits", memoryHits.get());
+        stats.put("persistentHits", persistentHits.get());
+        stats.put("misses", misses.get());
+        stats.put("stored", stored.get());
+        stats.put("staleDropped", staleDropped.get());
+        stats.put("datasetVersion", currentVersion());
+
+        long hits = memoryHits.get() + persistentHits.get();
+        long total = hits + misses.get();
+        stats.put("hitRate", total > 0 ? (double) hits / total : 0.0);
+        return stats;
+    }
+
+    /**
+     * 内存中的缓存项
+     */
+    private static class Entry {
+        private final String version;
+        private final String outcomeId;
+        private final String payload;
+        private final long savedAt;
+
+        Entry(String version, String outcomeId, String payload, long savedAt) {
+            this.version = version;
+            this.outcomeId = outcomeId;
+            this.payload = payload;
+            this.savedAt = savedAt;
+        }
+    }
+}
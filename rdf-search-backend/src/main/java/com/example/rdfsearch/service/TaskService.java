@@ -53,7 +53,6 @@ public class TaskService {
                 "FILTER(STRSTARTS(STR(?type), '" + TASK_TYPE_PREFIX + "')) " +
                 "}";
 
-        System.out.println("执行查询任务列表: " + query);
         List<Map<String, String>> results = sparqlService.query(query);
         System.out.println("查询结果数量: " + results.size());
 
@@ -74,7 +73,6 @@ public class TaskService {
                 "<" + uri + "> ?p ?o . " +
                 "}";
 
-        System.out.println("查询单个任务: " + query);
         List<Map<String, String>> results = sparqlService.query(query);
         System.out.println("查询结果数量: " + results.size());
 
@@ -191,28 +189,24 @@ public class TaskService {
             }
         }
 
-        // 保存到内存缓存
-        taskMap.put(task.getUri(), task);
-        System.out.println("保存到内存的任务参数: " + task.getParameters());
-
         try {
             List<String> triples = buildTaskTriples(task);
             System.out.println("生成的三元组数量: " + triples.size());
             System.out.println("生成的三元组内容预览: " + String.join("\n", triples.subList(0, Math.min(5, triples.size()))));
 
-            // 先删除旧数据
-            if (findByUri(task.getUri()) != null) {
-                String deleteQuery = "DELETE WHERE { <" + task.getUri() + "> ?p ?o }";
-                sparqlService.update(deleteQuery);
-            }
-
-            // 插入新数据
-            String insertQuery = "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n" +
+            // 删除旧数据和插入新数据放在同一个更新请求中，在一个事务里执行；
+            // 整个请求是幂等的替换，超时后重发也得到相同结果，失败时抛出异常
+            String replaceQuery = "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n" +
                     "PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>\n" +
                     "PREFIX task: <http://example.com/task/>\n" +
                     "PREFIX xsd: <http://www.w3.org/2001/XMLSchema#>\n" +
+                    "DELETE WHERE { <" + task.getUri() + "> ?p ?o } ;\n" +
                     "INSERT DATA { " + String.join(" ", triples) + " }";
-            sparqlService.update(insertQuery);
+            sparqlService.updateOrThrow(replaceQuery);
+
+            // 写入成功后再更新内存缓存
+            taskMap.put(task.getUri(), task);
+            System.out.println("保存到内存的任务参数: " + task.getParameters());
 
             // 保存历史记录
             try {
@@ -243,6 +237,7 @@ public class TaskService {
         } catch (Exception e) {
             System.err.println("保存到RDF存储时出错: " + e.getMessage());
             e.printStackTrace();
+            throw new RuntimeException("保存任务失败: " + e.getMessage(), e);
         }
 
         return task;
@@ -260,7 +255,6 @@ public class TaskService {
         }
 
         String query = QueryTemplateUtil.applyTemplate(queryTemplate, task.getProperties());
-        System.out.println("执行任务查询: " + query);
 
         return sparqlService.query(query);
     }
@@ -270,7 +264,6 @@ public class TaskService {
         System.out.println("尝试删除任务，URI: " + uri);
 
         String deleteQuery = "DELETE WHERE { <" + uri + "> ?p ?o }";
-        System.out.println("删除查询: " + deleteQuery);
         sparqlService.update(deleteQuery);
 
         taskMap.remove(uri);
@@ -0,0 +1,444 @@
+package com.example.rdfsearch.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.rdfsearch.model.task.TaskNode;
+import com.example.rdfsearch.model.task.TaskOutcome;
+import com.example.rdfsearch.model.task.Workflow;
+import com.example.rdfsearch.service.sparql.QueryDeadline;
+import com.example.rdfsearch.service.sparql.ReplicaRouter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * DAG工作流调度器 - 依赖全部完成的任务并行执行，执行在有界工作池上
+ *
+ * 每个任务在分支上下文中执行: 输入为初始变量加上其所有上游任务的写入（按拓扑顺序应用），
+ * 互不依赖的并行任务看不到彼此的写入，结果与完成先后无关。任务完成后其写入和结果数据
+ * 合并回运行上下文，直接上游的结果数据以dependencyResults变量传给下游（扇入节点据此汇总，
+ * 并行分支写入的同名变量只保留拓扑顺序中最后一个，需要各分支结果的任务应依赖扇入节点）。
+ * 上游得到error结果的任务跳过；任一任务抛出异常时取消其余任务的查询，等它们结束后抛出。
+ * 每完成一个任务把各已完成任务的结果和写入记入上下文的检查点状态，从检查点继续时这些任务不再执行。
+ */
+@Component
+public class WorkflowDagScheduler {
+
+    // 传给任务的直接上游结果数据变量名
+    public static final String DEPENDENCY_RESULTS = "dependencyResults";
+
+    // 运行上下文中所有任务结果数据的变量名
+    public static final String TASK_RESULTS = "taskResults";
+
+    // 所有DAG运行共享的工作线程数
+    @Value("${workflow.dag.pool-size:8}")
+    private int poolSize;
+
+    // 单次运行同时执行的任务上限
+    @Value("${workflow.dag.max-parallel-tasks:4}")
+    private int maxParallelTasks;
+
+    // 没有外层截止时间时的超时
+    @Value("${workflow.run.timeout-ms:600000}")
+    private long defaultTimeoutMs;
+
+    private ExecutorService executor;
+
+    private final AtomicInteger runningTasks = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newFixedThreadPool(poolSize, Thread.ofVirtual().name("workflow-dag-", 0).factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * DAG执行结果
+     */
+    public static class DagResult {
+        private final List<String> order;
+        private final Map<String, TaskOutcome> outcomes;
+        private final Map<String, Map<String, Object>> results;
+        private final List<String> skipped;
+
+        DagResult(List<String> order, Map<String, TaskOutcome> outcomes,
+                Map<String, Map<String, Object>> results, List<String> skipped) {
+            this.order = order;
+            this.outcomes = outcomes;
+            this.results = results;
+            this.skipped = skipped;
+        }
+
+        /**
+         * 拓扑顺序中最后一个执行了的任务的结果
+         */
+        public String getFinalTaskId() {
+            for (int i = order.size() - 1; i >= 0; i--) {
+                if (outcomes.containsKey(order.get(i))) {
+                    return order.get(i);
+                }
+            }
+            return null;
+        }
+
+        public TaskOutcome getOutcome(String taskId) {
+            return outcomes.get(taskId);
+        }
+
+        public Map<String, Map<String, Object>> getResults() {
+            return results;
+        }
+
+        public List<String> getSkipped() {
+            return skipped;
+        }
+    }
+
+    /**
+     * 按依赖关系执行工作流中的全部任务
+     *
+     * @param workflow   工作流定义
+     * @param context    运行上下文
+     * @param listener   进度监听器，可为null
+     * @param taskRunner 执行单个任务
+     * @param checkpoint 检查点状态更新后调用，写入检查点
+     */
+    @SuppressWarnings("unchecked")
+    DagResult run(Workflow workflow, TaskChainService.ExecutionContext context,
+            TaskChainService.WorkflowListener listener,
+            BiFunction<TaskNode, TaskChainService.ExecutionContext, TaskOutcome> taskRunner,
+            Runnable checkpoint) {
+        List<String> order = workflow.topologicalOrder();
+        Map<String, Integer> position = new HashMap<>();
+        for (int i = 0; i < order.size(); i++) {
+            position.put(order.get(i), i);
+        }
+
+        Map<String, Integer> pending = new HashMap<>();
+        PriorityQueue<String> ready = new PriorityQueue<>(Comparator.comparing(position::get));
+        for (String taskId : order) {
+            TaskNode task = workflow.getTask(taskId);
+            int count = task.hasDependencies() ? new LinkedHashSet<>(task.getDependsOn()).size() : 0;
+            pending.put(taskId, count);
+            if (count == 0) {
+                ready.add(taskId);
+            }
+        }
+
+        Map<String, Object> initialVariables = context.copyVariables();
+        Map<String, Map<String, Object>> writes = new HashMap<>();
+        Map<String, TaskOutcome> outcomes = new HashMap<>();
+        Map<String, Map<String, Object>> results = new LinkedHashMap<>();
+        Set<String> skipped = new LinkedHashSet<>();
+
+        // 从检查点继续: 恢复初始变量和已完成任务的结果，这些任务不再执行
+        Map<String, Map<String, Object>> completedTasks = new LinkedHashMap<>();
+        Map<String, Object> resumeState = context.getResumeState();
+        if (resumeState != null && "dag".equals(resumeState.get("mode"))) {
+            Map<String, Object> savedVariables = (Map<String, Object>) resumeState.get("initialVariables");
+            if (savedVariables != null) {
+                initialVariables = savedVariables;
+            }
+            Map<String, Map<String, Object>> saved = (Map<String, Map<String, Object>>) resumeState.get("tasks");
+            for (String taskId : order) {
+                Map<String, Object> state = saved != null ? saved.get(taskId) : null;
+                if (state == null) {
+                    continue;
+                }
+                Map<String, Object> taskWrites = (Map<String, Object>) state.get("writes");
+                Map<String, Object> resultData = (Map<String, Object>) state.get("result");
+                writes.put(taskId, taskWrites != null ? taskWrites : new HashMap<>());
+                outcomes.put(taskId, restoreOutcome(workflow.getTask(taskId), state));
+                results.put(taskId, resultData != null ? resultData : new HashMap<>());
+                completedTasks.put(taskId, state);
+            }
+        }
+        Set<String> restored = new HashSet<>(completedTasks.keySet());
+        updateCheckpoint(context, initialVariables, completedTasks, checkpoint);
+
+        // 任务共享一个子截止时间: 外层到期或取消时一并中止，任务失败时取消其余任务
+        QueryDeadline parent = QueryDeadline.current();
+        QueryDeadline deadline = QueryDeadline.after(
+                parent != null ? Math.max(1, parent.remainingMillis()) : defaultTimeoutMs);
+        QueryDeadline.Registration registration = parent != null ? parent.onAbort(deadline::cancel) : null;
+        String session = ReplicaRouter.currentSession();
+
+        BlockingQueue<Completion> completions = new LinkedBlockingQueue<>();
+        int inFlight = 0;
+        int finished = 0;
+        Throwable failure = null;
+
+        try {
+            while (finished < order.size()) {
+                while (failure == null && inFlight < maxParallelTasks && !ready.isEmpty()) {
+                    String taskId = ready.poll();
+                    TaskNode task = workflow.getTask(taskId);
+
+                    if (restored.contains(taskId)) {
+                        // 检查点中已完成
+                        finished++;
+                        release(workflow, taskId, pending, ready);
+                        continue;
+                    }
+
+                    if (shouldSkip(task, outcomes, skipped)) {
+                        System.out.println("上游任务失败或被跳过，跳过任务: " + taskId);
+                        skipped.add(taskId);
+                        finished++;
+                        release(workflow, taskId, pending, ready);
+                        continue;
+                    }
+
+                    TaskChainService.ExecutionContext branch = context.fork(
+                            branchInputs(task, order, initialVariables, writes, results, workflow));
+                    if (listener != null) {
+                        listener.onTaskStarted(task);
+                    }
+                    executor.execute(() -> {
+                        runningTasks.incrementAndGet();
+                        long start = System.nanoTime();
+                        try {
+                            TaskOutcome outcome = ReplicaRouter.withSession(session,
+                                    () -> deadline.call(() -> taskRunner.apply(task, branch)));
+                            completions.add(new Completion(task, branch, outcome, null,
+                                    (System.nanoTime() - start) / 1_000_000));
+                        } catch (Throwable e) {
+                            completions.add(new Completion(task, branch, null, e, 0));
+                        } finally {
+                            runningTasks.decrementAndGet();
+                        }
+                    });
+                    inFlight++;
+                }
+
+                if (inFlight == 0) {
+                    break;
+                }
+
+                Completion completion = completions.take();
+                inFlight--;
+                finished++;
+
+                if (completion.error != null) {
+                    if (failure == null) {
+                        failure = completion.error;
+                        deadline.cancel();
+                    }
+                    continue;
+                }
+
+                String taskId = completion.task.getId();
+                // 执行器返回的是本次执行的结果副本；结果数据再复制一份，检查点和下游输入不随任务对象变化
+                Map<String, Object> resultData = completion.outcome.getResultData() != null
+                        ? new HashMap<>(completion.outcome.getResultData())
+                        : new HashMap<>();
+                Map<String, Object> taskWrites = completion.branch.getWrites();
+
+                writes.put(taskId, taskWrites);
+                outcomes.put(taskId, completion.outcome);
+                results.put(taskId, resultData);
+
+                taskWrites.forEach(context::setVariable);
+                context.setVariable(TASK_RESULTS, new LinkedHashMap<>(results));
+                context.addHistory(taskId, completion.outcome.getId());
+                context.markTaskExecuted(taskId);
+
+                Map<String, Object> state = new HashMap<>();
+                state.put("outcomeId", completion.outcome.getId());
+                state.put("outcomeName", completion.outcome.getName());
+                state.put("writes", taskWrites);
+                state.put("result", resultData);
+                completedTasks.put(taskId, state);
+                updateCheckpoint(context, initialVariables, completedTasks, checkpoint);
+
+                if (listener != null) {
+                    listener.onTaskCompleted(completion.task, completion.outcome, completion.elapsedMs);
+                }
+
+                release(workflow, taskId, pending, ready);
+            }
+
+            if (failure != null) {
+                throw propagate(failure);
+            }
+            if (finished < order.size()) {
+                throw new IllegalStateException("工作流 " + workflow.getId() + " 存在无法执行的任务");
+            }
+
+            // 完成先后不影响最终变量: 按拓扑顺序重新应用各任务的写入
+            for (String taskId : order) {
+                Map<String, Object> taskWrites = writes.get(taskId);
+                if (taskWrites != null) {
+                    taskWrites.forEach(context::setVariable);
+                }
+            }
+            context.setVariable(TASK_RESULTS, new LinkedHashMap<>(results));
+            deadline.finish();
+
+            return new DagResult(order, outcomes, results, new ArrayList<>(skipped));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            deadline.cancel();
+            throw new RuntimeException("工作流执行被中断", e);
+        } catch (RuntimeException e) {
+            // 异常退出时中止仍在执行的任务的查询
+            deadline.cancel();
+            throw e;
+        } finally {
+            // 正常结束时已标记完成；这里只保证计时停止，不计为取消
+            deadline.finish();
+            if (registration != null) {
+                registration.close();
+            }
+        }
+    }
+
+    private static void updateCheckpoint(TaskChainService.ExecutionContext context,
+            Map<String, Object> initialVariables, Map<String, Map<String, Object>> completedTasks,
+            Runnable checkpoint) {
+        Map<String, Object> state = new HashMap<>();
+        state.put("mode", "dag");
+        state.put("initialVariables", initialVariables);
+        state.put("tasks", new LinkedHashMap<>(completedTasks));
+        context.setResumeState(state);
+        if (checkpoint != null) {
+            checkpoint.run();
+        }
+    }
+
+    /**
+     * 按检查点中的结果ID找回任务定义中的结果，找不到时（如无结果定义的扇出节点）重新创建
+     */
+    private static TaskOutcome restoreOutcome(TaskNode task, Map<String, Object> state) {
+        String outcomeId = (String) state.get("outcomeId");
+        for (TaskOutcome outcome : task.getPossibleOutcomes()) {
+            if (outcome.getId().equals(outcomeId)) {
+                return outcome.copyDefinition();
+            }
+        }
+        return new TaskOutcome(outcomeId, (String) state.get("outcomeName"), null);
+    }
+
+    private static boolean shouldSkip(TaskNode task, Map<String, TaskOutcome> outcomes, Set<String> skipped) {
+        if (!task.hasDependencies()) {
+            return false;
+        }
+        for (String dependency : task.getDependsOn()) {
+            TaskOutcome outcome = outcomes.get(dependency);
+            if (skipped.contains(dependency) || outcome == null || "error".equals(outcome.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void release(Workflow workflow, String taskId, Map<String, Integer> pending,
+            PriorityQueue<String> ready) {
+        for (String dependent : workflow.getDependents(taskId)) {
+            if (pending.merge(dependent, -1, Integer::sum) == 0) {
+                ready.add(dependent);
+            }
+        }
+    }
+
+    /**
+     * 分支输入: 初始变量 + 所有上游任务的写入（按拓扑顺序）+ 直接上游的结果数据
+     */
+    private static Map<String, Object> branchInputs(TaskNode task, List<String> order,
+            Map<String, Object> initialVariables, Map<String, Map<String, Object>> writes,
+            Map<String, Map<String, Object>> results, Workflow workflow) {
+        Set<String> ancestors = new HashSet<>();
+        collectAncestors(workflow, task, ancestors);
+
+        Map<String, Object> inputs = new HashMap<>(initialVariables);
+        for (String taskId : order) {
+            if (ancestors.contains(taskId) && writes.containsKey(taskId)) {
+                inputs.putAll(writes.get(taskId));
+            }
+        }
+
+        Map<String, Object> dependencyResults = new LinkedHashMap<>();
+        if (task.hasDependencies()) {
+            for (String dependency : task.getDependsOn()) {
+                dependencyResults.put(dependency, results.get(dependency));
+            }
+        }
+        inputs.put(DEPENDENCY_RESULTS, dependencyResults);
+        return inputs;
+    }
+
+    private static void collectAncestors(Workflow workflow, TaskNode task, Set<String> ancestors) {
+        if (!task.hasDependencies()) {
+            return;
+        }
+        for (String dependency : task.getDependsOn()) {
+            if (ancestors.add(dependency)) {
+                collectAncestors(workflow, workflow.getTask(dependency), ancestors);
+            }
+        }
+    }
+
+    private static RuntimeException propagate(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new CompletionException(e);
+    }
+
+    /**
+     * 获取调度器统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("poolSize", poolSize);
+        stats.put("maxParallelTasks", maxParallelTasks);
+        stats.put("runningTasks", runningTasks.get());
+        return stats;
+    }
+
+    /**
+     * 单个任务的完成通知
+     */
+    private static class Completion {
+        private final TaskNode task;
+        private final TaskChainService.ExecutionContext branch;
+        private final TaskOutcome outcome;
+        private final Throwable error;
+        private final long elapsedMs;
+
+        Completion(TaskNode task, TaskChainService.ExecutionContext branch, TaskOutcome outcome,
+                Throwable error, long elapsedMs) {
+            this.task = task;
+            this.branch = branch;
+            this.outcome = outcome;
+            this.error = error;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.example.rdfsearch.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.rdfsearch.model.task.TaskNode;
+import com.example.rdfsearch.model.task.TaskOutcome;
+import com.example.rdfsearch.service.sparql.DeadlineExceededException;
+import com.example.rdfsearch.service.sparql.QueryDeadline;
+import com.example.rdfsearch.service.sparql.ReplicaRouter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 工作流异步运行服务 - 提交后立即返回运行ID，工作流在有界工作池中执行
+ *
+ * 每次运行有独立的截止时间（不受HTTP异步请求超时限制），可以取消；
+ * 运行状态记录当前任务、已完成任务及各任务耗时，供状态接口实时查询。
+ * 结束的运行保留一段时间后清理。中断的运行（失败、超时、取消或进程重启）可以按运行ID
+ * 从最后一个检查点继续执行。
+ */
+@Service
+public class WorkflowRunService {
+
+    @Autowired
+    private TaskChainService taskChainService;
+
+    // 同时执行的工作流数
+    @Value("${workflow.run.workers:4}")
+    private int workers;
+
+    // 等待执行的工作流上限，超过时拒绝提交
+    @Value("${workflow.run.queue-capacity:100}")
+    private int queueCapacity;
+
+    // 单次运行的超时
+    @Value("${workflow.run.timeout-ms:600000}")
+    private long timeoutMs;
+
+    // 结束的运行保留时长
+    @Value("${workflow.run.retention-minutes:30}")
+    private long retentionMinutes;
+
+    // 最多保留的运行记录数
+    @Value("${workflow.run.max-retained:1000}")
+    private int maxRetained;
+
+    private ThreadPoolExecutor executor;
+
+    private final Map<String, WorkflowRun> runs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofVirtual().name("workflow-run-", 0).factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        runs.values().forEach(WorkflowRun::cancel);
+    }
+
+    /**
+     * 提交工作流运行，返回运行记录
+     *
+     * @throws RejectedExecutionException 等待队列已满
+     */
+    public WorkflowRun submit(String workflowId, Map<String, Object> parameters) {
+        purgeExpired();
+
+        Map<String, Object> initialParameters = parameters != null ? new HashMap<>(parameters) : new HashMap<>();
+        WorkflowRun run = new WorkflowRun(UUID.randomUUID().toString(), workflowId);
+        String session = ReplicaRouter.currentSession();
+
+        runs.put(run.getRunId(), run);
+        try {
+            executor.execute(() -> execute(run, session, () -> taskChainService.executeWorkflow(
+                    run.getRunId(), run.getWorkflowId(), initialParameters, run)));
+        } catch (RejectedExecutionException e) {
+            runs.remove(run.getRunId());
+            throw e;
+        }
+        return run;
+    }
+
+    /**
+     * 从最后一个检查点继续执行中断的运行，沿用原运行ID
+     *
+     * @throws IllegalArgumentException   找不到运行的检查点
+     * @throws IllegalStateException      运行正在执行或已完成
+     * @throws RejectedExecutionException 等待队列已满
+     */
+    public synchronized WorkflowRun resume(String runId) {
+        purgeExpired();
+
+        WorkflowRun existing = runs.get(runId);
+        if (existing != null && !existing.isFinished()) {
+            throw new IllegalStateException("工作流运行正在执行: " + runId);
+        }
+        String workflowId = taskChainService.getResumableWorkflowId(runId);
+
+        WorkflowRun run = new WorkflowRun(runId, workflowId);
+        String session = ReplicaRouter.currentSession();
+
+        runs.put(runId, run);
+        try {
+            executor.execute(() -> execute(run, session, () -> taskChainService.resumeWorkflow(runId, run)));
+        } catch (RejectedExecutionException e) {
+            if (existing != null) {
+                runs.put(runId, existing);
+            } else {
+                runs.remove(runId);
+            }
+            throw e;
+        }
+        return run;
+    }
+
+    private void execute(WorkflowRun run, String session, Supplier<Map<String, Object>> workflow) {
+        QueryDeadline deadline = QueryDeadline.after(timeoutMs);
+        if (!run.start(deadline)) {
+            // 排队期间已被取消
+            deadline.finish();
+            return;
+        }
+
+        try {
+            Map<String, Object> result = ReplicaRouter.withSession(session, () -> deadline.call(workflow));
+            run.complete(result);
+        } catch (DeadlineExceededException e) {
+            System.err.println("工作流运行 " + run.getRunId() + " 超时或被取消: " + e.getMessage());
+            run.abort(e.isCancelled() ? RunStatus.CANCELLED : RunStatus.TIMED_OUT, e.getMessage());
+        } catch (Exception e) {
+            System.err.println("工作流运行 " + run.getRunId() + " 失败: " + e.getMessage());
+            e.printStackTrace();
+            run.abort(RunStatus.FAILED, e.getMessage());
+        } finally {
+            deadline.finish();
+        }
+    }
+
+    /**
+     * 按运行ID获取运行记录
+     */
+    public WorkflowRun getRun(String runId) {
+        return runs.get(runId);
+    }
+
+    /**
+     * 获取工作流最近一次提交的运行
+     */
+    public WorkflowRun getLatestRun(String workflowId) {
+        return runs.values().stream()
+                .filter(run -> run.getWorkflowId().equals(workflowId))
+                .max(Comparator.comparingLong(WorkflowRun::getSubmittedAt))
+                .orElse(null);
+    }
+
+    /**
+     * 取消运行，返回被取消的运行记录；找不到该运行时返回null
+     */
+    public WorkflowRun cancel(String runId) {
+        WorkflowRun run = runs.get(runId);
+        if (run == null) {
+            return null;
+        }
+        run.cancel();
+        return run;
+    }
+
+    private void purgeExpired() {
+        long expireBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes);
+        runs.values().removeIf(run -> run.isFinished() && run.getFinishedAt() < expireBefore);
+
+        // 记录过多时按结束时间清理最早的
+        int excess = runs.size() - maxRetained;
+        if (excess > 0) {
+            runs.values().stream()
+                    .filter(WorkflowRun::isFinished)
+                    .sorted(Comparator.comparingLong(WorkflowRun::getFinishedAt))
+                    .limit(excess)
+                    .map(WorkflowRun::getRunId)
+                    .toList()
+                    .forEach(runs::remove);
+        }
+    }
+
+    /**
+     * 获取工作池统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("workers", workers);
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("retainedRuns", runs.size());
+        return stats;
+    }
+
+    /**
+     * 运行状态
+     */
+    public enum RunStatus {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED, TIMED_OUT
+    }
+
+    /**
+     * 一次工作流运行的状态，由执行线程更新、状态接口读取
+     */
+    public static class WorkflowRun implements TaskChainService.WorkflowListener {
+        private final String runId;
+        private final String workflowId;
+        private final long submittedAt = System.currentTimeMillis();
+
+        private RunStatus status = RunStatus.QUEUED;
+        private QueryDeadline deadline;
+        private long startedAt;
+        private long finishedAt;
+        // 正在执行的任务（DAG工作流可能同时有多个）
+        private final Map<String, TaskNode> currentTasks = new LinkedHashMap<>();
+        private final Map<String, Long> currentTaskStartedAt = new HashMap<>();
+        private final List<Map<String, Object>> completedTasks = new ArrayList<>();
+        private Map<String, Object> result;
+        private String error;
+
+        WorkflowRun(String runId, String workflowId) {
+            this.runId = runId;
+            this.workflowId = workflowId;
+        }
+
+        public String getRunId() {
+            return runId;
+        }
+
+        public String getWorkflowId() {
+            return workflowId;
+        }
+
+        public long getSubmittedAt() {
+            return submittedAt;
+        }
+
+        public synchronized RunStatus getStatus() {
+            return status;
+        }
+
+        public synchronized long getFinishedAt() {
+            return finishedAt;
+        }
+
+        public synchronized boolean isFinished() {
+            return status != RunStatus.QUEUED && status != RunStatus.RUNNING;
+        }
+
+        synchronized boolean start(QueryDeadline deadline) {
+            if (status != RunStatus.QUEUED) {
+                return false;
+            }
+            this.status = RunStatus.RUNNING;
+            this.deadline = deadline;
+            this.startedAt = System.currentTimeMillis();
+            return true;
+        }
+
+        @Override
+        public synchronized void onTaskStarted(TaskNode task) {
+            currentTasks.put(task.getId(), task);
+            currentTaskStartedAt.put(task.getId(), System.currentTimeMillis());
+        }
+
+        @Override
+        public synchronized void onTaskCompleted(TaskNode task, TaskOutcome outcome, long elapsedMs) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("taskId", task.getId());
+            entry.put("taskName", task.getName());
+            entry.put("outcomeId", outcome.getId());
+            entry.put("outcomeName", outcome.getName());
+            entry.put("elapsedMs", elapsedMs);
+            completedTasks.add(entry);
+            currentTasks.remove(task.getId());
+            currentTaskStartedAt.remove(task.getId());
+        }
+
+        synchronized void complete(Map<String, Object> result) {
+            this.result = result;
+            finish(RunStatus.COMPLETED);
+        }
+
+        synchronized void abort(RunStatus status, String error) {
+            this.error = error;
+            finish(status);
+        }
+
+        private void finish(RunStatus status) {
+            if (!isFinished()) {
+                this.status = status;
+                this.finishedAt = System.currentTimeMillis();
+            }
+        }
+
+        /**
+         * 取消运行: 排队中的不再执行，执行中的中止正在进行的查询
+         */
+        public void cancel() {
+            QueryDeadline running;
+            synchronized (this) {
+                if (status == RunStatus.QUEUED) {
+                    finish(RunStatus.CANCELLED);
+                    return;
+                }
+                running = status == RunStatus.RUNNING ? deadline : null;
+            }
+            if (running != null) {
+                running.cancel();
+            }
+        }
+
+        /**
+         * 状态快照
+         */
+        public synchronized Map<String, Object> toStatusMap() {
+            long now = System.currentTimeMillis();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("runId", runId);
+            map.put("workflowId", workflowId);
+            map.put("status", status.name());
+            map.put("submittedAt", submittedAt);
+            map.put("startedAt", startedAt > 0 ? startedAt : null);
+            map.put("finishedAt", finishedAt > 0 ? finishedAt : null);
+            if (startedAt > 0) {
+                map.put("elapsedMs", (finishedAt > 0 ? finishedAt : now) - startedAt);
+            }
+
+            if (status == RunStatus.RUNNING) {
+                List<Map<String, Object>> running = new ArrayList<>();
+                for (TaskNode task : currentTasks.values()) {
+                    Map<String, Object> current = new LinkedHashMap<>();
+                    current.put("taskId", task.getId());
+                    current.put("taskName", task.getName());
+                    current.put("elapsedMs", now - currentTaskStartedAt.get(task.getId()));
+                    running.add(current);
+                }
+                map.put("currentTask", running.isEmpty() ? null : running.get(0));
+                map.put("runningTasks", running);
+            } else if (!currentTasks.isEmpty()) {
+                // 失败、超时或取消时未完成的任务
+                map.put("failedTaskIds", new ArrayList<>(currentTasks.keySet()));
+            }
+
+            List<String> executionPath = new ArrayList<>();
+            for (Map<String, Object> task : completedTasks) {
+                executionPath.add(task.get("taskId") + ":" + task.get("outcomeId"));
+            }
+            map.put("tasksDone", completedTasks.size());
+            map.put("completedTasks", new ArrayList<>(completedTasks));
+            map.put("executionPath", executionPath);
+
+            if (result != null) {
+                map.put("result", result);
+            }
+            if (error != null) {
+                map.put("error", error);
+            }
+            return map;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.rdfsearch.service.expression;
+
+/**
+ * 编译后的表达式，可在多个线程中重复求值
+ *
+ * 变量在编译时绑定到槽位，每次求值先把用到的变量各取一次放入槽位数组，
+ * 再由闭包树按槽位读取。槽位数组由调用方持有（如每个执行上下文一个）并在多次求值间复用，
+ * 此时条件判断和数值计算不分配对象；不传槽位数组的重载每次分配一个。
+ * 工作流任务在虚拟线程上执行，线程不复用，因此不使用线程本地的槽位数组。
+ */
+public final class Expression {
+
+    private final String source;
+    private final Node root;
+    private final String[] names;
+
+    Expression(String source, Node root, String[] names) {
+        this.source = source;
+        this.root = root;
+        this.names = names;
+    }
+
+    /**
+     * 求值所需的槽位数组长度
+     */
+    public int getFrameSize() {
+        return names.length;
+    }
+
+    /**
+     * 按布尔值求值（条件）
+     */
+    public boolean test(VariableResolver variables) {
+        return test(variables, new Object[names.length]);
+    }
+
+    /**
+     * 按布尔值求值，使用调用方持有的槽位数组（长度不小于getFrameSize()，同一时间只能被一次求值使用）
+     */
+    public boolean test(VariableResolver variables, Object[] frame) {
+        bind(variables, frame);
+        try {
+            return root.bool(frame);
+        } finally {
+            release(frame);
+        }
+    }
+
+    /**
+     * 按数值求值，变量缺失或无法转换时为NaN
+     */
+    public double evaluateNumber(VariableResolver variables) {
+        return evaluateNumber(variables, new Object[names.length]);
+    }
+
+    /**
+     * 按数值求值，使用调用方持有的槽位数组
+     */
+    public double evaluateNumber(VariableResolver variables, Object[] frame) {
+        bind(variables, frame);
+        try {
+            return root.number(frame);
+        } finally {
+            release(frame);
+        }
+    }
+
+    /**
+     * 求值为对象
+     */
+    public Object evaluate(VariableResolver variables) {
+        Object[] frame = new Object[names.length];
+        bind(variables, frame);
+        return root.value(frame);
+    }
+
+    private void bind(VariableResolver variables, Object[] frame) {
+        for (int i = 0; i < names.length; i++) {
+            frame[i] = variables.resolve(names[i]);
+        }
+    }
+
+    // 不持有上下文中对象的引用
+    private void release(Object[] frame) {
+        for (int i = 0; i < names.length; i++) {
+            frame[i] = null;
+        }
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 表达式引用的变量名
+     */
+    public String[] getVariableNames() {
+        return names.clone();
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.rdfsearch.service.expression;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 表达式编译缓存 - 同一条件或脚本文本只编译一次
+ *
+ * 工作流中的条件和脚本数量有限，缓存超过上限时整体清空重建。
+ * 语法错误时抛出IllegalArgumentException，错误不缓存。
+ */
+public final class ExpressionCompiler {
+
+    private static final int MAX_CACHED = 4096;
+
+    private static final Map<String, Expression> EXPRESSIONS = new ConcurrentHashMap<>();
+    private static final Map<String, Script> SCRIPTS = new ConcurrentHashMap<>();
+
+    private ExpressionCompiler() {
+    }
+
+    /**
+     * 编译表达式（带缓存）
+     */
+    public static Expression compile(String source) {
+        Expression expression = EXPRESSIONS.get(source);
+        if (expression == null) {
+            expression = ExpressionParser.parseExpression(source);
+            if (EXPRESSIONS.size() >= MAX_CACHED) {
+                EXPRESSIONS.clear();
+            }
+            EXPRESSIONS.putIfAbsent(source, expression);
+        }
+        return expression;
+    }
+
+    /**
+     * 编译脚本（带缓存）
+     */
+    public static Script compileScript(String source) {
+        Script script = SCRIPTS.get(source);
+        if (script == null) {
+            script = ExpressionParser.parseScript(source);
+            if (SCRIPTS.size() >= MAX_CACHED) {
+                SCRIPTS.clear();
+            }
+            SCRIPTS.putIfAbsent(source, script);
+        }
+        return script;
+    }
+}
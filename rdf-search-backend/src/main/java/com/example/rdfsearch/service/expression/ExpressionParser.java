@@ -0,0 +1,409 @@
+package com.example.rdfsearch.service.expression;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 表达式解析器 - 递归下降，把源文本编译为闭包树，变量按首次出现顺序分配槽位
+ *
+ * 语法（优先级从低到高）:
+ *   或: a || b, a or b
+ *   与: a && b, a and b
+ *   相等: ==, !=
+ *   比较: <, <=, >, >=
+ *   加减: +, -（任一侧为字符串时+为拼接）
+ *   乘除: *, /, %
+ *   一元: !, not, -
+ *   成员: a.b（Map按键取值）
+ *   基本: 数字、'字符串'/"字符串"、true/false/null、变量名、函数abs/min/max/contains、括号
+ * 脚本为以;或换行分隔的语句，"名称 = 表达式"为赋值。
+ */
+final class ExpressionParser {
+
+    private enum Type {
+        NUMBER, STRING, IDENT, OP, LPAREN, RPAREN, COMMA, DOT, SEPARATOR, END
+    }
+
+    private static final class Token {
+        final Type type;
+        final String text;
+        final int position;
+
+        Token(Type type, String text, int position) {
+            this.type = type;
+            this.text = text;
+            this.position = position;
+        }
+    }
+
+    private final String source;
+    private final List<Token> tokens;
+    private final Map<String, Integer> slots = new LinkedHashMap<>();
+    private int index;
+
+    private ExpressionParser(String source, boolean script) {
+        this.source = source;
+        this.tokens = tokenize(source, script);
+    }
+
+    /**
+     * 编译单个表达式
+     */
+    static Expression parseExpression(String source) {
+        ExpressionParser parser = new ExpressionParser(source, false);
+        Node root = parser.parseOr();
+        parser.expect(Type.END, "表达式结束");
+        return new Expression(source, root, parser.slotNames());
+    }
+
+    /**
+     * 编译脚本
+     */
+    static Script parseScript(String source) {
+        ExpressionParser parser = new ExpressionParser(source, true);
+        List<Script.Statement> statements = new ArrayList<>();
+
+        while (parser.peek().type != Type.END) {
+            if (parser.peek().type == Type.SEPARATOR) {
+                parser.index++;
+                continue;
+            }
+
+            String target = null;
+            int targetSlot = -1;
+            if (parser.peek().type == Type.IDENT && parser.peek(1).type == Type.OP
+                    && "=".equals(parser.peek(1).text)) {
+                target = parser.next().text;
+                parser.index++;
+                targetSlot = parser.slot(target);
+            }
+
+            Node expression = parser.parseOr();
+            statements.add(new Script.Statement(target, targetSlot, expression));
+
+            Token separator = parser.peek();
+            if (separator.type != Type.SEPARATOR && separator.type != Type.END) {
+                throw parser.error(separator, "语句结束");
+            }
+        }
+
+        return new Script(source, statements.toArray(new Script.Statement[0]), parser.slotNames());
+    }
+
+    private String[] slotNames() {
+        return slots.keySet().toArray(new String[0]);
+    }
+
+    private int slot(String name) {
+        return slots.computeIfAbsent(name, key -> slots.size());
+    }
+
+    // ---- 语法分析 ----
+
+    private Node parseOr() {
+        Node left = parseAnd();
+        while (matchOp("||") || matchKeyword("or")) {
+            left = new Node.Or(left, parseAnd());
+        }
+        return left;
+    }
+
+    private Node parseAnd() {
+        Node left = parseEquality();
+        while (matchOp("&&") || matchKeyword("and")) {
+            left = new Node.And(left, parseEquality());
+        }
+        return left;
+    }
+
+    private Node parseEquality() {
+        Node left = parseComparison();
+        while (true) {
+            if (matchOp("==")) {
+                left = new Node.Equals(left, parseComparison(), false);
+            } else if (matchOp("!=")) {
+                left = new Node.Equals(left, parseComparison(), true);
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Node parseComparison() {
+        Node left = parseAdditive();
+        while (true) {
+            if (matchOp("<")) {
+                left = new Node.Compare(left, parseAdditive(), Node.Compare.LT);
+            } else if (matchOp("<=")) {
+                left = new Node.Compare(left, parseAdditive(), Node.Compare.LE);
+            } else if (matchOp(">")) {
+                left = new Node.Compare(left, parseAdditive(), Node.Compare.GT);
+            } else if (matchOp(">=")) {
+                left = new Node.Compare(left, parseAdditive(), Node.Compare.GE);
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Node parseAdditive() {
+        Node left = parseMultiplicative();
+        while (true) {
+            if (matchOp("+")) {
+                left = new Node.Add(left, parseMultiplicative());
+            } else if (matchOp("-")) {
+                left = new Node.Subtract(left, parseMultiplicative());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Node parseMultiplicative() {
+        Node left = parseUnary();
+        while (true) {
+            if (matchOp("*")) {
+                left = new Node.Multiply(left, parseUnary());
+            } else if (matchOp("/")) {
+                left = new Node.Divide(left, parseUnary());
+            } else if (matchOp("%")) {
+                left = new Node.Remainder(left, parseUnary());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Node parseUnary() {
+        if (matchOp("!") || matchKeyword("not")) {
+            return new Node.Not(parseUnary());
+        }
+        if (matchOp("-")) {
+            return new Node.Negate(parseUnary());
+        }
+        return parsePostfix();
+    }
+
+    private Node parsePostfix() {
+        Node node = parsePrimary();
+        while (peek().type == Type.DOT) {
+            index++;
+            Token member = next();
+            if (member.type != Type.IDENT) {
+                throw error(member, "成员名");
+            }
+            node = new Node.Member(node, member.text);
+        }
+        return node;
+    }
+
+    private Node parsePrimary() {
+        Token token = next();
+        switch (token.type) {
+            case NUMBER:
+                return new Node.Literal(Double.parseDouble(token.text));
+            case STRING:
+                return new Node.Literal(token.text);
+            case LPAREN: {
+                Node inner = parseOr();
+                expect(Type.RPAREN, ")");
+                return inner;
+            }
+            case IDENT:
+                switch (token.text) {
+                    case "true":
+                        return new Node.Literal(Boolean.TRUE);
+                    case "false":
+                        return new Node.Literal(Boolean.FALSE);
+                    case "null":
+                        return new Node.Literal(null);
+                    default:
+                        if (peek().type == Type.LPAREN) {
+                            return parseCall(token);
+                        }
+                        return new Node.Variable(slot(token.text));
+                }
+            default:
+                throw error(token, "值");
+        }
+    }
+
+    private Node parseCall(Token name) {
+        index++;
+        List<Node> args = new ArrayList<>();
+        if (peek().type != Type.RPAREN) {
+            do {
+                args.add(parseOr());
+            } while (match(Type.COMMA));
+        }
+        expect(Type.RPAREN, ")");
+
+        switch (name.text) {
+            case "abs":
+                checkArity(name, args, 1);
+                return new Node.Abs(args.get(0));
+            case "min":
+                checkArity(name, args, 2);
+                return new Node.Min(args.get(0), args.get(1));
+            case "max":
+                checkArity(name, args, 2);
+                return new Node.Max(args.get(0), args.get(1));
+            case "contains":
+                checkArity(name, args, 2);
+                return new Node.Contains(args.get(0), args.get(1));
+            default:
+                throw new IllegalArgumentException("表达式中有未知函数 " + name.text + "(位置 " + name.position
+                        + "): " + source);
+        }
+    }
+
+    private void checkArity(Token name, List<Node> args, int expected) {
+        if (args.size() != expected) {
+            throw new IllegalArgumentException("函数 " + name.text + " 需要 " + expected + " 个参数(位置 "
+                    + name.position + "): " + source);
+        }
+    }
+
+    private boolean match(Type type) {
+        if (peek().type == type) {
+            index++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean matchOp(String op) {
+        Token token = peek();
+        if (token.type == Type.OP && token.text.equals(op)) {
+            index++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean matchKeyword(String keyword) {
+        Token token = peek();
+        if (token.type == Type.IDENT && token.text.equals(keyword)) {
+            index++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(Type type, String description) {
+        Token token = next();
+        if (token.type != type) {
+            throw error(token, description);
+        }
+    }
+
+    private Token peek() {
+        return tokens.get(index);
+    }
+
+    private Token peek(int offset) {
+        return tokens.get(Math.min(index + offset, tokens.size() - 1));
+    }
+
+    private Token next() {
+        Token token = tokens.get(index);
+        if (token.type != Type.END) {
+            index++;
+        }
+        return token;
+    }
+
+    private IllegalArgumentException error(Token token, String expected) {
+        String found = token.type == Type.END ? "结尾" : "'" + token.text + "'";
+        return new IllegalArgumentException("表达式语法错误: 位置 " + token.position + " 处应为" + expected
+                + "，实际为" + found + ": " + source);
+    }
+
+    // ---- 词法分析 ----
+
+    private static List<Token> tokenize(String source, boolean script) {
+        List<Token> tokens = new ArrayList<>();
+        int length = source.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = source.charAt(i);
+
+            if (c == '\n' || c == ';') {
+                if (!script) {
+                    if (c == '\n') {
+                        i++;
+                        continue;
+                    }
+                    throw new IllegalArgumentException("表达式中不允许使用';'(位置 " + i + "): " + source);
+                }
+                tokens.add(new Token(Type.SEPARATOR, String.valueOf(c), i));
+                i++;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < length && Character.isDigit(source.charAt(i + 1)))) {
+                int start = i;
+                while (i < length && (Character.isDigit(source.charAt(i)) || source.charAt(i) == '.')) {
+                    i++;
+                }
+                if (i < length && (source.charAt(i) == 'e' || source.charAt(i) == 'E')) {
+                    i++;
+                    if (i < length && (source.charAt(i) == '+' || source.charAt(i) == '-')) {
+                        i++;
+                    }
+                    while (i < length && Character.isDigit(source.charAt(i))) {
+                        i++;
+                    }
+                }
+                tokens.add(new Token(Type.NUMBER, source.substring(start, i), start));
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = i;
+                while (i < length && (Character.isLetterOrDigit(source.charAt(i)) || source.charAt(i) == '_')) {
+                    i++;
+                }
+                tokens.add(new Token(Type.IDENT, source.substring(start, i), start));
+            } else if (c == '\'' || c == '"') {
+                int start = i;
+                StringBuilder text = new StringBuilder();
+                i++;
+                while (i < length && source.charAt(i) != c) {
+                    if (source.charAt(i) == '\\' && i + 1 < length) {
+                        i++;
+                    }
+                    text.append(source.charAt(i));
+                    i++;
+                }
+                if (i >= length) {
+                    throw new IllegalArgumentException("表达式中字符串未结束(位置 " + start + "): " + source);
+                }
+                i++;
+                tokens.add(new Token(Type.STRING, text.toString(), start));
+            } else if (c == '(') {
+                tokens.add(new Token(Type.LPAREN, "(", i++));
+            } else if (c == ')') {
+                tokens.add(new Token(Type.RPAREN, ")", i++));
+            } else if (c == ',') {
+                tokens.add(new Token(Type.COMMA, ",", i++));
+            } else if (c == '.') {
+                tokens.add(new Token(Type.DOT, ".", i++));
+            } else {
+                String two = i + 1 < length ? source.substring(i, i + 2) : "";
+                if (two.equals("==") || two.equals("!=") || two.equals("<=") || two.equals(">=")
+                        || two.equals("&&") || two.equals("||")) {
+                    tokens.add(new Token(Type.OP, two, i));
+                    i += 2;
+                } else if ("+-*/%<>!=".indexOf(c) >= 0) {
+                    tokens.add(new Token(Type.OP, String.valueOf(c), i));
+                    i++;
+                } else {
+                    throw new IllegalArgumentException("表达式中有无法识别的字符 '" + c + "'(位置 " + i + "): " + source);
+                }
+            }
+        }
+
+        tokens.add(new Token(Type.END, "", length));
+        return tokens;
+    }
+}
@@ -0,0 +1,444 @@
+package com.example.rdfsearch.service.expression;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 编译后的表达式节点（闭包树）
+ *
+ * 变量在编译时分配槽位，求值时从槽位数组读取。数值和布尔节点分别实现number()/bool()，
+ * 比较和逻辑运算全程使用基本类型，不产生装箱对象；只有需要对象结果时（脚本赋值）才装箱。
+ */
+abstract class Node {
+
+    abstract Object value(Object[] frame);
+
+    double number(Object[] frame) {
+        return toNumber(value(frame));
+    }
+
+    boolean bool(Object[] frame) {
+        return toBoolean(value(frame));
+    }
+
+    /**
+     * 是否总是产生数值，用于在编译时选择数值比较
+     */
+    boolean isNumeric() {
+        return false;
+    }
+
+    static double toNumber(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        if (value instanceof String) {
+            try {
+                return Double.parseDouble(((String) value).trim());
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+
+    static boolean toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            return number != 0 && !Double.isNaN(number);
+        }
+        if (value instanceof String) {
+            return !((String) value).isEmpty();
+        }
+        return value != null;
+    }
+
+    /**
+     * 拼接时的文本形式: 整数值的数字不带小数部分（数字字面量和算术结果都是double，1拼接为"1"而不是"1.0"）
+     */
+    static String toText(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (number == Math.rint(number) && Math.abs(number) < 1e15) {
+                return Long.toString((long) number);
+            }
+        }
+        return String.valueOf(value);
+    }
+
+    static boolean valueEquals(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            return ((Number) left).doubleValue() == ((Number) right).doubleValue();
+        }
+        return Objects.equals(left, right);
+    }
+
+    // ---- 字面量和变量 ----
+
+    static final class Literal extends Node {
+        private final Object value;
+        private final double number;
+        private final boolean bool;
+
+        Literal(Object value) {
+            this.value = value;
+            this.number = toNumber(value);
+            this.bool = toBoolean(value);
+        }
+
+        @Override
+        Object value(Object[] frame) {
+            return value;
+        }
+
+        @Override
+        double number(Object[] frame) {
+            return number;
+        }
+
+        @Override
+        boolean bool(Object[] frame) {
+            return bool;
+        }
+
+        @Override
+        boolean isNumeric() {
+            return value instanceof Number;
+        }
+    }
+
+    static final class Variable extends Node {
+        private final int slot;
+
+        Variable(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        Object value(Object[] frame) {
+            return frame[slot];
+        }
+    }
+
+    /**
+     * 成员访问 a.b，目标为Map时按键取值
+     */
+    static final class Member extends Node {
+        private final Node target;
+        private final String key;
+
+        Member(Node target, String key) {
+            this.target = target;
+            this.key = key;
+        }
+
+        @Override
+        Object value(Object[] frame) {
+            Object container = target.value(frame);
+            return container instanceof Map ? ((Map<?, ?>) container).get(key) : null;
+        }
+    }
+
+    // ---- 算术 ----
+
+    abstract static class Arithmetic extends Node {
+        final Node left;
+        final Node right;
+
+        Arithmetic(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object value(Object[] frame) {
+            return number(frame);
+        }
+
+        @Override
+        boolean bool(Object[] frame) {
+            double number = number(frame);
+            return number != 0 && !Double.isNaN(number);
+        }
+
+        @Override
+        boolean isNumeric() {
+            return true;
+        }
+    }
+
+    /**
+     * 加法，任一侧为字符串时拼接
+     */
+    static final class Add extends Arithmetic {
+        Add(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        Object value(Object[] frame) {
+            if (left.isNumeric() && right.isNumeric()) {
+                return number(frame);
+            }
+            Object a = left.value(frame);
+            Object b = right.value(frame);
+            if (a instanceof String || b instanceof String) {
+                return toText(a) + toText(b);
+            }
+            return toNumber(a) + toNumber(b);
+        }
+
+        @Override
+        double number(Object[] frame) {
+            return left.number(frame) + right.number(frame);
+        }
+
+        @Override
+        boolean isNumeric() {
+            return left.isNumeric() && right.isNumeric();
+        }
+    }
+
+    static final class Subtract extends Arithmetic {
+        Subtract(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        double number(Object[] frame) {
+            return left.number(frame) - right.number(frame);
+        }
+    }
+
+    static final class Multiply extends Arithmetic {
+        Multiply(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        double number(Object[] frame) {
+            return left.number(frame) * right.number(frame);
+        }
+    }
+
+    static final class Divide extends Arithmetic {
+        Divide(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        double number(Object[] frame) {
+            return left.number(frame) / right.number(frame);
+        }
+    }
+
+    static final class Remainder extends Arithmetic {
+        Remainder(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        double number(Object[] frame) {
+            return left.number(frame) % right.number(frame);
+        }
+    }
+
+    static final class Negate extends Arithmetic {
+        Negate(Node operand) {
+            super(operand, null);
+        }
+
+        @Override
+        double number(Object[] frame) {
+            return -left.number(frame);
+        }
+    }
+
+    // ---- 比较和逻辑 ----
+
+    abstract static class Predicate extends Node {
+        @Override
+        Object value(Object[] frame) {
+            return bool(frame);
+        }
+
+        @Override
+        double number(Object[] frame) {
+            return bool(frame) ? 1 : 0;
+        }
+    }
+
+    /**
+     * 大小比较: 两侧都是字符串时按字典序，否则按数值（缺失值为NaN，比较结果为false）
+     */
+    static final class Compare extends Predicate {
+        static final int LT = 0;
+        static final int LE = 1;
+        static final int GT = 2;
+        static final int GE = 3;
+
+        private final Node left;
+        private final Node right;
+        private final int op;
+        private final boolean numeric;
+
+        Compare(Node left, Node right, int op) {
+            this.left = left;
+            this.right = right;
+            this.op = op;
+            this.numeric = left.isNumeric() || right.isNumeric();
+        }
+
+        @Override
+        boolean bool(Object[] frame) {
+            if (!numeric) {
+                Object a = left.value(frame);
+                Object b = right.value(frame);
+                if (a instanceof String && b instanceof String) {
+                    return test(((String) a).compareTo((String) b), 0);
+                }
+                return test(toNumber(a), toNumber(b));
+            }
+            return test(left.number(frame), right.number(frame));
+        }
+
+        private boolean test(double a, double b) {
+            switch (op) {
+                case LT:
+                    return a < b;
+                case LE:
+                    return a <= b;
+                case GT:
+                    return a > b;
+                default:
+                    return a >= b;
+            }
+        }
+    }
+
+    static final class Equals extends Predicate {
+        private final Node left;
+        private final Node right;
+        private final boolean negated;
+        private final boolean numeric;
+
+        Equals(Node left, Node right, boolean negated) {
+            this.left = left;
+            this.right = right;
+            this.negated = negated;
+            this.numeric = left.isNumeric() || right.isNumeric();
+        }
+
+        @Override
+        boolean bool(Object[] frame) {
+            boolean equal = numeric
+                    ? left.number(frame) == right.number(frame)
+                    : valueEquals(left.value(frame), right.value(frame));
+            return equal != negated;
+        }
+    }
+
+    static final class And extends Predicate {
+        private final Node left;
+        private final Node right;
+
+        And(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean bool(Object[] frame) {
+            return left.bool(frame) && right.bool(frame);
+        }
+    }
+
+    static final class Or extends Predicate {
+        private final Node left;
+        private final Node right;
+
+        Or(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean bool(Object[] frame) {
+            return left.bool(frame) || right.bool(frame);
+        }
+    }
+
+    static final class Not extends Predicate {
+        private final Node operand;
+
+        Not(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        boolean bool(Object[] frame) {
+            return !operand.bool(frame);
+        }
+    }
+
+    // ---- 函数 ----
+
+    static final class Abs extends Arithmetic {
+        Abs(Node operand) {
+            super(operand, null);
+        }
+
+        @Override
+        double number(Object[] frame) {
+            return Math.abs(left.number(frame));
+        }
+    }
+
+    static final class Min extends Arithmetic {
+        Min(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        double number(Object[] frame) {
+            return Math.min(left.number(frame), right.number(frame));
+        }
+    }
+
+    static final class Max extends Arithmetic {
+        Max(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        double number(Object[] frame) {
+            return Math.max(left.number(frame), right.number(frame));
+        }
+    }
+
+    /**
+     * contains(text, part): 字符串包含
+     */
+    static final class Contains extends Predicate {
+        private final Node text;
+        private final Node part;
+
+        Contains(Node text, Node part) {
+            this.text = text;
+            this.part = part;
+        }
+
+        @Override
+        boolean bool(Object[] frame) {
+            Object a = text.value(frame);
+            Object b = part.value(frame);
+            return a != null && b != null && toText(a).contains(toText(b));
+        }
+    }
+}
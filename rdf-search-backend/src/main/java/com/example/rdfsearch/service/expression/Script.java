@@ -0,0 +1,65 @@
+package com.example.rdfsearch.service.expression;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 编译后的脚本 - 依次执行赋值语句，后面的语句可以引用前面赋值的结果
+ *
+ * 赋值语句的结果按名称返回；没有赋值目标的表达式语句，其值以"result"返回。
+ */
+public final class Script {
+
+    static final class Statement {
+        final String target;
+        final int targetSlot;
+        final Node expression;
+
+        Statement(String target, int targetSlot, Node expression) {
+            this.target = target;
+            this.targetSlot = targetSlot;
+            this.expression = expression;
+        }
+    }
+
+    private final String source;
+    private final Statement[] statements;
+    private final String[] names;
+
+    Script(String source, Statement[] statements, String[] names) {
+        this.source = source;
+        this.statements = statements;
+        this.names = names;
+    }
+
+    /**
+     * 执行脚本，返回各赋值变量的值
+     */
+    public Map<String, Object> execute(VariableResolver variables) {
+        Object[] frame = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            frame[i] = variables.resolve(names[i]);
+        }
+
+        Map<String, Object> assigned = new LinkedHashMap<>();
+        for (Statement statement : statements) {
+            Object value = statement.expression.value(frame);
+            if (statement.targetSlot >= 0) {
+                frame[statement.targetSlot] = value;
+                assigned.put(statement.target, value);
+            } else {
+                assigned.put("result", value);
+            }
+        }
+        return assigned;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.rdfsearch.service.expression;
+
+/**
+ * 表达式变量来源，按变量名取值，不存在时返回null
+ */
+@FunctionalInterface
+public interface VariableResolver {
+    Object resolve(String name);
+}
@@ -0,0 +1,25 @@
+package com.example.rdfsearch.service.sparql;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 查询超过截止时间或被取消
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class DeadlineExceededException extends RuntimeException {
+
+    private final boolean cancelled;
+
+    public DeadlineExceededException(String message, boolean cancelled) {
+        super(message);
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * true表示被取消，false表示超时
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
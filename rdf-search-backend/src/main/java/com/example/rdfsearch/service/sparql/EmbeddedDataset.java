@@ -0,0 +1,65 @@
+package com.example.rdfsearch.service.sparql;
+
+import java.util.function.Consumer;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.update.UpdateExecutionFactory;
+import org.apache.jena.update.UpdateRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 进程内TDB2数据集 - sparql.mode=embedded时代替远程Fuseki
+ *
+ * 查询在读事务中执行，更新在写事务中执行，单机部署无需HTTP往返和结果序列化。
+ */
+@Component
+public class EmbeddedDataset {
+
+    // remote: 访问Fuseki端点; embedded: 使用进程内TDB2
+    @Value("${sparql.mode:remote}")
+    private String mode;
+
+    @Value("${sparql.tdb2.location:./tdb2-data}")
+    private String location;
+
+    private Dataset dataset;
+
+    @PostConstruct
+    public void init() {
+        if (isEnabled()) {
+            dataset = TDB2Factory.connectDataset(location);
+            System.out.println("使用进程内TDB2数据集: " + location);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (dataset != null) {
+            dataset.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return "embedded".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * 在读事务中访问数据集，结果必须在action内读取完毕
+     */
+    public void read(Consumer<Dataset> action) {
+        Txn.executeRead(dataset, () -> action.accept(dataset));
+    }
+
+    /**
+     * 在写事务中执行更新
+     */
+    public void update(UpdateRequest updateRequest) {
+        Txn.executeWrite(dataset, () -> UpdateExecutionFactory.create(updateRequest, dataset).execute());
+    }
+}
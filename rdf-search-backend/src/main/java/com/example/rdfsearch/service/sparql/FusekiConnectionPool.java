@@ -0,0 +1,143 @@
+package com.example.rdfsearch.service.sparql;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Fuseki HTTP连接池 - 所有SPARQL查询/更新共用一个keep-alive的HttpClient
+ *
+ * JDK HttpClient内部复用HTTP/1.1连接，但没有设置连接池大小的API。这里在其外层按路由(端点)
+ * 限制并发请求数，每个端点同时打开的连接数因此不超过max-per-route；统计占用(leased)、
+ * 等待(pending)和可用(available)的名额。不做空闲连接回收，也不统计空闲连接。
+ */
+@Component
+public class FusekiConnectionPool {
+
+    // 每个端点允许同时进行的请求数，即同时打开的连接数上限
+    @Value("${fuseki.http.max-per-route:20}")
+    private int maxPerRoute;
+
+    @Value("${fuseki.http.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    // 等待连接名额的最长时间
+    @Value("${fuseki.http.acquire-timeout-ms:10000}")
+    private long acquireTimeoutMs;
+
+    private HttpClient httpClient;
+
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        // 外层包装用于统计每个查询的响应字节数；异步回调在虚拟线程上执行，不使用默认的缓存线程池
+        httpClient = new CountingHttpClient(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build());
+
+        System.out.println("Fuseki连接池初始化: 每路由连接上限=" + maxPerRoute + ", 连接超时=" + connectTimeoutMs + "ms");
+    }
+
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * 占用目标端点的一个连接名额执行请求，请求结束（包括结果读取完毕）后归还
+     */
+    public <T> T execute(String endpoint, Supplier<T> call) {
+        Route route = routes.computeIfAbsent(endpoint, e -> new Route(maxPerRoute));
+
+        route.pending.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = route.permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待Fuseki连接被中断: " + endpoint, e);
+        } finally {
+            route.pending.decrementAndGet();
+        }
+
+        if (!acquired) {
+            route.rejected.incrementAndGet();
+            throw new RuntimeException("等待Fuseki连接超时(" + acquireTimeoutMs + "ms): " + endpoint);
+        }
+
+        route.leased.incrementAndGet();
+        route.requests.incrementAndGet();
+        try {
+            return call.get();
+        } finally {
+            route.leased.decrementAndGet();
+            route.permits.release();
+        }
+    }
+
+    /**
+     * 获取连接池统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        Map<String, Object> routeStats = new HashMap<>();
+        int totalLeased = 0;
+        int totalPending = 0;
+
+        for (Map.Entry<String, Route> entry : routes.entrySet()) {
+            Route route = entry.getValue();
+            int leased = route.leased.get();
+            int pending = route.pending.get();
+
+            Map<String, Object> item = new HashMap<>();
+            item.put("leased", leased);
+            item.put("pending", pending);
+            item.put("available", Math.max(0, maxPerRoute - leased));
+            item.put("max", maxPerRoute);
+            item.put("requests", route.requests.get());
+            item.put("rejected", route.rejected.get());
+            routeStats.put(entry.getKey(), item);
+
+            totalLeased += leased;
+            totalPending += pending;
+        }
+
+        stats.put("routes", routeStats);
+        stats.put("leased", totalLeased);
+        stats.put("pending", totalPending);
+        stats.put("maxPerRoute", maxPerRoute);
+        stats.put("connectTimeoutMs", connectTimeoutMs);
+        return stats;
+    }
+
+    /**
+     * 单个端点的连接名额
+     */
+    private static class Route {
+        private final Semaphore permits;
+        private final AtomicInteger leased = new AtomicInteger();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+
+        Route(int maxPerRoute) {
+            this.permits = new Semaphore(maxPerRoute, true);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.rdfsearch.service.sparql;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * 查询截止时间 - 从HTTP请求开始计时，传递给该请求触发的所有SPARQL执行
+ *
+ * 截止时间到达或请求被取消（超时、客户端断开）时，已注册的中止回调会中止正在进行的
+ * QueryExecution，之后的查询在发出前即失败（协作式取消）。
+ * 当前线程的截止时间保存在ThreadLocal中，异步执行时由SparqlAsyncExecutor传递。
+ */
+public final class QueryDeadline {
+
+    // 保存当前请求所有截止时间的请求属性名
+    public static final String REQUEST_ATTRIBUTE = QueryDeadline.class.getName() + ".deadlines";
+
+    private static final ThreadLocal<QueryDeadline> CURRENT = new ThreadLocal<>();
+
+    private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+    private static final int ACTIVE = 0;
+    private static final int FINISHED = 1;
+    private static final int TIMED_OUT = 2;
+    private static final int CANCELLED = 3;
+
+    private static final AtomicLong timedOutCount = new AtomicLong();
+    private static final AtomicLong cancelledCount = new AtomicLong();
+    private static final AtomicLong abortedExecutions = new AtomicLong();
+
+    private final long timeoutMs;
+    private final long deadlineNanos;
+    private final AtomicInteger state = new AtomicInteger(ACTIVE);
+    private final List<Runnable> abortHooks = new CopyOnWriteArrayList<>();
+    private final ScheduledFuture<?> expiryTask;
+
+    private QueryDeadline(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+        this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        this.expiryTask = TIMER.schedule(this::expire, timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "sparql-deadline-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * 创建从现在起timeoutMs毫秒后到期的截止时间
+     */
+    public static QueryDeadline after(long timeoutMs) {
+        return new QueryDeadline(timeoutMs);
+    }
+
+    /**
+     * 当前线程的截止时间，没有时返回null
+     */
+    public static QueryDeadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 检查当前线程的截止时间，已到期或已取消时抛出DeadlineExceededException
+     */
+    public static void checkCurrent() {
+        QueryDeadline deadline = CURRENT.get();
+        if (deadline != null) {
+            deadline.check();
+        }
+    }
+
+    /**
+     * 在catch块中调用: 若异常由截止时间或取消引起，则改为抛出DeadlineExceededException，
+     * 避免被当作普通查询失败吞掉后继续执行
+     */
+    public static void rethrowIfAborted(Exception e) {
+        if (e instanceof DeadlineExceededException) {
+            throw (DeadlineExceededException) e;
+        }
+        checkCurrent();
+    }
+
+    /**
+     * 在本截止时间下执行任务，结束后恢复线程原有的截止时间
+     */
+    public <T> T call(Supplier<T> task) {
+        QueryDeadline previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * 登记到当前HTTP请求上，请求超时或客户端断开时由拦截器取消
+     */
+    @SuppressWarnings("unchecked")
+    public void registerWithCurrentRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return;
+        }
+        synchronized (attributes) {
+            List<QueryDeadline> deadlines = (List<QueryDeadline>) attributes.getAttribute(
+                    REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (deadlines == null) {
+                deadlines = new CopyOnWriteArrayList<>();
+                attributes.setAttribute(REQUEST_ATTRIBUTE, deadlines, RequestAttributes.SCOPE_REQUEST);
+            }
+            deadlines.add(this);
+        }
+    }
+
+    /**
+     * 剩余毫秒数，已到期时为0
+     */
+    public long remainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    /**
+     * 已到期或已取消时抛出DeadlineExceededException
+     */
+    public void check() {
+        if (state.get() == ACTIVE && System.nanoTime() - deadlineNanos >= 0) {
+            expire();
+        }
+        int current = state.get();
+        if (current == TIMED_OUT) {
+            throw new DeadlineExceededException("查询超过截止时间(" + timeoutMs + "ms)", false);
+        }
+        if (current == CANCELLED) {
+            throw new DeadlineExceededException("查询已被取消", true);
+        }
+    }
+
+    /**
+     * 取消（客户端断开、请求超时或调用方取消Future），已完成的截止时间不受影响
+     */
+    public void cancel() {
+        if (state.compareAndSet(ACTIVE, CANCELLED)) {
+            cancelledCount.incrementAndGet();
+            expiryTask.cancel(false);
+            runAbortHooks();
+        }
+    }
+
+    /**
+     * 标记正常完成，停止计时
+     */
+    public void finish() {
+        if (state.compareAndSet(ACTIVE, FINISHED)) {
+            expiryTask.cancel(false);
+        }
+    }
+
+    /**
+     * 注册中止回调（通常为QueryExecution::abort），关闭返回的句柄即注销
+     * 已到期或已取消时立即抛出DeadlineExceededException
+     */
+    public Registration onAbort(Runnable hook) {
+        check();
+        abortHooks.add(hook);
+        // 注册期间可能刚好到期，再检查一次，保证回调不会漏掉
+        if (state.get() == TIMED_OUT || state.get() == CANCELLED) {
+            abortHooks.remove(hook);
+            check();
+        }
+        return () -> abortHooks.remove(hook);
+    }
+
+    private void expire() {
+        if (state.compareAndSet(ACTIVE, TIMED_OUT)) {
+            timedOutCount.incrementAndGet();
+            runAbortHooks();
+        }
+    }
+
+    private void runAbortHooks() {
+        List<Runnable> hooks = new ArrayList<>(abortHooks);
+        abortHooks.clear();
+        for (Runnable hook : hooks) {
+            try {
+                hook.run();
+                abortedExecutions.incrementAndGet();
+            } catch (Exception e) {
+                System.err.println("中止SPARQL执行失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 获取超时/取消统计信息
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("timedOut", timedOutCount.get());
+        stats.put("cancelled", cancelledCount.get());
+        stats.put("abortedExecutions", abortedExecutions.get());
+        return stats;
+    }
+
+    /**
+     * 中止回调的注册句柄
+     */
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.rdfsearch.service.sparql;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按查询模板统计SPARQL执行情况 - 延迟直方图、返回行数、接收字节数，以及慢查询采样日志
+ *
+ * 预编译查询按模板文本归类，只在模板第一次出现时规范化；临时拼接的查询文本去掉前缀声明、
+ * 把字面量/IRI/数字替换为占位符后归类，同一段代码用不同参数发出的查询归入同一个模板。
+ * 模板按规范化后的完整文本区分，模板ID只用于展示，哈希值相同的不同模板分配不同的ID。
+ */
+@Component
+public class QueryMetrics {
+
+    // 延迟直方图的桶上限（毫秒），最后一个桶为无穷大
+    private static final long[] BUCKET_BOUNDS_MS = { 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+
+    private static final Pattern PREFIX_DECL = Pattern.compile("(?im)^\\s*(PREFIX|BASE)\\s+[^\\n]*$");
+    private static final Pattern STRING_LITERAL = Pattern.compile(
+            "\"(?:[^\"\\\\]|\\\\.)*\"(\\^\\^\\S+|@[\\w-]+)?|'(?:[^'\\\\]|\\\\.)*'(\\^\\^\\S+|@[\\w-]+)?");
+    private static final Pattern IRI = Pattern.compile("<[^>\\s]*>");
+    private static final Pattern NUMBER = Pattern.compile("(?<![\\w?$])[-+]?\\d+(\\.\\d+)?([eE][-+]?\\d+)?");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // 模板示例文本的最大长度
+    private static final int SAMPLE_LENGTH = 400;
+
+    @Value("${sparql.metrics.enabled:true}")
+    private boolean enabled;
+
+    // 超过该耗时的查询视为慢查询
+    @Value("${sparql.metrics.slow-query-ms:1000}")
+    private long slowQueryMs;
+
+    // 慢查询写入日志的采样比例，每个模板的第一条慢查询总是记录
+    @Value("${sparql.metrics.slow-query-sample-rate:0.1}")
+    private double slowQuerySampleRate;
+
+    // 规范化文本 -> 统计
+    private final Map<String, TemplateStats> templates = new ConcurrentHashMap<>();
+
+    // 预编译模板文本 -> 统计，命中时不需要规范化
+    private final Map<String, TemplateStats> prepared = new ConcurrentHashMap<>();
+
+    // 模板ID -> 统计
+    private final Map<String, TemplateStats> byId = new ConcurrentHashMap<>();
+
+    private final AtomicLong slowQueries = new AtomicLong();
+    private final AtomicLong slowQueriesLogged = new AtomicLong();
+
+    private static String fingerprint(String queryText) {
+        String text = PREFIX_DECL.matcher(queryText).replaceAll("");
+        text = STRING_LITERAL.matcher(text).replaceAll("?");
+        text = IRI.matcher(text).replaceAll("?");
+        text = NUMBER.matcher(text).replaceAll("?");
+        return WHITESPACE.matcher(text).replaceAll(" ").trim();
+    }
+
+    /**
+     * 记录一次临时拼接的查询的执行，按规范化后的文本归类
+     *
+     * @param queryText 实际执行的查询文本
+     * @param elapsedNanos 耗时（含结果读取）
+     * @param rows 返回行数
+     * @param bytes 接收的响应字节数（嵌入模式为0）
+     * @param failed 是否失败
+     */
+    public void record(String queryText, long elapsedNanos, long rows, long bytes, boolean failed) {
+        if (!enabled) {
+            return;
+        }
+        record(statsFor(fingerprint(queryText)), queryText, elapsedNanos, rows, bytes, failed);
+    }
+
+    /**
+     * 记录一次预编译查询的执行，按模板文本归类
+     *
+     * @param templateText 预编译模板文本（PreparedQueryCache的键）
+     * @param queryText 实际执行的查询，只在写慢查询日志时取文本
+     */
+    public void recordTemplate(String templateText, Object queryText, long elapsedNanos, long rows, long bytes,
+            boolean failed) {
+        if (!enabled) {
+            return;
+        }
+        TemplateStats stats = prepared.get(templateText);
+        if (stats == null) {
+            stats = prepared.computeIfAbsent(templateText, t -> statsFor(fingerprint(t)));
+        }
+        record(stats, queryText, elapsedNanos, rows, bytes, failed);
+    }
+
+    /**
+     * 取得规范化文本对应的统计，首次出现时分配模板ID
+     */
+    private TemplateStats statsFor(String fingerprint) {
+        TemplateStats stats = templates.get(fingerprint);
+        if (stats != null) {
+            return stats;
+        }
+        synchronized (byId) {
+            return templates.computeIfAbsent(fingerprint, f -> {
+                String base = "q" + Integer.toHexString(f.hashCode());
+                String id = base;
+                for (int n = 2; byId.containsKey(id); n++) {
+                    id = base + "-" + n;
+                }
+                TemplateStats created = new TemplateStats(id, f);
+                byId.put(id, created);
+                return created;
+            });
+        }
+    }
+
+    private void record(TemplateStats stats, Object queryText, long elapsedNanos, long rows, long bytes,
+            boolean failed) {
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        stats.record(elapsedMs, rows, bytes, failed);
+
+        if (elapsedMs >= slowQueryMs) {
+            slowQueries.incrementAndGet();
+            boolean first = stats.slowCount.getAndIncrement() == 0;
+            if (first || ThreadLocalRandom.current().nextDouble() < slowQuerySampleRate) {
+                slowQueriesLogged.incrementAndGet();
+                System.out.println("慢查询[" + stats.id + "] 耗时=" + elapsedMs + "ms, 行数=" + rows
+                        + ", 字节数=" + bytes + (failed ? ", 失败" : "") + "\n" + queryText);
+            }
+        }
+    }
+
+    /**
+     * 获取各模板统计，按总耗时从高到低排列
+     */
+    public Map<String, Object> getStats() {
+        List<Map.Entry<String, TemplateStats>> entries = new ArrayList<>(byId.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().totalMs.sum(), a.getValue().totalMs.sum()));
+
+        Map<String, Object> templateStats = new LinkedHashMap<>();
+        for (Map.Entry<String, TemplateStats> entry : entries) {
+            templateStats.put(entry.getKey(), entry.getValue().toMap());
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("slowQueryMs", slowQueryMs);
+        stats.put("slowQuerySampleRate", slowQuerySampleRate);
+        stats.put("slowQueries", slowQueries.get());
+        stats.put("slowQueriesLogged", slowQueriesLogged.get());
+        stats.put("templates", templateStats);
+        return stats;
+    }
+
+    /**
+     * 清空统计
+     */
+    public void reset() {
+        synchronized (byId) {
+            prepared.clear();
+            templates.clear();
+            byId.clear();
+        }
+        slowQueries.set(0);
+        slowQueriesLogged.set(0);
+    }
+
+    /**
+     * 单个模板的统计
+     */
+    private static class TemplateStats {
+        private final String id;
+        private final String sample;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalMs = new LongAdder();
+        private final LongAdder totalRows = new LongAdder();
+        private final LongAdder totalBytes = new LongAdder();
+        private final AtomicLong maxMs = new AtomicLong();
+        private final AtomicLong slowCount = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MS.length + 1);
+
+        TemplateStats(String id, String fingerprint) {
+            this.id = id;
+            this.sample = fingerprint.length() > SAMPLE_LENGTH
+                    ? fingerprint.substring(0, SAMPLE_LENGTH) + "..."
+                    : fingerprint;
+        }
+
+        void record(long elapsedMs, long rows, long bytes, boolean failed) {
+            count.increment();
+            if (failed) {
+                errors.increment();
+            }
+            totalMs.add(elapsedMs);
+            totalRows.add(rows);
+            totalBytes.add(bytes);
+            maxMs.accumulateAndGet(elapsedMs, Math::max);
+            buckets.incrementAndGet(bucketIndex(elapsedMs));
+        }
+
+        private static int bucketIndex(long elapsedMs) {
+            for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+                if (elapsedMs <= BUCKET_BOUNDS_MS[i]) {
+                    return i;
+                }
+            }
+            return BUCKET_BOUNDS_MS.length;
+        }
+
+        // 按直方图估算分位数，返回所在桶的上限
+        private long percentile(double p, long total) {
+            long threshold = (long) Math.ceil(total * p);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= threshold) {
+                    return i < BUCKET_BOUNDS_MS.length ? BUCKET_BOUNDS_MS[i] : maxMs.get();
+                }
+            }
+            return maxMs.get();
+        }
+
+        Map<String, Object> toMap() {
+            long n = count.sum();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("template", sample);
+            map.put("count", n);
+            map.put("errors", errors.sum());
+            map.put("totalMs", totalMs.sum());
+            map.put("avgMs", n > 0 ? (double) totalMs.sum() / n : 0.0);
+            map.put("maxMs", maxMs.get());
+            map.put("p50Ms", n > 0 ? percentile(0.50, n) : 0);
+            map.put("p95Ms", n > 0 ? percentile(0.95, n) : 0);
+            map.put("p99Ms", n > 0 ? percentile(0.99, n) : 0);
+            map.put("totalRows", totalRows.sum());
+            map.put("avgRows", n > 0 ? (double) totalRows.sum() / n : 0.0);
+            map.put("totalBytes", totalBytes.sum());
+            map.put("avgBytes", n > 0 ? (double) totalBytes.sum() / n : 0.0);
+
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < buckets.length(); i++) {
+                String label = i < BUCKET_BOUNDS_MS.length ? "le" + BUCKET_BOUNDS_MS[i] + "ms" : "inf";
+                histogram.put(label, buckets.get(i));
+            }
+            map.put("histogram", histogram);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.rdfsearch.service.sparql;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.sparql.core.Var;
+
+/**
+ * 预编译查询的类型化参数 - 参数值以RDF节点形式绑定到模板变量，不拼接进查询文本
+ */
+public class QueryParams {
+
+    private final Map<Var, Node> bindings = new HashMap<>();
+
+    /**
+     * 绑定整数参数 (xsd:integer)
+     */
+    public QueryParams integer(String name, long value) {
+        bindings.put(Var.alloc(name), NodeFactory.createLiteral(Long.toString(value), XSDDatatype.XSDinteger));
+        return this;
+    }
+
+    /**
+     * 绑定小数参数 (xsd:decimal)，与原先直接写入查询文本的数字字面量语义一致
+     */
+    public QueryParams decimal(String name, double value) {
+        String lexical = new BigDecimal(Double.toString(value)).toPlainString();
+        bindings.put(Var.alloc(name), NodeFactory.createLiteral(lexical, XSDDatatype.XSDdecimal));
+        return this;
+    }
+
+    /**
+     * 绑定字符串参数，特殊字符由Jena在序列化时转义
+     */
+    public QueryParams string(String name, String value) {
+        bindings.put(Var.alloc(name), NodeFactory.createLiteral(value));
+        return this;
+    }
+
+    /**
+     * 绑定URI参数
+     */
+    public QueryParams uri(String name, String value) {
+        if (value == null || !value.matches("[^\\s<>\"{}|^`\\\\]+")) {
+            throw new IllegalArgumentException("无效的URI参数: " + value);
+        }
+        bindings.put(Var.alloc(name), NodeFactory.createURI(value));
+        return this;
+    }
+
+    /**
+     * 绑定RDF节点参数，字面量的词法形式和数据类型原样保留
+     */
+    public QueryParams node(String name, Node value) {
+        bindings.put(Var.alloc(name), value);
+        return this;
+    }
+
+    public Map<Var, Node> getBindings() {
+        return bindings;
+    }
+}
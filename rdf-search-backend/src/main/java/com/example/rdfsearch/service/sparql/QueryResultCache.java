@@ -0,0 +1,174 @@
+package com.example.rdfsearch.service.sparql;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * SELECT查询结果缓存 - 按规范化查询文本缓存，LRU淘汰并带过期时间
+ *
+ * 每次SPARQL更新都会递增数据集版本号，版本号不一致的缓存项视为失效，
+ * 因此写入后不会读到旧数据。
+ * 缓存的值被多次命中共享，放入前应冻结为只读，交给调用方时返回副本。
+ */
+@Component
+public class QueryResultCache {
+
+    @Value("${sparql.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sparql.cache.max-entries:500}")
+    private int maxEntries;
+
+    @Value("${sparql.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    // 数据集版本号，每次更新递增
+    private final AtomicLong datasetVersion = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    // 访问顺序的LinkedHashMap实现LRU
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > maxEntries) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * 获取当前数据集版本号，查询开始前读取，用于写入缓存时标记结果所属版本
+     */
+    public long currentVersion() {
+        return datasetVersion.get();
+    }
+
+    /**
+     * 数据集发生写入，使所有已缓存结果失效
+     */
+    public void bumpVersion() {
+        datasetVersion.incrementAndGet();
+    }
+
+    /**
+     * 读取缓存结果，未命中、已过期或版本过旧时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key) {
+        if (!enabled) {
+            return null;
+        }
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+
+            long ageMs = System.currentTimeMillis() - entry.createdAt;
+            if (entry.version != datasetVersion.get() || ageMs > ttlSeconds * 1000) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+                misses.incrementAndGet();
+                return null;
+            }
+
+            hits.incrementAndGet();
+            return (T) entry.value;
+        }
+    }
+
+    /**
+     * 写入缓存，version应为查询开始前读取的版本号；若期间发生过更新则不缓存
+     */
+    public void put(String key, Object value, long version) {
+        if (!enabled || version != datasetVersion.get()) {
+            return;
+        }
+
+        synchronized (entries) {
+            entries.put(key, new Entry(value, version, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * 规范化查询文本作为缓存键 - 合并引号外的连续空白
+     */
+    public static String normalize(String queryString) {
+        StringBuilder normalized = new StringBuilder(queryString.length());
+        char quote = 0;
+        boolean pendingSpace = false;
+
+        for (int i = 0; i < queryString.length(); i++) {
+            char c = queryString.charAt(i);
+
+            if (quote == 0 && Character.isWhitespace(c)) {
+                pendingSpace = normalized.length() > 0;
+                continue;
+            }
+
+            if (pendingSpace) {
+                normalized.append(' ');
+                pendingSpace = false;
+            }
+            normalized.append(c);
+
+            if (quote == 0 && (c == '"' || c == '\'')) {
+                quote = c;
+            } else if (quote != 0 && c == quote && queryString.charAt(i - 1) != '\\') {
+                quote = 0;
+            }
+        }
+
+        return normalized.toString();
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("enabled", enabled);
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("datasetVersion", datasetVersion.get());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+
+        long total = hits.get() + misses.get();
+        stats.put("hitRate", total > 0 ? (double) hits.get() / total : 0.0);
+        return stats;
+    }
+
+    /**
+     * 缓存项
+     */
+    private static class Entry {
+        private final Object value;
+        private final long version;
+        private final long createdAt;
+
+        Entry(Object value, long version, long createdAt) {
+            this.value = value;
+            this.version = version;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.rdfsearch.service.sparql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 结构化并发查询范围 - 一个任务内相互独立的查询并行执行，共享同一个截止时间
+ *
+ * 用法: try (QueryScope scope = QueryScope.open(...)) { a = scope.fork(...); b = scope.fork(...); scope.join(); }
+ * 子任务在虚拟线程上运行，继承当前截止时间的剩余时间和读副本会话；任一子任务失败时
+ * 取消其余子任务正在进行的查询，join抛出最先发生的异常。范围关闭前所有子任务都已结束，
+ * 不会有查询泄漏到范围之外。
+ * 外层截止时间到期或被取消时，范围内的查询一并中止；范围内的失败不会取消外层截止时间。
+ * 非并行模式下fork直接在调用线程上顺序执行，行为与不使用范围时相同。
+ */
+public final class QueryScope implements AutoCloseable {
+
+    private final QueryDeadline deadline;
+    private final QueryDeadline.Registration parentRegistration;
+    private final ExecutorService executor;
+    private final String session;
+    private final List<CompletableFuture<?>> forks = new ArrayList<>();
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+
+    // join是否已正常结束，此时截止时间已标记完成
+    private boolean joined;
+
+    private QueryScope(QueryDeadline deadline, QueryDeadline.Registration parentRegistration,
+            ExecutorService executor) {
+        this.deadline = deadline;
+        this.parentRegistration = parentRegistration;
+        this.executor = executor;
+        this.session = ReplicaRouter.currentSession();
+    }
+
+    /**
+     * 打开范围
+     *
+     * @param parallel 是否并行执行子任务
+     * @param defaultTimeoutMs 当前线程没有截止时间时使用的超时
+     */
+    public static QueryScope open(boolean parallel, long defaultTimeoutMs) {
+        if (!parallel) {
+            return new QueryScope(null, null, null);
+        }
+
+        QueryDeadline parent = QueryDeadline.current();
+        QueryDeadline deadline = QueryDeadline.after(
+                parent != null ? Math.max(1, parent.remainingMillis()) : defaultTimeoutMs);
+        QueryDeadline.Registration registration = null;
+        if (parent != null) {
+            try {
+                registration = parent.onAbort(deadline::cancel);
+            } catch (RuntimeException e) {
+                deadline.finish();
+                throw e;
+            }
+        }
+        return new QueryScope(deadline, registration, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * 提交子任务，返回的句柄在join之后取值
+     */
+    public <T> Subtask<T> fork(Supplier<T> task) {
+        if (executor == null) {
+            T value = task.get();
+            return () -> value;
+        }
+
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(
+                () -> ReplicaRouter.withSession(session, () -> deadline.call(task)), executor);
+        future.whenComplete((result, error) -> {
+            // 失败即取消其余子任务的查询
+            if (error != null && firstFailure.compareAndSet(null, unwrap(error))) {
+                deadline.cancel();
+            }
+        });
+        forks.add(future);
+
+        return () -> {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                throw propagate(unwrap(e));
+            }
+        };
+    }
+
+    /**
+     * 等待所有子任务结束，任一失败时抛出最先发生的异常
+     */
+    public void join() {
+        if (executor == null) {
+            return;
+        }
+
+        for (CompletableFuture<?> future : forks) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                // 统一在下面抛出最先发生的异常
+            }
+        }
+
+        Throwable failure = firstFailure.get();
+        if (failure != null) {
+            throw propagate(failure);
+        }
+        deadline.finish();
+        joined = true;
+    }
+
+    /**
+     * 关闭范围: 未正常join时（调用方提前退出或子任务失败）取消仍在运行的子任务，并等待它们结束
+     */
+    @Override
+    public void close() {
+        if (executor == null) {
+            return;
+        }
+        if (!joined) {
+            deadline.cancel();
+        }
+        executor.close();
+        if (parentRegistration != null) {
+            parentRegistration.close();
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private static RuntimeException propagate(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new CompletionException(e);
+    }
+
+    /**
+     * 子任务结果句柄
+     */
+    @FunctionalInterface
+    public interface Subtask<T> {
+        T get();
+    }
+}
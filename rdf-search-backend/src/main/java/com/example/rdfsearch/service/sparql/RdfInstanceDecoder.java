@@ -0,0 +1,135 @@
+package com.example.rdfsearch.service.sparql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+
+import com.example.rdfsearch.model.RdfInstance;
+
+/**
+ * RdfInstance解码器 - 每个结果集只解析一次变量位置和字段转换器
+ *
+ * 之后每行按数组下标取值并直接写入RdfInstance，
+ * 不再按名称逐个查找变量，也不经过中间的Map。
+ */
+public final class RdfInstanceDecoder {
+
+    private final Var[] vars;
+    private final FieldWriter[] writers;
+
+    private RdfInstanceDecoder(Var[] vars, FieldWriter[] writers) {
+        this.vars = vars;
+        this.writers = writers;
+    }
+
+    /**
+     * 根据结果集的投影变量创建解码器，不认识的变量忽略
+     */
+    public static RdfInstanceDecoder forVars(List<String> resultVars) {
+        List<Var> vars = new ArrayList<>();
+        List<FieldWriter> writers = new ArrayList<>();
+
+        for (String varName : resultVars) {
+            FieldWriter writer = writerFor(varName);
+            if (writer != null) {
+                vars.add(Var.alloc(varName));
+                writers.add(writer);
+            }
+        }
+
+        return new RdfInstanceDecoder(vars.toArray(new Var[0]), writers.toArray(new FieldWriter[0]));
+    }
+
+    /**
+     * 解码一行结果
+     */
+    public RdfInstance decode(Binding binding) {
+        RdfInstance instance = new RdfInstance();
+        for (int i = 0; i < vars.length; i++) {
+            Node node = binding.get(vars[i]);
+            if (node != null) {
+                writers[i].write(instance, node);
+            }
+        }
+        return instance;
+    }
+
+    private static FieldWriter writerFor(String varName) {
+        switch (varName) {
+            case "uri":
+                return (instance, node) -> instance.setUri(nodeToString(node));
+            case "length":
+                return (instance, node) -> {
+                    instance.setLength(toFloat(node));
+                    if (node.isLiteral()) {
+                        instance.setLengthLiteral(node.getLiteralLexicalForm(), node.getLiteralDatatypeURI());
+                    }
+                };
+            case "microseismicEventCount":
+                return (instance, node) -> instance.setMicroseismicEventCount(toInt(node));
+            case "energyRelease":
+                return (instance, node) -> instance.setEnergyRelease(toFloat(node));
+            case "cumulativeApparentVolume":
+                return (instance, node) -> instance.setCumulativeApparentVolume(toFloat(node));
+            case "dailyEventRate":
+                return (instance, node) -> instance.setDailyEventRate(node.getLiteralLexicalForm());
+            case "dailyEnergyRelease":
+                return (instance, node) -> instance.setDailyEnergyRelease(toFloat(node));
+            case "dailyApparentVolumeRate":
+                return (instance, node) -> instance.setDailyApparentVolumeRate(toFloat(node));
+            case "serialNumber":
+                return (instance, node) -> instance.setSerialNumber(toInt(node));
+            case "mileage":
+                return (instance, node) -> instance.setMileage(node.getLiteralLexicalForm());
+            case "startMileage":
+                return (instance, node) -> instance.setStartMileage(node.getLiteralLexicalForm());
+            case "endMileage":
+                return (instance, node) -> instance.setEndMileage(node.getLiteralLexicalForm());
+            case "description":
+                return (instance, node) -> instance.setDescription(node.getLiteralLexicalForm());
+            case "riskType":
+                return (instance, node) -> instance.setRiskType(node.getLiteralLexicalForm());
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * URI节点取URI，其他节点取词法形式
+     */
+    static String nodeToString(Node node) {
+        if (node.isURI()) {
+            return node.getURI();
+        }
+        if (node.isLiteral()) {
+            return node.getLiteralLexicalForm();
+        }
+        return node.toString();
+    }
+
+    static float toFloat(Node node) {
+        Object value = node.getLiteralValue();
+        if (value instanceof Number) {
+            return ((Number) value).floatValue();
+        }
+        return Float.parseFloat(node.getLiteralLexicalForm());
+    }
+
+    static int toInt(Node node) {
+        Object value = node.getLiteralValue();
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        return Integer.parseInt(node.getLiteralLexicalForm());
+    }
+
+    /**
+     * 将单个节点写入RdfInstance的对应字段
+     */
+    private interface FieldWriter {
+        void write(RdfInstance instance, Node node);
+    }
+}
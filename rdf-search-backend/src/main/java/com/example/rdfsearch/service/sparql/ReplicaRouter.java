@@ -0,0 +1,438 @@
+package com.example.rdfsearch.service.sparql;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * 读副本路由 - SELECT查询在多个只读Fuseki副本间按未完成请求数最少的原则分配
+ *
+ * 写入只发往主库（fuseki.update.endpoint）。同一会话的写入在主库提交后的sticky-ms内，
+ * 该会话的读取固定发往主库的查询端点（fuseki.query.endpoint），保证读到自己的写入。
+ * 后台定时用ASK探测各副本，探测失败、响应过慢、连续请求失败或实际查询延迟明显偏高的副本被摘除，
+ * 摘除期满且探测正常后恢复。未配置副本时所有读取发往主库。
+ */
+@Component
+public class ReplicaRouter {
+
+    // 会话标识请求头，前端未提供时使用HTTP会话ID；两者都没有时没有会话，不固定到主库。
+    // 不使用客户端地址：代理或NAT后面的多个用户会共用同一个地址
+    public static final String SESSION_HEADER = "X-Session-Id";
+
+    private static final ThreadLocal<String> CURRENT_SESSION = new ThreadLocal<>();
+
+    @Autowired
+    private FusekiConnectionPool connectionPool;
+
+    @Value("${fuseki.query.endpoint:http://localhost:3030/mydata/query}")
+    private String primaryEndpoint;
+
+    // 只读副本查询端点，逗号分隔，为空时不启用路由
+    @Value("${fuseki.query.replicas:}")
+    private String replicaEndpoints;
+
+    // 写入后读取固定到主库的时长，应大于副本复制延迟
+    @Value("${fuseki.replica.sticky-ms:5000}")
+    private long stickyMs;
+
+    @Value("${fuseki.replica.health-check-interval-ms:5000}")
+    private long healthCheckIntervalMs;
+
+    // 探测耗时超过该值视为过慢
+    @Value("${fuseki.replica.slow-threshold-ms:1000}")
+    private long slowThresholdMs;
+
+    // 连续失败多少次后摘除
+    @Value("${fuseki.replica.failure-threshold:3}")
+    private int failureThreshold;
+
+    // 摘除后至少经过该时长才允许恢复
+    @Value("${fuseki.replica.eject-ms:30000}")
+    private long ejectMs;
+
+    // 实际查询延迟（指数移动平均）超过该值时摘除
+    @Value("${fuseki.replica.query-slow-ms:5000}")
+    private long querySlowMs;
+
+    // 实际查询延迟超过其他健康副本中最低值的该倍数时摘除
+    @Value("${fuseki.replica.latency-factor:3.0}")
+    private double latencyFactor;
+
+    // 副本至少有这么多次查询后才按延迟判断
+    @Value("${fuseki.replica.latency-min-samples:20}")
+    private int latencyMinSamples;
+
+    // 查询延迟移动平均的平滑系数
+    private static final double LATENCY_ALPHA = 0.2;
+
+    private final List<Replica> replicas = new ArrayList<>();
+
+    // 会话最近一次写入的时间
+    private final Map<String, Long> lastWriteBySession = new ConcurrentHashMap<>();
+    private final AtomicLong lastWriteNanos = new AtomicLong(System.nanoTime() - TimeUnit.DAYS.toNanos(1));
+
+    private final AtomicLong stickyReads = new AtomicLong();
+    private final AtomicLong fallbackReads = new AtomicLong();
+
+    private ScheduledExecutorService healthChecker;
+
+    @PostConstruct
+    public void init() {
+        Arrays.stream(replicaEndpoints.split(","))
+                .map(String::trim)
+                .filter(endpoint -> !endpoint.isEmpty())
+                .distinct()
+                .forEach(endpoint -> replicas.add(new Replica(endpoint)));
+
+        if (replicas.isEmpty()) {
+            return;
+        }
+
+        healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fuseki-replica-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, 0, healthCheckIntervalMs, TimeUnit.MILLISECONDS);
+
+        System.out.println("读副本路由已启用: 主库=" + primaryEndpoint + ", 副本=" + replicas.size()
+                + ", 写后固定主库=" + stickyMs + "ms");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return !replicas.isEmpty();
+    }
+
+    /**
+     * 选择读端点执行请求: 会话处于写后固定期时使用主库，否则选择未完成请求最少的健康副本，
+     * 所有副本均被摘除时回退到主库
+     */
+    public <T> T read(EndpointCall<T> call) {
+        if (replicas.isEmpty()) {
+            return call.execute(primaryEndpoint);
+        }
+        if (isPinnedToPrimary()) {
+            stickyReads.incrementAndGet();
+            return call.execute(primaryEndpoint);
+        }
+
+        Replica replica = pickReplica();
+        if (replica == null) {
+            fallbackReads.incrementAndGet();
+            return call.execute(primaryEndpoint);
+        }
+
+        replica.outstanding.incrementAndGet();
+        replica.requests.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            T result = call.execute(replica.endpoint);
+            replica.consecutiveFailures.set(0);
+            recordLatency(replica, System.nanoTime() - start);
+            return result;
+        } catch (DeadlineExceededException e) {
+            // 调用方超时或取消，不计为副本故障，但已等待的时间计入延迟
+            recordLatency(replica, System.nanoTime() - start);
+            throw e;
+        } catch (RuntimeException e) {
+            replica.failures.incrementAndGet();
+            if (replica.consecutiveFailures.incrementAndGet() >= failureThreshold) {
+                eject(replica, "连续失败" + failureThreshold + "次: " + e.getMessage());
+            }
+            throw e;
+        } finally {
+            replica.outstanding.decrementAndGet();
+        }
+    }
+
+    /**
+     * 把一次查询的耗时计入副本的延迟移动平均，明显慢于阈值或其他副本时摘除
+     */
+    private void recordLatency(Replica replica, long elapsedNanos) {
+        double elapsedMs = elapsedNanos / 1_000_000.0;
+        double average;
+        synchronized (replica) {
+            replica.latencySamples++;
+            replica.latencyMs = replica.latencySamples == 1
+                    ? elapsedMs
+                    : replica.latencyMs + LATENCY_ALPHA * (elapsedMs - replica.latencyMs);
+            if (replica.latencySamples < latencyMinSamples) {
+                return;
+            }
+            average = replica.latencyMs;
+        }
+
+        if (average > querySlowMs) {
+            eject(replica, String.format("查询延迟%.0fms", average));
+            return;
+        }
+        double fastest = fastestPeerLatency(replica);
+        if (fastest > 0 && average > fastest * latencyFactor) {
+            eject(replica, String.format("查询延迟%.0fms，其他副本最低%.0fms", average, fastest));
+        }
+    }
+
+    // 其他健康副本中样本足够的最低延迟，没有可比较的副本时返回-1
+    private double fastestPeerLatency(Replica self) {
+        double fastest = -1;
+        for (Replica peer : replicas) {
+            if (peer == self || !peer.healthy) {
+                continue;
+            }
+            synchronized (peer) {
+                if (peer.latencySamples >= latencyMinSamples && (fastest < 0 || peer.latencyMs < fastest)) {
+                    fastest = peer.latencyMs;
+                }
+            }
+        }
+        return fastest;
+    }
+
+    // 在健康副本中选未完成请求最少的，从随机位置开始遍历以分散并列的情况
+    private Replica pickReplica() {
+        int size = replicas.size();
+        int start = ThreadLocalRandom.current().nextInt(size);
+        Replica best = null;
+        for (int i = 0; i < size; i++) {
+            Replica candidate = replicas.get((start + i) % size);
+            if (!candidate.healthy) {
+                continue;
+            }
+            if (best == null || candidate.outstanding.get() < best.outstanding.get()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 记录会话的写入，应在写入于主库提交（或结果未知）之后调用，之后sticky-ms内该会话的读取发往主库
+     */
+    public void recordWrite(String session) {
+        long now = System.nanoTime();
+        lastWriteNanos.set(now);
+        if (session != null && !replicas.isEmpty()) {
+            lastWriteBySession.put(session, now);
+        }
+    }
+
+    /**
+     * 当前会话是否处于写后固定主库期
+     */
+    public boolean isPinnedToPrimary() {
+        if (replicas.isEmpty()) {
+            return false;
+        }
+        String session = currentSession();
+        if (session == null) {
+            return false;
+        }
+        Long writtenAt = lastWriteBySession.get(session);
+        return writtenAt != null && System.nanoTime() - writtenAt < TimeUnit.MILLISECONDS.toNanos(stickyMs);
+    }
+
+    /**
+     * 最近sticky-ms内没有写入，副本可视为已追上主库，其结果可以放入共享缓存
+     */
+    public boolean isReplicaReadConsistent() {
+        return replicas.isEmpty()
+                || System.nanoTime() - lastWriteNanos.get() >= TimeUnit.MILLISECONDS.toNanos(stickyMs);
+    }
+
+    /**
+     * 当前线程所属会话：异步任务中为提交时传入的会话，否则从当前HTTP请求解析
+     */
+    public static String currentSession() {
+        String session = CURRENT_SESSION.get();
+        if (session != null) {
+            return session;
+        }
+
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return null;
+        }
+        HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+        String header = request.getHeader(SESSION_HEADER);
+        if (header != null && !header.isBlank()) {
+            return header;
+        }
+        HttpSession httpSession = request.getSession(false);
+        return httpSession != null ? httpSession.getId() : null;
+    }
+
+    /**
+     * 以指定会话执行任务，供异步执行器把提交方的会话传递到虚拟线程
+     */
+    public static <T> T withSession(String session, Supplier<T> task) {
+        if (session == null) {
+            return task.get();
+        }
+        String previous = CURRENT_SESSION.get();
+        CURRENT_SESSION.set(session);
+        try {
+            return task.get();
+        } finally {
+            if (previous != null) {
+                CURRENT_SESSION.set(previous);
+            } else {
+                CURRENT_SESSION.remove();
+            }
+        }
+    }
+
+    /**
+     * 探测所有副本并清理过期的会话写入记录
+     */
+    private void checkHealth() {
+        for (Replica replica : replicas) {
+            try {
+                probe(replica);
+            } catch (Exception e) {
+                replica.lastProbeMs = -1;
+                eject(replica, "探测失败: " + e.getMessage());
+            }
+        }
+
+        long expiry = TimeUnit.MILLISECONDS.toNanos(stickyMs);
+        long now = System.nanoTime();
+        lastWriteBySession.values().removeIf(writtenAt -> now - writtenAt >= expiry);
+    }
+
+    private void probe(Replica replica) throws Exception {
+        String url = replica.endpoint + (replica.endpoint.contains("?") ? "&" : "?")
+                + "query=" + URLEncoder.encode("ASK {}", StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(Math.max(slowThresholdMs * 2, 1000)))
+                .header("Accept", "application/sparql-results+json")
+                .GET()
+                .build();
+
+        long start = System.nanoTime();
+        HttpResponse<Void> response = connectionPool.getHttpClient()
+                .send(request, HttpResponse.BodyHandlers.discarding());
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        replica.lastProbeMs = elapsedMs;
+
+        if (response.statusCode() != 200) {
+            eject(replica, "探测返回状态码" + response.statusCode());
+        } else if (elapsedMs > slowThresholdMs) {
+            eject(replica, "探测耗时" + elapsedMs + "ms");
+        } else if (!replica.healthy && System.nanoTime() - replica.ejectedAtNanos >= TimeUnit.MILLISECONDS.toNanos(ejectMs)) {
+            replica.consecutiveFailures.set(0);
+            synchronized (replica) {
+                // 恢复后重新积累延迟样本，不沿用摘除前的延迟
+                replica.latencySamples = 0;
+                replica.latencyMs = 0;
+            }
+            replica.healthy = true;
+            System.out.println("读副本恢复: " + replica.endpoint);
+        }
+    }
+
+    private void eject(Replica replica, String reason) {
+        // 已摘除的副本再次失败时重新计算摘除时间
+        replica.ejectedAtNanos = System.nanoTime();
+        if (replica.healthy) {
+            replica.healthy = false;
+            replica.ejections.incrementAndGet();
+            System.err.println("读副本摘除: " + replica.endpoint + " (" + reason + ")");
+        }
+    }
+
+    /**
+     * 获取路由统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> replicaStats = new LinkedHashMap<>();
+        for (Replica replica : replicas) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("healthy", replica.healthy);
+            item.put("outstanding", replica.outstanding.get());
+            item.put("requests", replica.requests.get());
+            item.put("failures", replica.failures.get());
+            item.put("ejections", replica.ejections.get());
+            item.put("lastProbeMs", replica.lastProbeMs);
+            synchronized (replica) {
+                item.put("queryLatencyMs", replica.latencyMs);
+                item.put("latencySamples", replica.latencySamples);
+            }
+            replicaStats.put(replica.endpoint, item);
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("primary", primaryEndpoint);
+        stats.put("replicas", replicaStats);
+        stats.put("stickyReads", stickyReads.get());
+        stats.put("fallbackReads", fallbackReads.get());
+        stats.put("stickySessions", lastWriteBySession.size());
+        return stats;
+    }
+
+    /**
+     * 在选定端点上执行的调用
+     */
+    @FunctionalInterface
+    public interface EndpointCall<T> {
+        T execute(String endpoint);
+    }
+
+    /**
+     * 单个只读副本的状态
+     */
+    private static class Replica {
+        private final String endpoint;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong ejections = new AtomicLong();
+        private volatile boolean healthy = true;
+        private volatile long ejectedAtNanos;
+        private volatile long lastProbeMs;
+        // 查询延迟移动平均及样本数，由副本对象锁保护
+        private double latencyMs;
+        private long latencySamples;
+
+        Replica(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+}
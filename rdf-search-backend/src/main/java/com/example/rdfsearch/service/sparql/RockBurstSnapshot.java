@@ -0,0 +1,476 @@
+package com.example.rdfsearch.service.sparql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+
+/**
+ * 岩爆数值属性的内存列式快照 - 用于范围搜索，不再对每个请求在Fuseki上连接多个三元组模式
+ *
+ * 实体按URI排序编号（编号顺序即URI顺序，与SPARQL的字符串顺序一致），
+ * 每个数值列是按编号存放的double数组（缺失为NaN），
+ * 并带有按(值, 编号)排序的范围索引；风险类型按字典编码并建立倒排表。
+ * 快照只返回命中实体的URI，完整属性由调用方按页回查。
+ * 快照不可变，绑定构建时的数据集版本号，版本变化后由调用方重新加载。
+ */
+public final class RockBurstSnapshot {
+
+    public static final String ONT = "http://www.semanticweb.org/yoruh/ontologies/2024/9/untitled-ontology-11#";
+
+    public static final int LENGTH = 0;
+    public static final int MICROSEISMIC_EVENT_COUNT = 1;
+    public static final int ENERGY_RELEASE = 2;
+    public static final int DAILY_ENERGY_RELEASE = 3;
+
+    // 数值列对应的属性，下标即列号
+    private static final String[] COLUMN_PROPERTIES = {
+            ONT + "length",
+            ONT + "microseismicEventCount",
+            ONT + "energyRelease",
+            ONT + "dailyEnergyRelease"
+    };
+
+    public static final String RISK_TYPE_PROPERTY = ONT + "riskType";
+
+    // 候选数少于实体数的该比例时走索引并排序，否则按URI顺序顺扫
+    private static final int INDEX_SCAN_RATIO = 8;
+
+    private final long version;
+    private final long loadedAt;
+    private final boolean multiValued;
+
+    private final String[] uris;
+    private final double[][] values;
+    private final int[][] valueOrder;
+    private final double[][] sortedValues;
+
+    private final String[] riskDictionary;
+    private final int[] riskCodes;
+    private final int[][] riskPostings;
+
+    private RockBurstSnapshot(long version, boolean multiValued, String[] uris, double[][] values,
+            String[] riskDictionary, int[] riskCodes) {
+        this.version = version;
+        this.loadedAt = System.currentTimeMillis();
+        this.multiValued = multiValued;
+        this.uris = uris;
+        this.values = values;
+        this.riskDictionary = riskDictionary;
+        this.riskCodes = riskCodes;
+
+        this.valueOrder = new int[values.length][];
+        this.sortedValues = new double[values.length][];
+        for (int column = 0; column < values.length; column++) {
+            buildRangeIndex(column);
+        }
+
+        int[] postingSizes = new int[riskDictionary.length];
+        for (int code : riskCodes) {
+            if (code >= 0) {
+                postingSizes[code]++;
+            }
+        }
+        this.riskPostings = new int[riskDictionary.length][];
+        for (int code = 0; code < riskDictionary.length; code++) {
+            riskPostings[code] = new int[postingSizes[code]];
+        }
+        int[] filled = new int[riskDictionary.length];
+        for (int id = 0; id < riskCodes.length; id++) {
+            int code = riskCodes[id];
+            if (code >= 0) {
+                riskPostings[code][filled[code]++] = id;
+            }
+        }
+    }
+
+    // 按(值, 编号)排序，缺失值不进入索引
+    private void buildRangeIndex(int column) {
+        double[] columnValues = values[column];
+        int present = 0;
+        for (double value : columnValues) {
+            if (!Double.isNaN(value)) {
+                present++;
+            }
+        }
+
+        Integer[] boxed = new Integer[present];
+        int k = 0;
+        for (int id = 0; id < columnValues.length; id++) {
+            if (!Double.isNaN(columnValues[id])) {
+                boxed[k++] = id;
+            }
+        }
+        Arrays.sort(boxed, (a, b) -> {
+            int byValue = Double.compare(columnValues[a], columnValues[b]);
+            return byValue != 0 ? byValue : Integer.compare(a, b);
+        });
+
+        int[] order = new int[present];
+        double[] sorted = new double[present];
+        for (int i = 0; i < present; i++) {
+            order[i] = boxed[i];
+            sorted[i] = columnValues[order[i]];
+        }
+        valueOrder[column] = order;
+        sortedValues[column] = sorted;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * 是否有实体的某个索引属性存在多个值 - 此时SPARQL会为每个值返回一行，快照无法等价回答
+     */
+    public boolean isMultiValued() {
+        return multiValued;
+    }
+
+    public int size() {
+        return uris.length;
+    }
+
+    /**
+     * 长度在[min, max]内的实体，按(长度, URI)排序，从游标之后取limit个
+     */
+    public List<String> searchByLength(double min, double max, Double afterLength, String afterUri, int limit) {
+        int[] order = valueOrder[LENGTH];
+        double[] sorted = sortedValues[LENGTH];
+
+        int start = lowerBound(sorted, min);
+        if (afterLength != null) {
+            start = Math.max(start, firstAfter(order, sorted, afterLength, afterUri));
+        }
+
+        List<String> page = new ArrayList<>(Math.min(limit, 256));
+        for (int i = start; i < sorted.length && page.size() < limit; i++) {
+            if (sorted[i] > max) {
+                break;
+            }
+            page.add(uris[order[i]]);
+        }
+        return page;
+    }
+
+    // 第一个(值, URI)大于(afterLength, afterUri)的索引位置
+    private int firstAfter(int[] order, double[] sorted, double afterLength, String afterUri) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Double.compare(sorted[mid], afterLength);
+            if (cmp == 0) {
+                cmp = compareUris(uris[order[mid]], afterUri);
+            }
+            if (cmp <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 多条件范围搜索，按URI排序，从afterUri之后取limit个
+     *
+     * @param ranges 各数值列的范围（下标为列号），null表示该列不过滤
+     * @param riskTypes 风险类型取值，null或空表示不过滤
+     */
+    public List<String> search(Range[] ranges, List<String> riskTypes, String afterUri, int limit) {
+        boolean[] riskAccepted = null;
+        if (riskTypes != null && !riskTypes.isEmpty()) {
+            riskAccepted = new boolean[riskDictionary.length];
+            for (String riskType : riskTypes) {
+                int code = Arrays.binarySearch(riskDictionary, riskType);
+                if (code >= 0) {
+                    riskAccepted[code] = true;
+                }
+            }
+        }
+
+        int startId = afterUri != null ? firstUriAfter(afterUri) : 0;
+
+        // 选择候选最少的条件作为驱动
+        int[] candidates = null;
+        int candidateCount = uris.length;
+        for (int column = 0; column < ranges.length; column++) {
+            Range range = ranges[column];
+            if (range == null) {
+                continue;
+            }
+            int from = lowerBound(sortedValues[column], range.min);
+            int to = upperBound(sortedValues[column], range.max);
+            int count = Math.max(0, to - from);
+            if (count < candidateCount) {
+                candidateCount = count;
+                candidates = Arrays.copyOfRange(valueOrder[column], from, Math.max(from, to));
+            }
+        }
+        if (riskAccepted != null) {
+            int count = 0;
+            for (int code = 0; code < riskAccepted.length; code++) {
+                if (riskAccepted[code]) {
+                    count += riskPostings[code].length;
+                }
+            }
+            if (count < candidateCount) {
+                candidateCount = count;
+                candidates = new int[count];
+                int k = 0;
+                for (int code = 0; code < riskAccepted.length; code++) {
+                    if (riskAccepted[code]) {
+                        System.arraycopy(riskPostings[code], 0, candidates, k, riskPostings[code].length);
+                        k += riskPostings[code].length;
+                    }
+                }
+            }
+        }
+
+        List<String> page = new ArrayList<>(Math.min(limit, 256));
+        if (candidates != null && (long) candidateCount * INDEX_SCAN_RATIO < uris.length) {
+            Arrays.sort(candidates);
+            int i = lowerBound(candidates, startId);
+            for (; i < candidates.length && page.size() < limit; i++) {
+                if (matches(candidates[i], ranges, riskAccepted)) {
+                    page.add(uris[candidates[i]]);
+                }
+            }
+        } else {
+            for (int id = startId; id < uris.length && page.size() < limit; id++) {
+                if (matches(id, ranges, riskAccepted)) {
+                    page.add(uris[id]);
+                }
+            }
+        }
+        return page;
+    }
+
+    private boolean matches(int id, Range[] ranges, boolean[] riskAccepted) {
+        for (int column = 0; column < ranges.length; column++) {
+            Range range = ranges[column];
+            if (range != null) {
+                double value = values[column][id];
+                // NaN（缺失或非数值）不满足任何比较，与SPARQL FILTER一致
+                if (!(value >= range.min && value <= range.max)) {
+                    return false;
+                }
+            }
+        }
+        if (riskAccepted != null) {
+            int code = riskCodes[id];
+            return code >= 0 && riskAccepted[code];
+        }
+        return true;
+    }
+
+    // 第一个URI大于afterUri的实体编号
+    private int firstUriAfter(String afterUri) {
+        int low = 0;
+        int high = uris.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareUris(uris[mid], afterUri) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 比较URI，与SPARQL中STR(?uri)的比较和ORDER BY ?uri一致；
+     * Jena按Java字符串（UTF-16代码单元）比较，增补字符排在U+E000以上的字符之前
+     */
+    public static int compareUris(String a, String b) {
+        return a.compareTo(b);
+    }
+
+    // 第一个不小于key的位置
+    private static int lowerBound(double[] sorted, double key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // 第一个大于key的位置
+    private static int upperBound(double[] sorted, double key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int lowerBound(int[] sorted, int key) {
+        int index = Arrays.binarySearch(sorted, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * 获取快照统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("version", version);
+        stats.put("loadedAt", loadedAt);
+        stats.put("entities", uris.length);
+        stats.put("multiValued", multiValued);
+        stats.put("riskTypes", riskDictionary.length);
+        Map<String, Integer> indexed = new HashMap<>();
+        for (int column = 0; column < COLUMN_PROPERTIES.length; column++) {
+            indexed.put(COLUMN_PROPERTIES[column].substring(ONT.length()), valueOrder[column].length);
+        }
+        stats.put("indexedValues", indexed);
+        return stats;
+    }
+
+    /**
+     * 闭区间范围，缺失的边界为无穷
+     */
+    public static final class Range {
+        private final double min;
+        private final double max;
+
+        private Range(double min, double max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * 两个边界都为null时返回null（不过滤）
+         */
+        public static Range of(Number min, Number max) {
+            if (min == null && max == null) {
+                return null;
+            }
+            return new Range(min != null ? min.doubleValue() : Double.NEGATIVE_INFINITY,
+                    max != null ? max.doubleValue() : Double.POSITIVE_INFINITY);
+        }
+    }
+
+    /**
+     * 从(实体, 属性, 值)三元组逐条构建快照
+     */
+    public static final class Builder {
+        private final Map<String, double[]> numeric = new TreeMap<>(RockBurstSnapshot::compareUris);
+        private final Map<String, String> riskTypes = new HashMap<>();
+        private boolean multiValued;
+
+        public void add(Node subject, Node property, Node value) {
+            // 空白节点无法按URI回查，不进入快照
+            if (subject == null || !subject.isURI() || property == null || value == null) {
+                return;
+            }
+            String uri = subject.getURI();
+            String predicate = property.getURI();
+
+            if (RISK_TYPE_PROPERTY.equals(predicate)) {
+                row(uri);
+                // 只有普通字符串能与IN (...)中的字符串参数相等
+                String riskType = isPlainString(value) ? value.getLiteralLexicalForm() : "";
+                String previous = riskTypes.put(uri, riskType);
+                if (previous != null && !previous.equals(riskType)) {
+                    multiValued = true;
+                }
+                return;
+            }
+
+            for (int column = 0; column < COLUMN_PROPERTIES.length; column++) {
+                if (COLUMN_PROPERTIES[column].equals(predicate)) {
+                    double[] row = row(uri);
+                    if (row[COLUMN_PROPERTIES.length + column] != 0) {
+                        multiValued = true;
+                    }
+                    row[column] = toDouble(value);
+                    row[COLUMN_PROPERTIES.length + column] = 1;
+                    return;
+                }
+            }
+        }
+
+        // 每个实体一行: 前半为列值，后半标记该列是否已出现
+        private double[] row(String uri) {
+            return numeric.computeIfAbsent(uri, k -> {
+                double[] row = new double[COLUMN_PROPERTIES.length * 2];
+                Arrays.fill(row, 0, COLUMN_PROPERTIES.length, Double.NaN);
+                return row;
+            });
+        }
+
+        private static boolean isPlainString(Node value) {
+            return value.isLiteral()
+                    && value.getLiteralLanguage().isEmpty()
+                    && XSDDatatype.XSDstring.getURI().equals(value.getLiteralDatatypeURI());
+        }
+
+        private static double toDouble(Node value) {
+            if (!value.isLiteral()) {
+                return Double.NaN;
+            }
+            try {
+                Object literal = value.getLiteralValue();
+                return literal instanceof Number ? ((Number) literal).doubleValue() : Double.NaN;
+            } catch (Exception e) {
+                // 格式错误的字面量在SPARQL比较中同样不满足条件
+                return Double.NaN;
+            }
+        }
+
+        public RockBurstSnapshot build(long version) {
+            int size = numeric.size();
+            String[] uris = new String[size];
+            double[][] values = new double[COLUMN_PROPERTIES.length][size];
+
+            TreeMap<String, Integer> dictionary = new TreeMap<>();
+            for (String riskType : riskTypes.values()) {
+                if (!riskType.isEmpty()) {
+                    dictionary.putIfAbsent(riskType, 0);
+                }
+            }
+            String[] riskDictionary = dictionary.keySet().toArray(new String[0]);
+            int[] riskCodes = new int[size];
+
+            // TreeMap按URI升序遍历，编号顺序即URI顺序
+            int id = 0;
+            for (Map.Entry<String, double[]> entry : numeric.entrySet()) {
+                uris[id] = entry.getKey();
+                for (int column = 0; column < COLUMN_PROPERTIES.length; column++) {
+                    values[column][id] = entry.getValue()[column];
+                }
+                String riskType = riskTypes.get(entry.getKey());
+                riskCodes[id] = riskType != null && !riskType.isEmpty()
+                        ? Arrays.binarySearch(riskDictionary, riskType)
+                        : -1;
+                id++;
+            }
+
+            return new RockBurstSnapshot(version, multiValued, uris, values, riskDictionary, riskCodes);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.rdfsearch.service.sparql;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.apache.jena.datatypes.RDFDatatype;
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+
+/**
+ * 搜索分页游标 - 记录上一页最后一行的排序键
+ *
+ * 下一页查询以排序键作为过滤条件（keyset分页），而不是OFFSET，
+ * 因此翻到多深的页面代价都与第一页相同。对外编码为不透明的Base64字符串。
+ * 长度键保存存储中字面量的原始词法形式和数据类型，与存储的值比较时精确相等。
+ */
+public final class SearchCursor {
+
+    private static final String URI_KEY = "u";
+    private static final String LENGTH_KEY = "l";
+
+    // 按长度排序时的上一页最后长度字面量，按URI排序时为null
+    private final String lengthLexical;
+    private final String lengthDatatype;
+    private final String uri;
+
+    private SearchCursor(String lengthLexical, String lengthDatatype, String uri) {
+        this.lengthLexical = lengthLexical;
+        this.lengthDatatype = lengthDatatype;
+        this.uri = uri;
+    }
+
+    /**
+     * 按URI排序的游标
+     */
+    public static SearchCursor afterUri(String uri) {
+        return new SearchCursor(null, null, uri);
+    }
+
+    /**
+     * 按(长度, URI)排序的游标，长度为存储中的字面量（词法形式和数据类型URI）
+     */
+    public static SearchCursor afterLength(String lexical, String datatype, String uri) {
+        SearchCursor cursor = new SearchCursor(lexical, datatype, uri);
+        if (Double.isNaN(cursor.getLengthValue())) {
+            throw new IllegalArgumentException("长度不是数值: " + lexical);
+        }
+        return cursor;
+    }
+
+    /**
+     * 长度字面量节点，绑定到查询参数
+     */
+    public Node getLengthNode() {
+        RDFDatatype datatype = TypeMapper.getInstance().getSafeTypeByName(lengthDatatype);
+        return NodeFactory.createLiteral(lengthLexical, datatype);
+    }
+
+    /**
+     * 长度的数值，与快照中按字面量取值的结果一致；不是有效数值时为NaN
+     */
+    public double getLengthValue() {
+        try {
+            Object value = getLengthNode().getLiteralValue();
+            return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public boolean isLengthOrdered() {
+        return lengthLexical != null;
+    }
+
+    /**
+     * 编码为URL安全的不透明字符串
+     */
+    public String encode() {
+        String raw = lengthLexical != null
+                ? LENGTH_KEY + "|" + lengthDatatype + "|" + lengthLexical + "|" + uri
+                : URI_KEY + "|" + uri;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标，格式不正确时抛出IllegalArgumentException
+     */
+    public static SearchCursor decode(String token) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的分页游标: " + token);
+        }
+
+        if (raw.startsWith(URI_KEY + "|")) {
+            return afterUri(raw.substring(URI_KEY.length() + 1));
+        }
+        String[] parts = raw.split("\\|", 4);
+        if (parts.length == 4 && LENGTH_KEY.equals(parts[0])) {
+            try {
+                return afterLength(parts[2], parts[1], parts[3]);
+            } catch (IllegalArgumentException e) {
+                // 落到下面统一报错
+            }
+        }
+        throw new IllegalArgumentException("无效的分页游标: " + token);
+    }
+}
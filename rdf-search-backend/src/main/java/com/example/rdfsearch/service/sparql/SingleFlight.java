@@ -0,0 +1,84 @@
+package com.example.rdfsearch.service.sparql;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 并发请求合并 - 相同键的调用同时到达时只执行一次，其余调用方等待并共享结果
+ *
+ * 共享的结果会被多个调用方同时持有，必须是只读的，调用方需要修改时先复制。
+ * 键中应包含数据集版本号，更新之后到达的调用不会复用更新之前开始的执行。
+ */
+@Component
+public class SingleFlight {
+
+    @Value("${sparql.singleflight.enabled:true}")
+    private boolean enabled;
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * 执行loader，若相同键的执行正在进行则等待其结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof DeadlineExceededException) {
+                    // 执行方因自己的截止时间失败，本调用方未到期时自行重新执行
+                    QueryDeadline.checkCurrent();
+                    inFlight.remove(key, existing);
+                    return execute(key, loader);
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        executions.incrementAndGet();
+        try {
+            T value = loader.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * 获取合并统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("inFlight", inFlight.size());
+        stats.put("executions", executions.get());
+        stats.put("coalesced", coalesced.get());
+        return stats;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.rdfsearch.service.sparql;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * SPARQL异步执行器 - 在虚拟线程上运行查询，不占用Tomcat请求线程
+ *
+ * 虚拟线程数量不受限制，信号量只限制同时进行的Fuseki请求（由SparqlService在发送请求时占用），
+ * 不限制任务本身：任务内等待其他异步任务时不持有名额，嵌套提交不会因名额耗尽而互相等待。
+ * 每个任务带有截止时间（默认与spring.mvc.async.request-timeout相同），
+ * 调用方已有截止时间时沿用，Future被取消时同时取消查询。
+ * 提交方的会话一并传递，供读副本路由实现写后读一致。
+ */
+@Component
+public class SparqlAsyncExecutor {
+
+    // 同时进行的Fuseki请求上限
+    @Value("${sparql.async.max-concurrency:64}")
+    private int maxConcurrency;
+
+    // 未继承截止时间时的默认超时，与异步请求超时一致
+    @Value("${sparql.query.timeout-ms:${spring.mvc.async.request-timeout:30000}}")
+    private long defaultTimeoutMs;
+
+    private ExecutorService executor;
+    private Semaphore permits;
+
+    private final AtomicInteger tasks = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    // 当前线程已持有名额时，结果处理中发起的查询不再重复获取
+    private final ThreadLocal<Boolean> holding = new ThreadLocal<>();
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        permits = new Semaphore(maxConcurrency, true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 在虚拟线程上异步执行任务，任务内的查询受截止时间约束
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        QueryDeadline inherited = QueryDeadline.current();
+        QueryDeadline deadline = inherited != null ? inherited : QueryDeadline.after(defaultTimeoutMs);
+        if (inherited == null) {
+            deadline.registerWithCurrentRequest();
+        }
+
+        // 读副本路由按提交方的会话判断是否固定到主库
+        String session = ReplicaRouter.currentSession();
+
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
+            tasks.incrementAndGet();
+            try {
+                return ReplicaRouter.withSession(session, () -> deadline.call(task));
+            } finally {
+                tasks.decrementAndGet();
+                if (inherited == null) {
+                    deadline.finish();
+                }
+            }
+        }, executor);
+
+        // 调用方取消Future时同时中止正在进行的查询
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                deadline.cancel();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 占用一个名额执行Fuseki请求，等待名额的时间受当前截止时间约束
+     * 只应包住单次HTTP请求及其结果读取，不要在持有名额时等待其他异步任务
+     */
+    public <T> T withPermit(Supplier<T> call) {
+        if (holding.get() != null) {
+            return call.get();
+        }
+
+        QueryDeadline deadline = QueryDeadline.current();
+        waiting.incrementAndGet();
+        try {
+            boolean acquired = deadline != null
+                    ? permits.tryAcquire(deadline.remainingMillis(), TimeUnit.MILLISECONDS)
+                    : permits.tryAcquire(defaultTimeoutMs, TimeUnit.MILLISECONDS);
+            if (!acquired) {
+                if (deadline != null) {
+                    deadline.check();
+                }
+                throw new DeadlineExceededException("等待SPARQL执行名额超时", false);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待SPARQL执行名额被中断", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+        running.incrementAndGet();
+        holding.set(Boolean.TRUE);
+        try {
+            return call.get();
+        } finally {
+            holding.remove();
+            running.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    /**
+     * 获取执行器统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("maxConcurrency", maxConcurrency);
+        stats.put("tasks", tasks.get());
+        stats.put("running", running.get());
+        stats.put("waiting", waiting.get());
+        return stats;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.rdfsearch.service.sparql;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.datatypes.RDFDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+
+/**
+ * 通用结果行解码器 - 将字面量按数据类型转换为Integer/Float/Boolean/String
+ *
+ * 变量按下标访问；每列记住上一行的数据类型及其转换器，
+ * 同一列类型不变时不再对数据类型URI做字符串匹配。
+ */
+public final class TypedRowDecoder {
+
+    private final String[] names;
+    private final Var[] vars;
+
+    // 每列最近一次出现的数据类型及对应转换器
+    private final RDFDatatype[] lastDatatypes;
+    private final Converter[] converters;
+
+    private TypedRowDecoder(List<String> resultVars) {
+        int size = resultVars.size();
+        this.names = resultVars.toArray(new String[0]);
+        this.vars = new Var[size];
+        this.lastDatatypes = new RDFDatatype[size];
+        this.converters = new Converter[size];
+        for (int i = 0; i < size; i++) {
+            vars[i] = Var.alloc(names[i]);
+        }
+    }
+
+    /**
+     * 为一个结果集创建解码器，解码器带有列状态，不能在结果集之间共享
+     */
+    public static TypedRowDecoder forVars(List<String> resultVars) {
+        return new TypedRowDecoder(resultVars);
+    }
+
+    /**
+     * 解码一行结果，未绑定的变量不放入结果
+     */
+    public Map<String, Object> decode(Binding binding) {
+        Map<String, Object> row = new HashMap<>(names.length * 2);
+
+        for (int i = 0; i < vars.length; i++) {
+            Node node = binding.get(vars[i]);
+            if (node == null) {
+                continue;
+            }
+
+            if (!node.isLiteral()) {
+                // 资源节点
+                row.put(names[i], RdfInstanceDecoder.nodeToString(node));
+                continue;
+            }
+
+            RDFDatatype datatype = node.getLiteralDatatype();
+            if (datatype != lastDatatypes[i] || converters[i] == null) {
+                lastDatatypes[i] = datatype;
+                converters[i] = converterFor(datatype);
+            }
+
+            try {
+                row.put(names[i], converters[i].convert(node));
+            } catch (Exception e) {
+                // 转换失败时使用字符串
+                row.put(names[i], node.getLiteralLexicalForm());
+            }
+        }
+
+        return row;
+    }
+
+    /**
+     * 按数据类型选择转换器，与原先按URI片段判断的规则一致
+     */
+    private static Converter converterFor(RDFDatatype datatype) {
+        String datatypeURI = datatype != null ? datatype.getURI() : null;
+        if (datatypeURI == null) {
+            return Node::getLiteralLexicalForm;
+        }
+        if (datatypeURI.contains("integer")) {
+            return RdfInstanceDecoder::toInt;
+        }
+        if (datatypeURI.contains("float") || datatypeURI.contains("double")) {
+            return RdfInstanceDecoder::toFloat;
+        }
+        if (datatypeURI.contains("boolean")) {
+            return node -> (Boolean) node.getLiteralValue();
+        }
+        return Node::getLiteralLexicalForm;
+    }
+
+    /**
+     * 字面量到Java值的转换
+     */
+    private interface Converter {
+        Object convert(Node node);
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.rdfsearch.service.sparql;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.update.Update;
+import org.apache.jena.update.UpdateRequest;
+
+/**
+ * SPARQL更新合并管道 - 将短时间窗口内到达的更新合并为一个UpdateRequest发送
+ *
+ * 单个分发线程按提交顺序出队，合并后的请求中各操作也保持提交顺序，
+ * 因此同一主语的更新（如先DELETE WHERE再INSERT DATA）不会乱序。
+ * 合并请求被拒绝（Fuseki返回错误响应，整个事务没有生效）时逐个重发，只有真正出错的调用方收到异常；
+ * 连接中断或超时时无法确认请求是否已经生效，不重发，批次中所有调用方收到异常。
+ */
+public class UpdatePipeline {
+
+    private final Consumer<UpdateRequest> sender;
+    private final long windowMs;
+    private final int maxBatchSize;
+
+    private final BlockingQueue<PendingUpdate> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong unknownOutcomes = new AtomicLong();
+
+    public UpdatePipeline(Consumer<UpdateRequest> sender, long windowMs, int maxBatchSize) {
+        this.sender = sender;
+        this.windowMs = windowMs;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.dispatcher = Thread.ofVirtual().name("sparql-update-pipeline").start(this::dispatchLoop);
+    }
+
+    /**
+     * 提交更新，返回的Future在该更新实际写入后完成
+     */
+    public CompletableFuture<Void> submit(UpdateRequest updateRequest) {
+        PendingUpdate pending = new PendingUpdate(updateRequest);
+        if (!running) {
+            pending.future.completeExceptionally(new IllegalStateException("SPARQL更新管道已关闭"));
+            return pending.future;
+        }
+        submitted.incrementAndGet();
+        queue.add(pending);
+        return pending.future;
+    }
+
+    /**
+     * 停止接收新更新，发送队列中剩余的更新后退出
+     */
+    public void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatchLoop() {
+        List<PendingUpdate> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingUpdate first = running ? queue.take() : queue.poll();
+                if (first == null) {
+                    break;
+                }
+                batch.add(first);
+
+                // 在时间窗口内继续收集，直到达到批量上限
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMs);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingUpdate next = remaining > 0 && running
+                            ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                            : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // shutdown时中断等待，继续发送已收集和剩余的更新
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingUpdate> batch) {
+        batches.incrementAndGet();
+
+        if (batch.size() == 1) {
+            sendSingle(batch.get(0));
+            return;
+        }
+
+        UpdateRequest combined = new UpdateRequest();
+        for (PendingUpdate pending : batch) {
+            for (Update operation : pending.request.getOperations()) {
+                combined.add(operation);
+            }
+        }
+
+        try {
+            sender.accept(combined);
+            for (PendingUpdate pending : batch) {
+                pending.future.complete(null);
+            }
+        } catch (Exception e) {
+            if (outcomeUnknown(e)) {
+                // 请求可能已经生效，重发会使非幂等的更新重复执行
+                System.err.println("合并更新结果未知，不重发 " + batch.size() + " 个更新: " + e.getMessage());
+                unknownOutcomes.incrementAndGet();
+                for (PendingUpdate pending : batch) {
+                    pending.future.completeExceptionally(e);
+                }
+                return;
+            }
+
+            // Fuseki在单个事务中执行整个请求，被拒绝时不会部分生效，可安全地逐个重发
+            System.err.println("合并更新失败，逐个重发 " + batch.size() + " 个更新: " + e.getMessage());
+            fallbacks.incrementAndGet();
+            for (PendingUpdate pending : batch) {
+                sendSingle(pending);
+            }
+        }
+    }
+
+    /**
+     * 没有收到Fuseki的响应（连接中断、超时）时无法确认请求是否已执行
+     */
+    private static boolean outcomeUnknown(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof HttpException http && http.getStatusCode() > 0) {
+                return false;
+            }
+            if (t instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void sendSingle(PendingUpdate pending) {
+        try {
+            sender.accept(pending.request);
+            pending.future.complete(null);
+        } catch (Exception e) {
+            pending.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 获取管道统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("windowMs", windowMs);
+        stats.put("maxBatchSize", maxBatchSize);
+        stats.put("queued", queue.size());
+        stats.put("submitted", submitted.get());
+        stats.put("batches", batches.get());
+        stats.put("fallbacks", fallbacks.get());
+        stats.put("unknownOutcomes", unknownOutcomes.get());
+
+        long batchCount = batches.get();
+        stats.put("avgBatchSize", batchCount > 0 ? (double) submitted.get() / batchCount : 0.0);
+        return stats;
+    }
+
+    /**
+     * 等待发送的更新
+     */
+    private static class PendingUpdate {
+        private final UpdateRequest request;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingUpdate(UpdateRequest request) {
+            this.request = request;
+        }
+    }
+}
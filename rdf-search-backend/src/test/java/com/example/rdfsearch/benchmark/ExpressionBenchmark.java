@@ -0,0 +1,131 @@
+package com.example.rdfsearch.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.example.rdfsearch.service.expression.Expression;
+import com.example.rdfsearch.service.expression.ExpressionCompiler;
+import com.example.rdfsearch.service.expression.VariableResolver;
+
+/**
+ * 条件求值基准 - 比较每次按前缀解析条件字符串的旧实现与编译后表达式的单次求值耗时
+ *
+ * legacyCondition 保留了TaskChainService.evaluateCondition原先的实现作为对照；
+ * compound 只有编译后的表达式能处理。加 -prof gc 运行可确认使用调用方槽位数组的求值不分配对象。
+ * virtualThreadTask 与工作流任务一致: 每个任务在新的虚拟线程上执行，槽位数组随执行上下文创建一次；
+ * main方法让JMH的工作线程也使用虚拟线程(-Djmh.executor=VIRTUAL)。
+ * 运行: 在IDE中执行main方法，或 mvn test-compile 后以测试类路径启动
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpressionBenchmark {
+
+    @Param({"energyChange > 10", "energyChange < -10"})
+    private String condition;
+
+    private static final String COMPOUND = "abs(energyChange) > 10 && (riskLevel == 'high' || eventCount >= 3)";
+
+    // 一个任务内的条件求值次数
+    private static final int TASK_EVALUATIONS = 16;
+
+    private Map<String, Object> variables;
+    private VariableResolver resolver;
+    private Expression compiled;
+    private Expression compound;
+    private Object[] frame;
+
+    @Setup
+    public void setup() {
+        variables = new HashMap<>();
+        variables.put("energyChange", 12.5);
+        variables.put("riskLevel", "high");
+        variables.put("eventCount", 2);
+        resolver = variables::get;
+
+        compiled = ExpressionCompiler.compile(condition);
+        compound = ExpressionCompiler.compile(COMPOUND);
+        frame = new Object[Math.max(compiled.getFrameSize(), compound.getFrameSize())];
+    }
+
+    @Benchmark
+    public boolean legacyCondition() {
+        return legacyEvaluate(condition, variables);
+    }
+
+    @Benchmark
+    public boolean compiledCondition() {
+        return compiled.test(resolver, frame);
+    }
+
+    @Benchmark
+    public boolean cachedCondition() {
+        // 包含按条件文本查缓存的开销，与TaskChainService中的调用方式一致
+        return ExpressionCompiler.compile(condition).test(resolver, frame);
+    }
+
+    @Benchmark
+    public boolean compiledCompound() {
+        return compound.test(resolver, frame);
+    }
+
+    @Benchmark
+    public int virtualThreadTask() throws InterruptedException {
+        int[] satisfied = new int[1];
+        Thread task = Thread.ofVirtual().start(() -> {
+            Object[] taskFrame = new Object[compound.getFrameSize()];
+            for (int i = 0; i < TASK_EVALUATIONS; i++) {
+                if (compound.test(resolver, taskFrame)) {
+                    satisfied[0]++;
+                }
+            }
+        });
+        task.join();
+        return satisfied[0];
+    }
+
+    // TaskChainService.evaluateCondition原先的实现
+    private static boolean legacyEvaluate(String condition, Map<String, Object> variables) {
+        if (condition == null || condition.isEmpty() || "true".equals(condition)) {
+            return true;
+        }
+
+        if (condition.startsWith("energyChange > ")) {
+            double threshold = Double.parseDouble(condition.substring("energyChange > ".length()));
+            double energyChange = (double) variables.get("energyChange");
+            return energyChange > threshold;
+        } else if (condition.startsWith("energyChange < ")) {
+            double threshold = Double.parseDouble(condition.substring("energyChange < ".length()));
+            double energyChange = (double) variables.get("energyChange");
+            return energyChange < threshold;
+        }
+
+        return false;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ExpressionBenchmark.class.getSimpleName())
+                .jvmArgsAppend("-Djmh.executor=VIRTUAL")
+                .build()).run();
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.rdfsearch.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetRewindable;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.ResultSetMgr;
+import org.apache.jena.riot.resultset.ResultSetLang;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * SPARQL结果格式基准 - 比较13列宽行结果在XML、JSON(Jena默认协商结果)和Thrift下的
+ * 传输字节数与解码耗时
+ *
+ * 运行: 在IDE中执行main方法，或 mvn test-compile 后以测试类路径启动
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultFormatBenchmark {
+
+    @Param({ "XML", "JSON", "THRIFT" })
+    private String format;
+
+    @Param({ "50000" })
+    private int rows;
+
+    private Lang lang;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() {
+        switch (format) {
+            case "XML":
+                lang = ResultSetLang.RS_XML;
+                break;
+            case "THRIFT":
+                lang = ResultSetLang.RS_Thrift;
+                break;
+            default:
+                lang = ResultSetLang.RS_JSON;
+        }
+
+        ResultSetRewindable results = RockBurstDataset.wideResults(rows);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ResultSetMgr.write(out, results, lang);
+        encoded = out.toByteArray();
+
+        System.out.printf("%n[%s] %d行 传输字节数: %d (每行 %.1f 字节)%n",
+                format, rows, encoded.length, (double) encoded.length / rows);
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) {
+        ResultSet resultSet = ResultSetMgr.read(new ByteArrayInputStream(encoded), lang);
+        while (resultSet.hasNext()) {
+            blackhole.consume(resultSet.nextBinding());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ResultFormatBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.rdfsearch.benchmark;
+
+import java.util.Random;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.ResultSetFactory;
+import org.apache.jena.query.ResultSetRewindable;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+
+/**
+ * 基准测试用的合成RockBurst数据集
+ */
+public final class RockBurstDataset {
+
+    public static final String NS = "http://www.semanticweb.org/yoruh/ontologies/2024/9/untitled-ontology-11#";
+
+    private static final String[] RISK_TYPES = { "无", "轻微", "中等", "强烈" };
+
+    // 与advancedSearch相同的13个属性投影
+    public static final String WIDE_SELECT = "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n" +
+            "PREFIX ont: <" + NS + ">\n" +
+            "SELECT ?uri ?length ?microseismicEventCount ?energyRelease " +
+            "?cumulativeApparentVolume ?dailyEventRate ?dailyEnergyRelease " +
+            "?dailyApparentVolumeRate ?serialNumber ?mileage ?startMileage " +
+            "?endMileage ?description ?riskType WHERE {\n" +
+            "  ?uri rdf:type ont:RockBurst .\n" +
+            "  OPTIONAL { ?uri ont:length ?length }\n" +
+            "  OPTIONAL { ?uri ont:microseismicEventCount ?microseismicEventCount }\n" +
+            "  OPTIONAL { ?uri ont:energyRelease ?energyRelease }\n" +
+            "  OPTIONAL { ?uri ont:cumulativeApparentVolume ?cumulativeApparentVolume }\n" +
+            "  OPTIONAL { ?uri ont:dailyEventRate ?dailyEventRate }\n" +
+            "  OPTIONAL { ?uri ont:dailyEnergyRelease ?dailyEnergyRelease }\n" +
+            "  OPTIONAL { ?uri ont:dailyApparentVolumeRate ?dailyApparentVolumeRate }\n" +
+            "  OPTIONAL { ?uri ont:serialNumber ?serialNumber }\n" +
+            "  OPTIONAL { ?uri ont:mileage ?mileage }\n" +
+            "  OPTIONAL { ?uri ont:startMileage ?startMileage }\n" +
+            "  OPTIONAL { ?uri ont:endMileage ?endMileage }\n" +
+            "  OPTIONAL { ?uri ont:description ?description }\n" +
+            "  OPTIONAL { ?uri ont:riskType ?riskType }\n" +
+            "}";
+
+    private RockBurstDataset() {
+    }
+
+    /**
+     * 生成指定数量RockBurst个体的模型，固定随机种子保证可重复
+     */
+    public static Model create(int size) {
+        Model model = ModelFactory.createDefaultModel();
+        Random random = new Random(42);
+
+        for (int i = 0; i < size; i++) {
+            Resource event = model.createResource(NS + "RockBurst_" + i);
+            event.addProperty(RDF.type, model.createResource(NS + "RockBurst"));
+
+            addTyped(model, event, "length", String.valueOf(random.nextInt(200) + random.nextFloat()), XSDDatatype.XSDfloat);
+            addTyped(model, event, "microseismicEventCount", String.valueOf(random.nextInt(50)), XSDDatatype.XSDinteger);
+            addTyped(model, event, "energyRelease", String.valueOf(random.nextFloat() * 10), XSDDatatype.XSDfloat);
+            addTyped(model, event, "cumulativeApparentVolume", String.valueOf(random.nextFloat() * 1000), XSDDatatype.XSDfloat);
+            addTyped(model, event, "dailyEnergyRelease", String.valueOf(random.nextFloat() * 5), XSDDatatype.XSDfloat);
+            addTyped(model, event, "dailyApparentVolumeRate", String.valueOf(random.nextFloat() * 100), XSDDatatype.XSDfloat);
+            addTyped(model, event, "serialNumber", String.valueOf(i + 1), XSDDatatype.XSDinteger);
+
+            int day = i % 28 + 1;
+            int startMileage = 12000 + random.nextInt(5000);
+            event.addProperty(model.createProperty(NS + "dailyEventRate"), (random.nextInt(10) + 1) + "个/天");
+            event.addProperty(model.createProperty(NS + "mileage"), "K" + startMileage / 1000 + "+" + startMileage % 1000);
+            event.addProperty(model.createProperty(NS + "startMileage"), "K" + startMileage / 1000 + "+" + startMileage % 1000);
+            event.addProperty(model.createProperty(NS + "endMileage"), "K" + (startMileage + 30) / 1000 + "+" + (startMileage + 30) % 1000);
+            event.addProperty(model.createProperty(NS + "description"),
+                    String.format("从2023年05月%02d日08:00至2023年05月%02d日08:00，掌子面附近发生微震事件", day, day + 1));
+            event.addProperty(model.createProperty(NS + "riskType"), RISK_TYPES[random.nextInt(RISK_TYPES.length)]);
+        }
+
+        return model;
+    }
+
+    /**
+     * 在合成数据上执行13列宽行查询，返回可重复读取的结果集
+     */
+    public static ResultSetRewindable wideResults(int size) {
+        Model model = create(size);
+        try (QueryExecution qexec = QueryExecutionFactory.create(WIDE_SELECT, model)) {
+            return ResultSetFactory.copyResults(qexec.execSelect());
+        }
+    }
+
+    private static void addTyped(Model model, Resource subject, String property, String lexical, XSDDatatype type) {
+        subject.addProperty(model.createProperty(NS + property), model.createTypedLiteral(lexical, type));
+    }
+}
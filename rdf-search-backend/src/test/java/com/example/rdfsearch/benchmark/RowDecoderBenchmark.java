@@ -0,0 +1,196 @@
+package com.example.rdfsearch.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSetRewindable;
+import org.apache.jena.rdf.model.RDFNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.example.rdfsearch.model.RdfInstance;
+import com.example.rdfsearch.service.sparql.RdfInstanceDecoder;
+import com.example.rdfsearch.service.sparql.TypedRowDecoder;
+
+/**
+ * 结果行解码基准 - 比较按名称查找变量的旧解码方式与按下标解码的每行耗时
+ *
+ * legacy* 方法保留了SparqlService原先的逐行实现作为对照。
+ * 运行: 在IDE中执行main方法，或 mvn test-compile 后以测试类路径启动
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(RowDecoderBenchmark.ROWS)
+public class RowDecoderBenchmark {
+
+    static final int ROWS = 10000;
+
+    private ResultSetRewindable results;
+
+    @Setup
+    public void setup() {
+        results = RockBurstDataset.wideResults(ROWS);
+    }
+
+    @Benchmark
+    public void legacyInstance(Blackhole blackhole) {
+        results.reset();
+        while (results.hasNext()) {
+            blackhole.consume(legacyToInstance(results.nextSolution()));
+        }
+    }
+
+    @Benchmark
+    public void indexedInstance(Blackhole blackhole) {
+        results.reset();
+        RdfInstanceDecoder decoder = RdfInstanceDecoder.forVars(results.getResultVars());
+        while (results.hasNext()) {
+            blackhole.consume(decoder.decode(results.nextBinding()));
+        }
+    }
+
+    @Benchmark
+    public void legacyTypedRow(Blackhole blackhole) {
+        results.reset();
+        while (results.hasNext()) {
+            blackhole.consume(legacyToTypedRow(results.nextSolution()));
+        }
+    }
+
+    @Benchmark
+    public void indexedTypedRow(Blackhole blackhole) {
+        results.reset();
+        TypedRowDecoder decoder = TypedRowDecoder.forVars(results.getResultVars());
+        while (results.hasNext()) {
+            blackhole.consume(decoder.decode(results.nextBinding()));
+        }
+    }
+
+    /**
+     * 原SparqlService.executeQuery(Query, List)中的逐行实现
+     */
+    private static RdfInstance legacyToInstance(QuerySolution solution) {
+        RdfInstance instance = new RdfInstance();
+
+        RDFNode uriNode = solution.get("uri");
+        if (uriNode != null) {
+            instance.setUri(uriNode.toString());
+        }
+        RDFNode lengthNode = solution.get("length");
+        if (lengthNode != null) {
+            instance.setLength(lengthNode.asLiteral().getFloat());
+        }
+        RDFNode microseismicEventCountNode = solution.get("microseismicEventCount");
+        if (microseismicEventCountNode != null) {
+            instance.setMicroseismicEventCount(microseismicEventCountNode.asLiteral().getInt());
+        }
+        RDFNode energyReleaseNode = solution.get("energyRelease");
+        if (energyReleaseNode != null) {
+            instance.setEnergyRelease(energyReleaseNode.asLiteral().getFloat());
+        }
+        RDFNode cumulativeApparentVolumeNode = solution.get("cumulativeApparentVolume");
+        if (cumulativeApparentVolumeNode != null) {
+            instance.setCumulativeApparentVolume(cumulativeApparentVolumeNode.asLiteral().getFloat());
+        }
+        RDFNode dailyEventRateNode = solution.get("dailyEventRate");
+        if (dailyEventRateNode != null) {
+            instance.setDailyEventRate(dailyEventRateNode.asLiteral().getString());
+        }
+        RDFNode dailyEnergyReleaseNode = solution.get("dailyEnergyRelease");
+        if (dailyEnergyReleaseNode != null) {
+            instance.setDailyEnergyRelease(dailyEnergyReleaseNode.asLiteral().getFloat());
+        }
+        RDFNode dailyApparentVolumeRateNode = solution.get("dailyApparentVolumeRate");
+        if (dailyApparentVolumeRateNode != null) {
+            instance.setDailyApparentVolumeRate(dailyApparentVolumeRateNode.asLiteral().getFloat());
+        }
+        RDFNode serialNumberNode = solution.get("serialNumber");
+        if (serialNumberNode != null) {
+            instance.setSerialNumber(serialNumberNode.asLiteral().getInt());
+        }
+        RDFNode mileageNode = solution.get("mileage");
+        if (mileageNode != null) {
+            instance.setMileage(mileageNode.asLiteral().getString());
+        }
+        RDFNode startMileageNode = solution.get("startMileage");
+        if (startMileageNode != null) {
+            instance.setStartMileage(startMileageNode.asLiteral().getString());
+        }
+        RDFNode endMileageNode = solution.get("endMileage");
+        if (endMileageNode != null) {
+            instance.setEndMileage(endMileageNode.asLiteral().getString());
+        }
+        RDFNode descriptionNode = solution.get("description");
+        if (descriptionNode != null) {
+            instance.setDescription(descriptionNode.asLiteral().getString());
+        }
+        RDFNode riskTypeNode = solution.get("riskType");
+        if (riskTypeNode != null) {
+            instance.setRiskType(riskTypeNode.asLiteral().getString());
+        }
+
+        return instance;
+    }
+
+    /**
+     * 原SparqlService.toTypedRow实现
+     */
+    private static Map<String, Object> legacyToTypedRow(QuerySolution solution) {
+        Map<String, Object> row = new HashMap<>();
+
+        solution.varNames().forEachRemaining(varName -> {
+            RDFNode node = solution.get(varName);
+            if (node != null) {
+                if (node.isLiteral()) {
+                    try {
+                        if (node.asLiteral().getDatatype() != null) {
+                            String datatypeURI = node.asLiteral().getDatatype().getURI();
+                            if (datatypeURI.contains("integer")) {
+                                row.put(varName, node.asLiteral().getInt());
+                            } else if (datatypeURI.contains("float") || datatypeURI.contains("double")) {
+                                row.put(varName, node.asLiteral().getFloat());
+                            } else if (datatypeURI.contains("boolean")) {
+                                row.put(varName, node.asLiteral().getBoolean());
+                            } else {
+                                row.put(varName, node.asLiteral().getString());
+                            }
+                        } else {
+                            row.put(varName, node.asLiteral().getString());
+                        }
+                    } catch (Exception e) {
+                        row.put(varName, node.asLiteral().getString());
+                    }
+                } else {
+                    row.put(varName, node.toString());
+                }
+            }
+        });
+
+        return row;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RowDecoderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.rdfsearch.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDate;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 描述日期区间 - 索引的区间与原REGEX条件"从开始日.*至结束日"匹配的描述一致
+ */
+class DescriptionDateIndexTest {
+
+    private static final String[] DESCRIPTIONS = {
+            "从2023年05月04日08:00至2023年05月05日08:00",
+            "从2023年05月04日08:00至2023年05月05日08:00，从2023年05月06日08:00至2023年05月07日08:00",
+            "至2023年05月05日结束，从2023年05月06日开始",
+            "从2023年05月04日08:00\n至2023年05月05日08:00",
+            "从2023年05月04日08:00\r\n从2023年05月06日08:00至2023年05月07日08:00",
+            "从2023年02月30日08:00至2023年05月05日08:00",
+            "2023年05月04日至2023年05月05日",
+            "无日期",
+    };
+
+    @Test
+    void spansMatchLegacyRegex() {
+        LocalDate first = LocalDate.of(2023, 5, 4);
+        for (String description : DESCRIPTIONS) {
+            for (int i = 0; i < 4; i++) {
+                for (int j = 0; j < 4; j++) {
+                    LocalDate start = first.plusDays(i);
+                    LocalDate end = first.plusDays(j);
+                    assertEquals(legacyMatches(description, start, end),
+                            DescriptionDateIndex.parseSpans(description).contains(start + "/" + end),
+                            description + ": " + start + "/" + end);
+                }
+            }
+        }
+    }
+
+    @Test
+    void typedSpan() {
+        assertEquals("\"2023-05-04/2023-05-05\"", DescriptionDateIndex.typedSpan("2023-05-04", "2023-05-05"));
+        assertNull(DescriptionDateIndex.typedSpan("2023-02-30", "2023-05-05"));
+    }
+
+    // 原REGEX条件; SPARQL正则中的"."不匹配\n和\r
+    private static boolean legacyMatches(String description, LocalDate start, LocalDate end) {
+        return Pattern.compile(text("从", start) + "[^\r\n]*" + text("至", end)).matcher(description).find();
+    }
+
+    private static String text(String prefix, LocalDate date) {
+        return String.format("%s%04d年%02d月%02d日", prefix, date.getYear(), date.getMonthValue(),
+                date.getDayOfMonth());
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.rdfsearch.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import org.apache.jena.update.UpdateFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.rdfsearch.model.RdfInstance;
+import com.example.rdfsearch.service.sparql.EmbeddedDataset;
+import com.example.rdfsearch.service.sparql.PreparedQueryCache;
+import com.example.rdfsearch.service.sparql.QueryMetrics;
+import com.example.rdfsearch.service.sparql.QueryResultCache;
+import com.example.rdfsearch.service.sparql.ReplicaRouter;
+import com.example.rdfsearch.service.sparql.RockBurstSnapshot;
+import com.example.rdfsearch.service.sparql.SingleFlight;
+
+/**
+ * 岩爆数值快照 - 在进程内数据集上逐页翻完搜索结果，快照路径与SPARQL路径的结果和顺序一致
+ */
+class SparqlServiceSnapshotTest {
+
+    private static final String RB = "http://example.org/rockburst#";
+
+    private EmbeddedDataset dataset;
+    private SparqlService service;
+
+    @BeforeEach
+    void setUp() {
+        dataset = new EmbeddedDataset();
+        ReflectionTestUtils.setField(dataset, "mode", "embedded");
+        ReflectionTestUtils.setField(dataset, "location", "--mem--");
+        dataset.init();
+        dataset.update(UpdateFactory.create(testData()));
+
+        ReplicaRouter replicaRouter = mock(ReplicaRouter.class);
+        when(replicaRouter.isReplicaReadConsistent()).thenReturn(true);
+
+        service = new SparqlService();
+        ReflectionTestUtils.setField(service, "embeddedDataset", dataset);
+        ReflectionTestUtils.setField(service, "preparedQueryCache", new PreparedQueryCache());
+        ReflectionTestUtils.setField(service, "resultCache", new QueryResultCache());
+        ReflectionTestUtils.setField(service, "singleFlight", new SingleFlight());
+        ReflectionTestUtils.setField(service, "queryMetrics", new QueryMetrics());
+        ReflectionTestUtils.setField(service, "replicaRouter", replicaRouter);
+        ReflectionTestUtils.setField(service, "snapshotMaxAgeSeconds", 300L);
+        ReflectionTestUtils.setField(service, "snapshotLoadTimeoutMs", 60000L);
+        ReflectionTestUtils.invokeMethod(service, "loadSnapshot", 0L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataset.close();
+    }
+
+    @Test
+    void lengthSearchPagesMatchSparql() {
+        List<String> snapshotPages = pageThroughLength(true, 3);
+        List<String> sparqlPages = pageThroughLength(false, 3);
+
+        // 0 <= length <= 20 的实体共9个，逐页翻完不重复也不遗漏
+        assertEquals(9, sparqlPages.size());
+        assertEquals(9, new LinkedHashSet<>(sparqlPages).size());
+        assertEquals(sparqlPages, snapshotPages);
+        assertEquals(pageThroughLength(false, 100), sparqlPages);
+    }
+
+    @Test
+    void highPrecisionLengthCursorResumesAfterTie() {
+        // 前两个实体长度相同且超出Float精度，游标停在第一个之后，下一页从第二个开始
+        List<RdfInstance> first = search(false, null, 1);
+        assertEquals(RB + "tieA", first.get(0).getUri());
+
+        String cursor = service.nextLengthCursor(first, 1);
+        assertNotNull(cursor);
+        assertEquals(RB + "tieB", search(false, cursor, 1).get(0).getUri());
+        assertEquals(RB + "tieB", search(true, cursor, 1).get(0).getUri());
+    }
+
+    @Test
+    void advancedSearchPagesMatchSparqlInStringOrder() {
+        List<String> snapshotPages = pageThroughAdvanced(true, 2);
+        List<String> sparqlPages = pageThroughAdvanced(false, 2);
+
+        assertEquals(sparqlPages, snapshotPages);
+        // U+1F600的高代理项U+D83D小于U+FF21: SPARQL按UTF-16代码单元排序，增补字符在全角字母之前
+        int fullwidth = sparqlPages.indexOf(RB + "eＡ");
+        int emoji = sparqlPages.indexOf(RB + "e😀");
+        assertTrue(fullwidth >= 0 && emoji >= 0);
+        assertTrue(emoji < fullwidth);
+    }
+
+    @Test
+    void comparesUrisByUtf16CodeUnit() {
+        assertTrue(RockBurstSnapshot.compareUris("a😀", "aＡ") < 0);
+        assertTrue(RockBurstSnapshot.compareUris("ab", "abc") < 0);
+        assertEquals(0, RockBurstSnapshot.compareUris("a😀", "a😀"));
+    }
+
+    private List<String> pageThroughLength(boolean useSnapshot, int pageSize) {
+        return pageThrough((cursor, size) -> search(useSnapshot, cursor, size),
+                (page, size) -> service.nextLengthCursor(page, size), useSnapshot, pageSize);
+    }
+
+    private List<String> pageThroughAdvanced(boolean useSnapshot, int pageSize) {
+        return pageThrough((cursor, size) -> {
+            ReflectionTestUtils.setField(service, "snapshotEnabled", useSnapshot);
+            return service.advancedSearch(null, null, null, null, 0.0f, null, null, null,
+                    List.of("A", "B"), cursor, size);
+        }, (page, size) -> service.nextUriCursor(page, size), useSnapshot, pageSize);
+    }
+
+    private List<String> pageThrough(BiFunction<String, Integer, List<RdfInstance>> search,
+            BiFunction<List<RdfInstance>, Integer, String> next, boolean useSnapshot, int pageSize) {
+        List<String> uris = new ArrayList<>();
+        String cursor = null;
+        for (int pages = 0; pages < 100; pages++) {
+            List<RdfInstance> page = search.apply(cursor, pageSize);
+            page.forEach(instance -> uris.add(instance.getUri()));
+            cursor = next.apply(page, pageSize);
+            if (cursor == null) {
+                return uris;
+            }
+        }
+        throw new AssertionError("分页没有结束, snapshot=" + useSnapshot);
+    }
+
+    private List<RdfInstance> search(boolean useSnapshot, String cursor, int pageSize) {
+        ReflectionTestUtils.setField(service, "snapshotEnabled", useSnapshot);
+        return service.searchByLength(0, 20, cursor, pageSize);
+    }
+
+    @Test
+    void snapshotIsLoaded() {
+        RockBurstSnapshot snapshot = (RockBurstSnapshot) ReflectionTestUtils.getField(service, "snapshot");
+        assertNotNull(snapshot);
+        assertFalse(snapshot.isMultiValued());
+        assertNull(service.nextLengthCursor(new ArrayList<>(), 10));
+    }
+
+    /**
+     * 长度有并列、超出Float精度的小数和不同数值类型；URI含全角字符和增补字符
+     */
+    private static String testData() {
+        String[][] rows = {
+                // uri, length, energyRelease, riskType
+                { "tieA", "\"1.000000001\"^^xsd:decimal", "\"2.5\"^^xsd:decimal", "A" },
+                { "tieB", "\"1.000000001\"^^xsd:decimal", "\"0.5\"^^xsd:decimal", "B" },
+                { "eＡ", "\"4.25\"^^xsd:decimal", "\"1.0\"^^xsd:decimal", "A" },
+                { "e😀", "\"4.25\"^^xsd:decimal", "\"1.5\"^^xsd:decimal", "B" },
+                { "eZ", "\"4.25\"^^xsd:decimal", "\"3.0\"^^xsd:decimal", "A" },
+                { "f1", "\"7.5E0\"^^xsd:double", "\"0.0\"^^xsd:decimal", "C" },
+                { "f2", "\"9.123456789012\"^^xsd:decimal", "\"4.0\"^^xsd:decimal", "A" },
+                { "f3", "\"12\"^^xsd:integer", "\"5.0\"^^xsd:decimal", "B" },
+                { "f4", "\"19.99\"^^xsd:decimal", "\"-1.0\"^^xsd:decimal", "A" },
+                { "far", "\"25.0\"^^xsd:decimal", "\"6.0\"^^xsd:decimal", "A" },
+        };
+
+        StringBuilder data = new StringBuilder();
+        data.append("PREFIX xsd: <http://www.w3.org/2001/XMLSchema#>\n");
+        data.append("PREFIX ont: <").append(RockBurstSnapshot.ONT).append(">\n");
+        data.append("INSERT DATA {\n");
+        int serial = 0;
+        for (String[] row : rows) {
+            String subject = "<" + RB + row[0] + ">";
+            data.append("  ").append(subject).append(" ont:length ").append(row[1]).append(" .\n");
+            data.append("  ").append(subject).append(" ont:energyRelease ").append(row[2]).append(" .\n");
+            data.append("  ").append(subject).append(" ont:riskType \"").append(row[3]).append("\" .\n");
+            data.append("  ").append(subject).append(" ont:serialNumber ").append(++serial).append(" .\n");
+        }
+        data.append("}");
+        return data.toString();
+    }
+}
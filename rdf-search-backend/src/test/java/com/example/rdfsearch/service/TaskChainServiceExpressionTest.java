@@ -0,0 +1,164 @@
+package com.example.rdfsearch.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.rdfsearch.service.expression.ExpressionCompiler;
+
+/**
+ * 条件和脚本求值 - 原先实现能处理的输入上，编译后的表达式与其结果一致；
+ * 并覆盖NaN比较、缺失变量的不等比较和字符串拼接
+ */
+class TaskChainServiceExpressionTest {
+
+    private static final double[] VALUES = { -20.0, -10.0, -0.5, -0.0, 0.0, 3.0, 10.0, 12.5, 100.0 };
+    private static final String[] THRESHOLDS = { "-10", "-0.5", "0", "3", "10", "12.5", "1000000" };
+
+    private final TaskChainService service = new TaskChainService();
+
+    @Test
+    void conditionsMatchLegacyEvaluator() {
+        for (double value : VALUES) {
+            TaskChainService.ExecutionContext context = context("energyChange", value);
+            for (String threshold : THRESHOLDS) {
+                for (String condition : new String[] { "energyChange > " + threshold, "energyChange < " + threshold }) {
+                    assertEquals(legacyCondition(condition, value), condition(condition, context),
+                            condition + ", energyChange=" + value);
+                }
+            }
+        }
+    }
+
+    @Test
+    void emptyAndTrueConditionsMatchLegacyEvaluator() {
+        TaskChainService.ExecutionContext context = new TaskChainService.ExecutionContext("run");
+        for (String condition : new String[] { null, "", "true" }) {
+            assertEquals(legacyCondition(condition, 0.0), condition(condition, context), String.valueOf(condition));
+        }
+    }
+
+    @Test
+    void nanComparisonsAreFalse() {
+        TaskChainService.ExecutionContext context = context("energyChange", Double.NaN);
+
+        // 原先的实现对NaN同样返回false
+        assertEquals(legacyCondition("energyChange > 10", Double.NaN), condition("energyChange > 10", context));
+        assertEquals(legacyCondition("energyChange < 10", Double.NaN), condition("energyChange < 10", context));
+
+        assertFalse(condition("energyChange > 10", context));
+        assertFalse(condition("energyChange < 10", context));
+        assertFalse(condition("energyChange >= 10", context));
+        assertFalse(condition("energyChange <= 10", context));
+        assertFalse(condition("energyChange == energyChange", context));
+        assertTrue(condition("energyChange != 10", context));
+        assertFalse(condition("!(energyChange != 10)", context));
+    }
+
+    @Test
+    void missingVariables() {
+        TaskChainService.ExecutionContext context = new TaskChainService.ExecutionContext("run");
+
+        // 缺失的数值变量为NaN，大小比较为false（原先的实现在这里抛出异常）
+        assertFalse(condition("energyChange > 10", context));
+        assertFalse(condition("energyChange < 10", context));
+
+        // 不等比较对缺失变量为true
+        assertTrue(condition("energyChange != 10", context));
+        assertTrue(condition("riskLevel != 'high'", context));
+        assertFalse(condition("riskLevel == 'high'", context));
+        assertTrue(condition("riskLevel == null", context));
+    }
+
+    @Test
+    void invalidConditionIsNotSatisfied() {
+        TaskChainService.ExecutionContext context = context("energyChange", 12.5);
+        assertFalse(condition("energyChange >", context));
+    }
+
+    @Test
+    void concatenatesStrings() {
+        TaskChainService.ExecutionContext context = context("zone", "A");
+        context.setVariable("count", 2);
+        context.setVariable("ratio", 1.5);
+
+        Map<String, Object> values = ExpressionCompiler.compileScript(
+                "label = '区域' + zone + '-' + 1; "
+                        + "next = 'n=' + (count + 1); "
+                        + "prefix = 1 + 2 + 'x'; "
+                        + "text = 'r=' + ratio")
+                .execute(context::getVariable);
+
+        assertEquals("区域A-1", values.get("label"));
+        assertEquals("n=3", values.get("next"));
+        assertEquals("3x", values.get("prefix"));
+        assertEquals("r=1.5", values.get("text"));
+        assertTrue(condition("contains('区域A-1', 1)", context));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void scriptsMatchLegacyResultAndWriteBack() {
+        TaskChainService.ExecutionContext context = context("a", 3);
+
+        Map<String, Object> result = script("total = a * 10; flag = total > 5", context);
+
+        // 原先的实现只返回这两项，保持不变
+        Map<String, Object> legacy = legacyScript();
+        assertEquals(legacy.get("executed"), result.get("executed"));
+        assertEquals(legacy.get("message"), result.get("message"));
+
+        Map<String, Object> values = (Map<String, Object>) result.get("values");
+        assertEquals(30.0, ((Number) values.get("total")).doubleValue());
+        assertEquals(Boolean.TRUE, values.get("flag"));
+        assertEquals(30.0, ((Number) context.getVariable("total")).doubleValue());
+        assertEquals(Boolean.TRUE, context.getVariable("flag"));
+
+        for (String blank : new String[] { null, "", "  " }) {
+            Map<String, Object> empty = script(blank, context);
+            assertEquals(legacy.get("executed"), empty.get("executed"));
+            assertEquals(legacy.get("message"), empty.get("message"));
+        }
+    }
+
+    private boolean condition(String condition, TaskChainService.ExecutionContext context) {
+        return ReflectionTestUtils.invokeMethod(service, "evaluateCondition", condition, context);
+    }
+
+    private Map<String, Object> script(String script, TaskChainService.ExecutionContext context) {
+        return ReflectionTestUtils.invokeMethod(service, "evaluateScript", script, context);
+    }
+
+    private static TaskChainService.ExecutionContext context(String name, Object value) {
+        TaskChainService.ExecutionContext context = new TaskChainService.ExecutionContext("run");
+        context.setVariable(name, value);
+        return context;
+    }
+
+    // TaskChainService.evaluateCondition原先的实现
+    private static boolean legacyCondition(String condition, double energyChange) {
+        if (condition == null || condition.isEmpty() || "true".equals(condition)) {
+            return true;
+        }
+
+        if (condition.startsWith("energyChange > ")) {
+            double threshold = Double.parseDouble(condition.substring("energyChange > ".length()));
+            return energyChange > threshold;
+        } else if (condition.startsWith("energyChange < ")) {
+            double threshold = Double.parseDouble(condition.substring("energyChange < ".length()));
+            return energyChange < threshold;
+        }
+
+        return false;
+    }
+
+    // TaskChainService.evaluateScript原先的实现
+    private static Map<String, Object> legacyScript() {
+        return Map.of("executed", true, "message", "脚本执行成功");
+    }
+}
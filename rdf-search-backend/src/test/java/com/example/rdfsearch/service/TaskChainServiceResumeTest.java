@@ -0,0 +1,196 @@
+package com.example.rdfsearch.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.rdfsearch.model.ExecutionContextRecord;
+import com.example.rdfsearch.model.task.TaskNode;
+import com.example.rdfsearch.model.task.TaskOutcome;
+import com.example.rdfsearch.model.task.Workflow;
+import com.example.rdfsearch.repository.ExecutionContextRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 检查点和继续执行 - 运行中断后以新的服务实例（模拟进程重启）从H2记录继续执行
+ */
+class TaskChainServiceResumeTest {
+
+    private static final String RUN_ID = "run-1";
+
+    // 模拟H2中的上下文记录，多个服务实例共享
+    private final Map<String, ExecutionContextRecord> records = new ConcurrentHashMap<>();
+
+    private final List<WorkflowDagScheduler> schedulers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        schedulers.forEach(WorkflowDagScheduler::shutdown);
+    }
+
+    @Test
+    void resumesLinearWorkflowAfterMidChainFailure() {
+        TaskChainService failing = newService(linearWorkflow("Broken"));
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("firstRuns", 0);
+
+        assertThrows(RuntimeException.class,
+                () -> failing.executeWorkflow(RUN_ID, "linear", parameters, null));
+        assertFalse(records.get(RUN_ID).getFinished());
+
+        Workflow fixed = linearWorkflow("CustomScript");
+        TaskChainService restarted = newService(fixed);
+        List<String> started = new ArrayList<>();
+
+        Map<String, Object> result = restarted.resumeWorkflow(RUN_ID, recordingListener(started));
+
+        // 已完成的first不再执行，second使用检查点中first的写入
+        assertEquals(List.of("second", "third"), started);
+        assertEquals(List.of("first:first_done", "second:second_done", "third:third_done"),
+                result.get("executionPath"));
+        TaskChainService.ExecutionContext context = contextStore(restarted).get(RUN_ID);
+        assertEquals(1.0, ((Number) context.getVariable("firstRuns")).doubleValue());
+        assertEquals(10.0, ((Number) context.getVariable("total")).doubleValue());
+        assertTrue(records.get(RUN_ID).getFinished());
+
+        // 结果数据只写入本次执行的副本，工作流定义不变
+        for (TaskNode task : fixed.getTasks().values()) {
+            assertTrue(task.getPossibleOutcomes().get(0).getResultData().isEmpty());
+        }
+
+        assertThrows(IllegalStateException.class, () -> restarted.resumeWorkflow(RUN_ID, null));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void resumesDagWithPartlyCompletedBranches() {
+        TaskChainService failing = newService(dagWorkflow("Broken"));
+        List<String> firstAttempt = Collections.synchronizedList(new ArrayList<>());
+
+        assertThrows(RuntimeException.class,
+                () -> failing.executeWorkflow(RUN_ID, "dag", new HashMap<>(), recordingListener(firstAttempt)));
+        assertEquals(List.of("a", "b"), firstAttempt);
+        assertFalse(records.get(RUN_ID).getFinished());
+
+        TaskChainService restarted = newService(dagWorkflow("CustomScript"));
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+
+        Map<String, Object> result = restarted.resumeWorkflow(RUN_ID, recordingListener(started));
+
+        // 分支a已在检查点中完成，只执行失败的分支b和汇总节点c
+        assertEquals(List.of("b", "c"), started);
+        assertEquals(List.of("a:a_done", "b:b_done", "c:c_done"), result.get("executionPath"));
+
+        Map<String, Map<String, Object>> taskResults = (Map<String, Map<String, Object>>) result.get("taskResults");
+        Map<String, Object> fanIn = (Map<String, Object>) taskResults.get("c").get("fanInResults");
+        assertTrue(fanIn.containsKey("a"));
+        assertTrue(fanIn.containsKey("b"));
+
+        TaskChainService.ExecutionContext context = contextStore(restarted).get(RUN_ID);
+        assertEquals(1.0, ((Number) context.getVariable("aValue")).doubleValue());
+        assertEquals(2.0, ((Number) context.getVariable("bValue")).doubleValue());
+        assertTrue(records.get(RUN_ID).getFinished());
+    }
+
+    private TaskChainService newService(Workflow workflow) {
+        ExecutionContextRecordRepository repository = mock(ExecutionContextRecordRepository.class);
+        when(repository.save(any(ExecutionContextRecord.class))).thenAnswer(invocation -> {
+            ExecutionContextRecord record = invocation.getArgument(0);
+            records.put(record.getRunId(), record);
+            return record;
+        });
+        when(repository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(records.get(invocation.<String>getArgument(0))));
+
+        ExecutionContextStore store = new ExecutionContextStore();
+        ReflectionTestUtils.setField(store, "recordRepository", repository);
+        ReflectionTestUtils.setField(store, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(store, "maxEntries", 100);
+        ReflectionTestUtils.setField(store, "spillEnabled", true);
+        ReflectionTestUtils.setField(store, "checkpointEnabled", true);
+
+        // 同时只执行一个任务，使DAG中a先于b完成
+        WorkflowDagScheduler scheduler = new WorkflowDagScheduler();
+        ReflectionTestUtils.setField(scheduler, "poolSize", 2);
+        ReflectionTestUtils.setField(scheduler, "maxParallelTasks", 1);
+        ReflectionTestUtils.setField(scheduler, "defaultTimeoutMs", 10000L);
+        scheduler.init();
+        schedulers.add(scheduler);
+
+        TaskChainService service = new TaskChainService();
+        ReflectionTestUtils.setField(service, "contextStore", store);
+        ReflectionTestUtils.setField(service, "dagScheduler", scheduler);
+        @SuppressWarnings("unchecked")
+        Map<String, Workflow> workflowCache = (Map<String, Workflow>) ReflectionTestUtils.getField(service,
+                "workflowCache");
+        workflowCache.put(workflow.getId(), workflow);
+        return service;
+    }
+
+    private static ExecutionContextStore contextStore(TaskChainService service) {
+        return (ExecutionContextStore) ReflectionTestUtils.getField(service, "contextStore");
+    }
+
+    /**
+     * first -> second -> third，second的类型不受支持时执行失败
+     */
+    private static Workflow linearWorkflow(String secondType) {
+        Workflow workflow = new Workflow("linear", "顺序工作流");
+        workflow.addTask(scriptTask("first", "CustomScript", "firstRuns = firstRuns + 1", "second"));
+        workflow.addTask(scriptTask("second", secondType, "total = firstRuns * 10", "third"));
+        workflow.addTask(scriptTask("third", "CustomScript", "done = true", null));
+        return workflow;
+    }
+
+    /**
+     * a、b两个分支由c汇总，b的类型不受支持时执行失败
+     */
+    private static Workflow dagWorkflow(String bType) {
+        Workflow workflow = new Workflow("dag", "DAG工作流");
+        workflow.addTask(scriptTask("a", "CustomScript", "aValue = 1", null));
+        workflow.addTask(scriptTask("b", bType, "bValue = 2", null));
+        TaskNode merge = new TaskNode("c", "c", "FanIn");
+        merge.addDependency("a");
+        merge.addDependency("b");
+        merge.addOutcome(new TaskOutcome("c_done", "汇总完成", null));
+        workflow.addTask(merge);
+        return workflow;
+    }
+
+    private static TaskNode scriptTask(String id, String type, String script, String nextTaskId) {
+        TaskNode task = new TaskNode(id, id, type);
+        task.getInputParameters().put("script", script);
+        task.addOutcome(new TaskOutcome(id + "_done", "完成", nextTaskId));
+        return task;
+    }
+
+    private static TaskChainService.WorkflowListener recordingListener(List<String> started) {
+        return new TaskChainService.WorkflowListener() {
+            @Override
+            public void onTaskStarted(TaskNode task) {
+                started.add(task.getId());
+            }
+
+            @Override
+            public void onTaskCompleted(TaskNode task, TaskOutcome outcome, long elapsedMs) {
+            }
+        };
+    }
+}